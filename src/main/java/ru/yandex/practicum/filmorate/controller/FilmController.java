@@ -4,10 +4,17 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.dto.CursorPage;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.dto.NewFilmRequest;
+import ru.yandex.practicum.filmorate.dto.PopularFilmsRequest;
+import ru.yandex.practicum.filmorate.dto.SuggestionDto;
 import ru.yandex.practicum.filmorate.dto.UpdateFilmRequest;
+import ru.yandex.practicum.filmorate.mapper.CursorMapper;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
 import java.util.List;
@@ -21,9 +28,20 @@ public class FilmController {
     private final FilmService filmService;
 
     @GetMapping
-    public List<FilmDto> getAll() {
-        log.info("Запрос на получение всех фильмов");
-        return filmService.getAll();
+    public ResponseEntity<List<FilmDto>> getAll(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit) {
+        log.info("Запрос на получение фильмов: after={}, limit={}", after, limit);
+        return toResponse(filmService.getAll(after, limit));
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export() {
+        log.info("Запрос на выгрузку всех фильмов");
+        StreamingResponseBody body = filmService::exportFilms;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping("/{filmId}")
@@ -58,12 +76,25 @@ public class FilmController {
     }
 
     @GetMapping("/popular")
-    public List<FilmDto> getPopular(
-            @RequestParam(defaultValue = "10") int count,
-            @RequestParam(required = false) Long genreId,
-            @RequestParam(required = false) Integer year) {
-        log.info("Запрос на получение популярных фильмов: count={}, genreId={}, year={}", count, genreId, year);
-        return filmService.getPopularFilms(count, genreId, year);
+    public ResponseEntity<List<FilmDto>> getPopular(PopularFilmsRequest request) {
+        log.info("Запрос на получение популярных фильмов: {}", request);
+        return toResponse(filmService.getPopularFilms(request));
+    }
+
+    @GetMapping("/{filmId}/similar")
+    public List<FilmDto> getSimilar(
+            @PathVariable long filmId,
+            @RequestParam(defaultValue = "10") int count) {
+        log.info("Запрос на получение похожих фильмов: filmId={}, count={}", filmId, count);
+        return filmService.getSimilarFilms(filmId, count);
+    }
+
+    @GetMapping("/trending")
+    public List<FilmDto> getTrending(
+            @RequestParam(defaultValue = "24h") String window,
+            @RequestParam(defaultValue = "10") int count) {
+        log.info("Запрос на получение трендовых фильмов: window={}, count={}", window, count);
+        return filmService.getTrendingFilms(window, count);
     }
 
     @DeleteMapping("/{filmId}")
@@ -80,12 +111,21 @@ public class FilmController {
         return filmService.getFilmsByDirector(directorId, sortBy);
     }
 
+    @GetMapping("/search/suggest")
+    public List<SuggestionDto> suggest(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        log.info("Запрос подсказок: prefix={}, limit={}", prefix, limit);
+        return filmService.suggest(prefix, limit);
+    }
+
     @GetMapping("/search")
     public List<FilmDto> searchFilms(
             @RequestParam String query,
-            @RequestParam String by) {
-        log.info("Поиск фильмов: query='{}', by='{}'", query, by);
-        return filmService.searchFilms(query, by);
+            @RequestParam String by,
+            @RequestParam(defaultValue = "false") boolean fuzzy) {
+        log.info("Поиск фильмов: query='{}', by='{}', fuzzy={}", query, by, fuzzy);
+        return filmService.searchFilms(query, by, fuzzy);
     }
 
     @GetMapping("/common")
@@ -95,4 +135,12 @@ public class FilmController {
         log.info("Запрос на получение общих фильмов для пользователей id={} и id={}", userId, friendId);
         return filmService.getCommonFilms(userId, friendId);
     }
+
+    private static <T> ResponseEntity<List<T>> toResponse(CursorPage<T> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(CursorMapper.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
 }
\ No newline at end of file
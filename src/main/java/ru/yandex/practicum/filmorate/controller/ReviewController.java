@@ -5,8 +5,10 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.dto.CursorPage;
 import ru.yandex.practicum.filmorate.dto.ReviewDto;
 import ru.yandex.practicum.filmorate.dto.UpdateReviewRequest;
+import ru.yandex.practicum.filmorate.mapper.CursorMapper;
 import ru.yandex.practicum.filmorate.service.ReviewService;
 
 import java.util.List;
@@ -44,12 +46,18 @@ public class ReviewController {
     }
 
     @GetMapping
-    public List<ReviewDto> getAll(
+    public ResponseEntity<List<ReviewDto>> getAll(
             @RequestParam(required = false) Long filmId,
-            @RequestParam(defaultValue = "10") int count
+            @RequestParam(defaultValue = "10") int count,
+            @RequestParam(required = false) String after
     ) {
-        log.info("Запрос на получение отзывов, filmId = {}, count = {}", filmId, count);
-        return reviewService.getAll(filmId, count);
+        log.info("Запрос на получение отзывов, filmId = {}, count = {}, after = {}", filmId, count, after);
+        CursorPage<ReviewDto> page = reviewService.getAll(filmId, count, after);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(CursorMapper.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
     }
 
     @PutMapping("/{id}/like/{userId}")
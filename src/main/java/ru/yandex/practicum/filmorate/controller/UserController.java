@@ -4,11 +4,17 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.dto.CursorPage;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.dto.NewUserRequest;
+import ru.yandex.practicum.filmorate.dto.RecommendationsDto;
 import ru.yandex.practicum.filmorate.dto.UpdateUserRequest;
 import ru.yandex.practicum.filmorate.dto.UserDto;
+import ru.yandex.practicum.filmorate.mapper.CursorMapper;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 import java.util.List;
@@ -19,12 +25,26 @@ import java.util.List;
 @RequestMapping("/users")
 public class UserController {
 
+    private static final String COMPUTED_AT_HEADER = "X-Recommendations-Computed-At";
+    private static final String STALE_HEADER = "X-Recommendations-Stale";
+
     private final UserService userService;
 
     @GetMapping
-    public List<UserDto> getAll() {
-        log.info("Запрос на получение всех пользователей");
-        return userService.getAll();
+    public ResponseEntity<List<UserDto>> getAll(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit) {
+        log.info("Запрос на получение пользователей: after={}, limit={}", after, limit);
+        return toResponse(userService.getAll(after, limit));
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export() {
+        log.info("Запрос на выгрузку всех пользователей");
+        StreamingResponseBody body = userService::exportUsers;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping("/{userId}")
@@ -72,9 +92,14 @@ public class UserController {
     }
 
     @GetMapping("/{id}/recommendations")
-    public List<FilmDto> getRecommendations(@PathVariable Long id) {
-        log.info("Запрос рекомендаций для пользователя с id={}", id);
-        return userService.getRecommendations(id);
+    public ResponseEntity<List<FilmDto>> getRecommendations(@PathVariable Long id,
+                                                            @RequestParam(required = false) String source) {
+        log.info("Запрос рекомендаций для пользователя с id={}, источник {}", id, source);
+        RecommendationsDto recommendations = userService.getRecommendations(id, source);
+        return ResponseEntity.ok()
+                .header(COMPUTED_AT_HEADER, recommendations.getComputedAt().toString())
+                .header(STALE_HEADER, String.valueOf(recommendations.isStale()))
+                .body(recommendations.getFilms());
     }
 
     @DeleteMapping("/{userId}")
@@ -83,4 +108,12 @@ public class UserController {
         log.info("Запрос на удаление пользователя id={}", userId);
         userService.delete(userId);
     }
+
+    private static <T> ResponseEntity<List<T>> toResponse(CursorPage<T> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(CursorMapper.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
 }
\ No newline at end of file
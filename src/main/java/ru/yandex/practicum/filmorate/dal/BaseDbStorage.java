@@ -8,7 +8,6 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import ru.yandex.practicum.filmorate.exception.InternalServerException;
 import java.sql.PreparedStatement;
-import java.sql.Statement;
 import java.util.List;
 import java.util.Optional;
 
@@ -43,26 +42,23 @@ public class BaseDbStorage<T> {
         }
     }
 
-    protected long insert(String query, Object... params) {
+    protected long insert(String query, String idColumn, Object... params) {
         GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
             jdbc.update(connection -> {
+                // Ключ запрашивается по имени: иначе H2 вернёт и столбцы со значениями по умолчанию
                 PreparedStatement ps = connection
-                        .prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
+                        .prepareStatement(query, new String[]{idColumn});
                 for (int idx = 0; idx < params.length; idx++) {
                     ps.setObject(idx + 1, params[idx]);
                 }
                 return ps;
             }, keyHolder);
 
-            if (keyHolder.getKeys().size() > 1) {
-                return (long) 1;
-            }
-
-            Long id = keyHolder.getKeyAs(Long.class);
+            Number id = keyHolder.getKey();
 
-            // Возвращаем id нового пользователя
+            // Возвращаем id новой записи
             if (id != null) {
-                return id;
+                return id.longValue();
             } else {
                 throw new InternalServerException("Не удалось сохранить данные");
             }
@@ -1,5 +1,8 @@
 package ru.yandex.practicum.filmorate.dal;
 
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
@@ -9,62 +12,151 @@ import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Repository("filmDbStorage")
 public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
 
-    private static final String FIND_ALL_QUERY = "SELECT f.*, r.name AS rating_name FROM films f " +
-            "LEFT JOIN film_ratings r ON f.rating_id = r.rating_id";
-    private static final String FIND_BY_ID_QUERY = "SELECT f.*, r.name AS rating_name FROM films f " +
-            "LEFT JOIN film_ratings r ON f.rating_id = r.rating_id WHERE f.film_id = ?";
+    // Жанры и режиссёры собираются в массивы тем же запросом, страница фильмов читается одним обращением к БД
+    private static final String SELECT_FILMS = "SELECT f.*, r.name AS rating_name, " +
+            "ARRAY(SELECT fg.genre_id FROM film_genre fg WHERE fg.film_id = f.film_id " +
+            "ORDER BY fg.genre_id) AS genre_ids, " +
+            "ARRAY(SELECT g.name FROM film_genre fg JOIN genres g ON fg.genre_id = g.genre_id " +
+            "WHERE fg.film_id = f.film_id ORDER BY fg.genre_id) AS genre_names, " +
+            "ARRAY(SELECT fd.director_id FROM film_directors fd WHERE fd.film_id = f.film_id " +
+            "ORDER BY fd.director_id) AS director_ids, " +
+            "ARRAY(SELECT d.name FROM film_directors fd JOIN directors d ON fd.director_id = d.director_id " +
+            "WHERE fd.film_id = f.film_id ORDER BY fd.director_id) AS director_names " +
+            "FROM films f LEFT JOIN film_ratings r ON f.rating_id = r.rating_id";
+    private static final String FIND_ALL_QUERY = SELECT_FILMS;
+    private static final String FIND_PAGE_QUERY = FIND_ALL_QUERY + " WHERE f.film_id > ? ORDER BY f.film_id LIMIT ?";
+    private static final String EXPORT_QUERY = FIND_ALL_QUERY + " ORDER BY f.film_id";
+    private static final String FIND_BY_ID_QUERY = SELECT_FILMS + " WHERE f.film_id = ?";
+    private static final String FIND_ALL_BY_ID_QUERY = SELECT_FILMS + " WHERE f.film_id = ANY(?)";
     private static final String INSERT_QUERY = "INSERT INTO films " +
             "(name, description, release_date, duration, rating_id) VALUES (?, ?, ?, ?, ?)";
     private static final String UPDATE_QUERY = "UPDATE films SET name = ?, description = ?, " +
             "release_date = ?, duration = ?, rating_id = ? WHERE film_id = ?";
     private static final String DELETE_QUERY = "DELETE FROM films WHERE film_id = ?";
-    private static final String ADD_LIKE_QUERY = "MERGE INTO film_likes (film_id, user_id) VALUES (?, ?)";
-    private static final String REMOVE_LIKE_QUERY = "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
+    private static final String FIND_ALL_IDS_QUERY = "SELECT film_id FROM films";
+    private static final String GET_LIKED_FILM_IDS_QUERY = "SELECT film_id FROM film_likes WHERE user_id = ?";
+    private static final String GET_ALL_LIKES_QUERY = "SELECT film_id, user_id FROM film_likes " +
+            "ORDER BY user_id, film_id";
+    private static final String GET_LIKES_SINCE_QUERY = "SELECT film_id, user_id, liked_at FROM film_likes " +
+            "WHERE liked_at >= ?";
+    private static final String LIKES_COUNT_DRIFT_QUERY = "SELECT " +
+            "(SELECT COALESCE(SUM(likes_count), 0) FROM films) - (SELECT COUNT(*) FROM film_likes)";
+    private static final String REBUILD_LIKES_COUNT_QUERY = "UPDATE films f SET likes_count = " +
+            "(SELECT COUNT(*) FROM film_likes fl WHERE fl.film_id = f.film_id) " +
+            "WHERE f.likes_count <> (SELECT COUNT(*) FROM film_likes fl WHERE fl.film_id = f.film_id)";
     private static final String INSERT_FILM_GENRE_QUERY = "INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)";
     private static final String DELETE_FILM_GENRE_QUERY = "DELETE FROM film_genre WHERE film_id = ?";
-    private static final String GET_GENRES_BY_FILM_ID_QUERY = "SELECT g.genre_id, g.name " +
-            "FROM genres g JOIN film_genre fg ON g.genre_id = fg.genre_id WHERE fg.film_id = ?";
-    private static final String GET_DIRECTORS_BY_FILM_ID_QUERY =
-            "SELECT d.director_id, d.name FROM directors d " +
-                    "JOIN film_directors fd ON d.director_id = fd.director_id " +
-                    "WHERE fd.film_id = ?";
     private static final String DELETE_FILM_DIRECTORS_QUERY = "DELETE FROM film_directors WHERE film_id = ?";
     private static final String INSERT_FILM_DIRECTORS_QUERY = "INSERT INTO film_directors (film_id, director_id) " +
             "VALUES (?, ?)";
 
-    public FilmDbStorage(JdbcTemplate jdbc, RowMapper<Film> mapper) {
+    private final LikeWriteBuffer likeWriteBuffer;
+    private final IdRegistry filmIds = new IdRegistry();
+    private final int exportFetchSize;
+    private final int exportChunkSize;
+
+    public FilmDbStorage(JdbcTemplate jdbc, RowMapper<Film> mapper, LikeWriteBuffer likeWriteBuffer,
+                         @Value("${filmorate.export.fetch-size:500}") int exportFetchSize,
+                         @Value("${filmorate.export.chunk-size:200}") int exportChunkSize) {
         super(jdbc, mapper);
+        this.likeWriteBuffer = likeWriteBuffer;
+        this.exportFetchSize = exportFetchSize;
+        this.exportChunkSize = exportChunkSize;
+    }
+
+    @PostConstruct
+    public void init() {
+        // Индексы зависят от хранилища и читают likes_count при загрузке, поэтому счётчики чиним здесь.
+        // Полный пересчёт с агрегацией film_likes дорог, его запускаем, только если сумма счётчиков
+        // разошлась с числом лайков
+        long drift = jdbc.queryForObject(LIKES_COUNT_DRIFT_QUERY, Long.class);
+        if (drift != 0) {
+            int repaired = rebuildLikesCount();
+            log.warn("Сумма likes_count расходится с film_likes на {}, счётчики пересчитаны для {} фильмов",
+                    drift, repaired);
+        }
+        filmIds.reset(jdbc.queryForList(FIND_ALL_IDS_QUERY, Long.class));
     }
 
     @Override
     public List<Film> findAll() {
-        List<Film> films = findMany(FIND_ALL_QUERY);
-        loadGenresForFilms(films);
-        loadDirectorsForFilms(films);
-        return films;
+        return findMany(FIND_ALL_QUERY);
+    }
+
+    @Override
+    public List<Film> findPage(long afterId, int limit) {
+        return findMany(FIND_PAGE_QUERY, afterId, limit);
+    }
+
+    @Override
+    public void streamAll(Consumer<List<Film>> chunkConsumer) {
+        List<Film> chunk = new ArrayList<>(exportChunkSize);
+        jdbc.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(EXPORT_QUERY,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(exportFetchSize);
+            return ps;
+        }, rs -> {
+            chunk.add(mapper.mapRow(rs, rs.getRow()));
+            if (chunk.size() == exportChunkSize) {
+                chunkConsumer.accept(chunk);
+                chunk.clear();
+            }
+        });
+        if (!chunk.isEmpty()) {
+            chunkConsumer.accept(chunk);
+        }
     }
 
     @Override
     public Optional<Film> findById(long id) {
-        Optional<Film> film = findOne(FIND_BY_ID_QUERY, id);
-        film.ifPresent(this::loadGenres);
-        film.ifPresent(this::loadDirectors);
-        return film;
+        return findOne(FIND_BY_ID_QUERY, id);
+    }
+
+    @Override
+    public boolean existsById(long id) {
+        return filmIds.contains(id);
+    }
+
+    @Override
+    public List<Film> findAllById(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Список id передаётся одним параметром-массивом, форма запроса не зависит от их количества
+        List<Film> films = jdbc.query(FIND_ALL_BY_ID_QUERY,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("BIGINT", ids.toArray())), mapper);
+
+        // Сохраняем порядок переданных идентификаторов
+        Map<Long, Film> filmsById = new HashMap<>();
+        films.forEach(film -> filmsById.put(film.getId(), film));
+        return ids.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     @Override
     public Film save(Film film) {
-        long id = insert(INSERT_QUERY, film.getName(), film.getDescription(), film.getReleaseDate(), film.getDuration(), film.getMpa().getId());
+        long id = insert(INSERT_QUERY, "film_id", film.getName(), film.getDescription(), film.getReleaseDate(), film.getDuration(), film.getMpa().getId());
         film.setId(id);
+        filmIds.add(id);
         updateGenres(film);
         updateDirectors(film);
-        loadGenres(film);
-        loadDirectors(film);
+        loadRelations(film);
         return film;
     }
 
@@ -73,80 +165,53 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
         update(UPDATE_QUERY, film.getName(), film.getDescription(), film.getReleaseDate(), film.getDuration(), film.getMpa().getId(), film.getId());
         updateGenres(film);
         updateDirectors(film);
-        loadGenres(film);
-        loadDirectors(film);
+        loadRelations(film);
         return film;
     }
 
     @Override
     public void delete(long id) {
         boolean deleted = delete(DELETE_QUERY, id);
+        filmIds.remove(id);
         if (!deleted) {
             throw new NotFoundException("Фильм с id " + id + " не найден");
         }
     }
 
     @Override
-    public void addLike(long filmId, long userId) {
-        jdbc.update(ADD_LIKE_QUERY, filmId, userId);
+    public BooleanSupplier enqueueLike(long filmId, long userId, boolean like) {
+        return likeWriteBuffer.enqueue(filmId, userId, like);
     }
 
     @Override
-    public void removeLike(long filmId, long userId) {
-        jdbc.update(REMOVE_LIKE_QUERY, filmId, userId);
+    public List<Long> getLikedFilmIds(long userId) {
+        return jdbc.queryForList(GET_LIKED_FILM_IDS_QUERY, Long.class, userId);
     }
 
     @Override
-    public List<Film> getPopular(int count, Long genreId, Integer year) {
-
-        StringBuilder sql = new StringBuilder(
-                "SELECT f.*, r.name AS rating_name, COUNT(DISTINCT fl.user_id) as likes_count " +
-                        "FROM films f " +
-                        "LEFT JOIN film_ratings r ON f.rating_id = r.rating_id " +
-                        "LEFT JOIN film_likes fl ON f.film_id = fl.film_id "
-        );
-
-        List<Object> params = new ArrayList<>();
-
-        if (genreId != null) {
-            sql.append("LEFT JOIN film_genre fg ON f.film_id = fg.film_id");
-        }
-        List<String> conditions = new ArrayList<>();
-
-        if (genreId != null) {
-            conditions.add("fg.genre_id = ?");
-            params.add(genreId);
-        }
-
-        if (year != null) {
-            conditions.add("YEAR(f.release_date) = ?");
-            params.add(year);
-        }
-
-        if (!conditions.isEmpty()) {
-            sql.append(" WHERE ").append(String.join(" AND ", conditions));
-        }
-
-        sql.append(" GROUP BY f.film_id, f.name, f.description, f.release_date, f.duration, f.rating_id, r.name ");
-        sql.append(" ORDER BY likes_count DESC, f.film_id ");
-        sql.append(" LIMIT ?");
-        params.add(count);
-
-        List<Film> films = jdbc.query(sql.toString(), mapper, params.toArray());
+    public void forEachLike(BiConsumer<Long, Long> filmIdAndUserIdConsumer) {
+        jdbc.query(GET_ALL_LIKES_QUERY, rs -> {
+            filmIdAndUserIdConsumer.accept(rs.getLong("film_id"), rs.getLong("user_id"));
+        });
+    }
 
-        if (films != null && !films.isEmpty()) {
-            loadGenresForFilms(films);
-            loadDirectorsForFilms(films);
-        }
+    @Override
+    public void forEachLikeSince(long timestamp, DatedLikeConsumer consumer) {
+        jdbc.query(GET_LIKES_SINCE_QUERY, rs -> {
+            consumer.accept(rs.getLong("film_id"), rs.getLong("user_id"), rs.getLong("liked_at"));
+        }, timestamp);
+    }
 
-        return films != null ? films : new ArrayList<>();
+    @Override
+    public int rebuildLikesCount() {
+        return jdbc.update(REBUILD_LIKES_COUNT_QUERY);
     }
 
     private void updateGenres(Film film) {
         jdbc.update(DELETE_FILM_GENRE_QUERY, film.getId());
         if (film.getGenres() != null && !film.getGenres().isEmpty()) {
             List<Object[]> batch = film.getGenres().stream()
-                    .map(genre -> genre.getId())
+                    .map(Genre::getId)
                     .distinct()
                     .map(genreId -> new Object[]{film.getId(), genreId})
                     .toList();
@@ -154,55 +219,10 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
         }
     }
 
-    private void loadGenres(Film film) {
-        List<Genre> genres = jdbc.query(GET_GENRES_BY_FILM_ID_QUERY, (rs, rowNum) -> {
-            Genre genre = new Genre();
-            genre.setId(rs.getLong("genre_id"));
-            genre.setName(rs.getString("name"));
-            return genre;
-        }, film.getId());
-        film.setGenres(genres);
-    }
-
-    private void loadGenresForFilms(List<Film> films) {
-        if (films == null || films.isEmpty()) {
-            return;
-        }
-
-        List<Long> filmIds = films.stream()
-                .map(Film::getId)
-                .toList();
-
-        String inSql = String.join(",", Collections.nCopies(filmIds.size(), "?"));
-
-        String query = String.format(
-                "SELECT fg.film_id, g.genre_id, g.name " +
-                        "FROM film_genre fg " +
-                        "JOIN genres g ON fg.genre_id = g.genre_id " +
-                        "WHERE fg.film_id IN (%s)", inSql);
-
-        Map<Long, List<Genre>> genresByFilmId = new HashMap<>();
-
-        jdbc.query(query, rs -> {
-            long filmId = rs.getLong("film_id");
-            Genre genre = new Genre();
-            genre.setId(rs.getLong("genre_id"));
-            genre.setName(rs.getString("name"));
-
-            genresByFilmId.computeIfAbsent(filmId, k -> new ArrayList<>()).add(genre);
-        }, filmIds.toArray());
-
-        for (Film film : films) {
-            film.setGenres(genresByFilmId.getOrDefault(film.getId(), new ArrayList<>()));
-        }
-    }
-
     @Override
     public List<Film> getRecommendations(long userId) {
-        String sql = """
-                SELECT f.*, r.name AS rating_name
-                FROM films f
-                LEFT JOIN film_ratings r ON f.rating_id = r.rating_id
+        String sql = SELECT_FILMS + """
+
                 JOIN film_likes fl2 ON f.film_id = fl2.film_id
                 JOIN (
                     SELECT fl2.user_id
@@ -220,55 +240,14 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
                 WHERE fl_user.user_id IS NULL
                 """;
 
-        List<Film> films = findMany(sql, userId, userId, userId);
-
-        if (films != null && !films.isEmpty()) {
-            loadGenresForFilms(films);
-            loadDirectorsForFilms(films);
-        }
-
-        return films != null ? films : new ArrayList<>();
-    }
-
-    private void loadDirectors(Film film) {
-        List<Director> directors = jdbc.query(GET_DIRECTORS_BY_FILM_ID_QUERY, (rs, rowNum) -> {
-            Director director = new Director();
-            director.setId(rs.getLong("director_id"));
-            director.setName(rs.getString("name"));
-            return director;
-        }, film.getId());
-        film.setDirectors(directors);
+        return findMany(sql, userId, userId, userId);
     }
 
-    private void loadDirectorsForFilms(List<Film> films) {
-        if (films == null || films.isEmpty()) {
-            return;
-        }
-
-        List<Long> filmIds = films.stream()
-                .map(Film::getId)
-                .toList();
-
-        String inSql = String.join(",", Collections.nCopies(filmIds.size(), "?"));
-        String query = String.format(
-                "SELECT fd.film_id, d.director_id, d.name " +
-                        "FROM film_directors fd " +
-                        "JOIN directors d ON fd.director_id = d.director_id " +
-                        "WHERE fd.film_id IN (%s)", inSql);
-
-        Map<Long, List<Director>> directorsByFilmId = new HashMap<>();
-
-        jdbc.query(query, rs -> {
-            long filmId = rs.getLong("film_id");
-            Director director = new Director();
-            director.setId(rs.getLong("director_id"));
-            director.setName(rs.getString("name"));
-            directorsByFilmId.computeIfAbsent(filmId, k -> new ArrayList<>()).add(director);
-        }, filmIds.toArray());
-
-        for (Film film : films) {
-            film.setDirectors(directorsByFilmId.getOrDefault(film.getId(), new ArrayList<>()));
-        }
+    private void loadRelations(Film film) {
+        findOne(FIND_BY_ID_QUERY, film.getId()).ifPresent(saved -> {
+            film.setGenres(saved.getGenres());
+            film.setDirectors(saved.getDirectors());
+        });
     }
 
     private void updateDirectors(Film film) {
@@ -287,107 +266,20 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
     @Override
     public List<Film> getFilmsByDirector(long directorId, String sortBy) {
         String getFilmsByDirectorSortByYear =
-                "SELECT f.*, r.name AS rating_name FROM films f " +
-                        "LEFT JOIN film_ratings r ON f.rating_id = r.rating_id " +
+                SELECT_FILMS + " " +
                         "INNER JOIN film_directors fd ON f.film_id = fd.film_id " +
                         "WHERE fd.director_id = ? " +
                         "ORDER BY f.release_date";
 
         String getFilmsByDirectorSortByLikes =
-                "SELECT f.*, r.name AS rating_name, COUNT(fl.user_id) as likes_count FROM films f " +
-                        "LEFT JOIN film_ratings r ON f.rating_id = r.rating_id " +
+                SELECT_FILMS + " " +
                         "INNER JOIN film_directors fd ON f.film_id = fd.film_id " +
-                        "LEFT JOIN film_likes fl ON f.film_id = fl.film_id " +
                         "WHERE fd.director_id = ? " +
-                        "GROUP BY f.film_id, f.name, f.description, f.release_date, f.duration, f.rating_id, r.name " +
-                        "ORDER BY likes_count DESC";
-
-        List<Film> films;
+                        "ORDER BY f.likes_count DESC, f.film_id";
 
         if ("year".equalsIgnoreCase(sortBy)) {
-            films = findMany(getFilmsByDirectorSortByYear, directorId);
-        } else {
-            films = findMany(getFilmsByDirectorSortByLikes, directorId);
-        }
-
-        if (films != null && !films.isEmpty()) {
-            loadGenresForFilms(films);
-            loadDirectorsForFilms(films);
+            return findMany(getFilmsByDirectorSortByYear, directorId);
         }
-
-        return films != null ? films : new ArrayList<>();
-    }
-
-    @Override
-    public List<Film> searchFilms(String query, String by) {
-        String searchPattern = "%" + query.toLowerCase() + "%";
-        List<Film> films;
-
-        String normalizedBy = by.toLowerCase().trim().replaceAll("\\s+", "");
-
-        // Общая часть запроса для группировки и сортировки по лайкам
-        String groupByAndOrder = " GROUP BY f.film_id, f.name, f.description, f.release_date, f.duration, f.rating_id, r.name " +
-                "ORDER BY likes_count DESC";
-
-        String searchByTitle =
-                "SELECT f.*, r.name AS rating_name, COUNT(DISTINCT fl.user_id) AS likes_count FROM films f " +
-                        "LEFT JOIN film_ratings r ON f.rating_id = r.rating_id " +
-                        "LEFT JOIN film_likes fl ON f.film_id = fl.film_id " +
-                        "WHERE LOWER(f.name) LIKE ?" + groupByAndOrder;
-
-        String searchByDirector =
-                "SELECT f.*, r.name AS rating_name, COUNT(DISTINCT fl.user_id) AS likes_count FROM films f " +
-                        "LEFT JOIN film_ratings r ON f.rating_id = r.rating_id " +
-                        "LEFT JOIN film_likes fl ON f.film_id = fl.film_id " +
-                        "INNER JOIN film_directors fd ON f.film_id = fd.film_id " +
-                        "INNER JOIN directors d ON fd.director_id = d.director_id " +
-                        "WHERE LOWER(d.name) LIKE ?" + groupByAndOrder;
-
-        String searchByBoth =
-                "SELECT f.*, r.name AS rating_name, COUNT(DISTINCT fl.user_id) AS likes_count FROM films f " +
-                        "LEFT JOIN film_ratings r ON f.rating_id = r.rating_id " +
-                        "LEFT JOIN film_likes fl ON f.film_id = fl.film_id " +
-                        "LEFT JOIN film_directors fd ON f.film_id = fd.film_id " +
-                        "LEFT JOIN directors d ON fd.director_id = d.director_id " +
-                        "WHERE LOWER(f.name) LIKE ? OR LOWER(d.name) LIKE ?" + groupByAndOrder;
-
-        if (normalizedBy.equals("title")) {
-            films = findMany(searchByTitle, searchPattern);
-        } else if (normalizedBy.equals("director")) {
-            films = findMany(searchByDirector, searchPattern);
-        } else if (normalizedBy.equals("title,director") || normalizedBy.equals("director,title")) {
-            films = findMany(searchByBoth, searchPattern, searchPattern);
-        } else {
-            throw new IllegalArgumentException("Invalid search parameter: " + by);
-        }
-
-        if (films != null && !films.isEmpty()) {
-            loadGenresForFilms(films);
-            loadDirectorsForFilms(films);
-        }
-
-        return films != null ? films : new ArrayList<>();
-    }
-
-    @Override
-    public List<Film> getCommonFilms(long userId, long friendId) {
-        String sql = "SELECT f.*, r.name AS rating_name, COUNT(DISTINCT fl.user_id) AS likes_count " +
-                "FROM films f " +
-                "JOIN film_likes fl1 ON f.film_id = fl1.film_id " +
-                "JOIN film_likes fl2 ON f.film_id = fl2.film_id " +
-                "LEFT JOIN film_ratings r ON f.rating_id = r.rating_id " +
-                "LEFT JOIN film_likes fl ON f.film_id = fl.film_id " +
-                "WHERE fl1.user_id = ? AND fl2.user_id = ? " +
-                "GROUP BY f.film_id, f.name, f.description, f.release_date, f.duration, f.rating_id, r.name " +
-                "ORDER BY likes_count DESC";
-
-        List<Film> films = findMany(sql, userId, friendId);
-
-        if (films != null && !films.isEmpty()) {
-            loadGenresForFilms(films);
-            loadDirectorsForFilms(films);
-        }
-
-        return films != null ? films : new ArrayList<>();
+        return findMany(getFilmsByDirectorSortByLikes, directorId);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Множество существующих идентификаторов сущности в виде битового набора по диапазону identity.
+ * Позволяет проверять существование записи без запроса к БД; создание и удаление записей
+ * в хранилище обновляют набор сразу. Идентификаторы вне диапазона int в битовый набор
+ * не помещаются и хранятся в обычном множестве.
+ */
+class IdRegistry {
+
+    private final BitSet ids = new BitSet();
+    private final Set<Long> outOfRangeIds = new HashSet<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    void reset(Collection<Long> existingIds) {
+        lock.writeLock().lock();
+        try {
+            ids.clear();
+            outOfRangeIds.clear();
+            existingIds.forEach(this::set);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return fitsBitSet(id) ? ids.get((int) id) : outOfRangeIds.contains(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void add(long id) {
+        lock.writeLock().lock();
+        try {
+            set(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            if (fitsBitSet(id)) {
+                ids.clear((int) id);
+            } else {
+                outOfRangeIds.remove(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void set(long id) {
+        if (fitsBitSet(id)) {
+            ids.set((int) id);
+        } else {
+            outOfRangeIds.add(id);
+        }
+    }
+
+    private static boolean fitsBitSet(long id) {
+        return id >= 0 && id <= Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,248 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Групповая запись лайков. Запросы складываются в ограниченную очередь; первый освободившийся поток
+ * становится лидером, забирает пачку и пишет её одной транзакцией через batchUpdate, остальные ждут
+ * результат своей записи. Несколько лайков/дизлайков одной пары (фильм, пользователь) в пачке
+ * схлопываются в одну итоговую команду, счётчики likes_count обновляются суммарной дельтой.
+ * Лидер всегда пишет в отдельной транзакции (REQUIRES_NEW), даже если сам вызван внутри транзакции.
+ */
+@Slf4j
+@Component
+public class LikeWriteBuffer {
+
+    private static final String INSERT_LIKE_QUERY = "INSERT INTO film_likes (film_id, user_id, liked_at) " +
+            "SELECT ?, ?, ? " +
+            "WHERE NOT EXISTS (SELECT 1 FROM film_likes WHERE film_id = ? AND user_id = ?)";
+    private static final String DELETE_LIKE_QUERY = "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
+    private static final String CHANGE_LIKES_COUNT_QUERY = "UPDATE films SET likes_count = likes_count + ? " +
+            "WHERE film_id = ?";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<PendingWrite> queue;
+    private final int batchSize;
+    private final long groupCommitNanos;
+    private final long offerTimeoutMillis;
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushTimeNanos = new AtomicLong();
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    public LikeWriteBuffer(JdbcTemplate jdbc,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${filmorate.likes.buffer-capacity:10000}") int capacity,
+                           @Value("${filmorate.likes.batch-size:500}") int batchSize,
+                           @Value("${filmorate.likes.group-commit-interval-ms:2}") long groupCommitMillis,
+                           @Value("${filmorate.likes.offer-timeout-ms:1000}") long offerTimeoutMillis) {
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Пачка содержит чужие записи и не должна откатываться вместе с транзакцией вызвавшего потока
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.groupCommitNanos = TimeUnit.MILLISECONDS.toNanos(groupCommitMillis);
+        this.offerTimeoutMillis = offerTimeoutMillis;
+    }
+
+    /**
+     * Ставит запись в очередь и сразу возвращает ожидание её фиксации: {@code true}, если запись изменила
+     * состояние лайка. Записи попадают в БД в порядке постановки, так что порядок вызовов для одной пары
+     * сохраняется.
+     */
+    public BooleanSupplier enqueue(long filmId, long userId, boolean like) {
+        PendingWrite write = new PendingWrite(new LikeKey(filmId, userId), like, new CompletableFuture<>());
+        try {
+            if (!queue.offer(write, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new InternalServerException("Очередь записи лайков переполнена");
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerException("Запись лайка прервана");
+        }
+        return () -> await(write);
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    public long getFlushTimeNanos() {
+        return flushTimeNanos.get();
+    }
+
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    private boolean await(PendingWrite write) {
+        try {
+            while (!write.result().isDone()) {
+                if (flushLock.tryLock()) {
+                    try {
+                        if (!write.result().isDone()) {
+                            awaitGroup();
+                            flush(drain());
+                        }
+                    } finally {
+                        flushLock.unlock();
+                    }
+                } else {
+                    awaitResult(write);
+                }
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerException("Запись лайка прервана");
+        }
+
+        try {
+            return write.result().join();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw exception;
+        }
+    }
+
+    private void awaitGroup() {
+        // Как commit_delay: ждём попутчиков, только если параллельно пишут другие потоки
+        int queued = queue.size();
+        if (groupCommitNanos > 0 && queued > 1 && queued < batchSize) {
+            LockSupport.parkNanos(groupCommitNanos);
+        }
+    }
+
+    private void awaitResult(PendingWrite write) throws InterruptedException {
+        try {
+            write.result().get(Math.max(groupCommitNanos, TimeUnit.MILLISECONDS.toNanos(1)), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | ExecutionException ignored) {
+            // Либо лидер ещё пишет, либо результат уже готов и будет прочитан в await
+        }
+    }
+
+    private Map<LikeKey, List<PendingWrite>> drain() {
+        List<PendingWrite> batch = new ArrayList<>(Math.min(batchSize, queue.size()));
+        queue.drainTo(batch, batchSize);
+        Map<LikeKey, List<PendingWrite>> writesByKey = new LinkedHashMap<>();
+        for (PendingWrite write : batch) {
+            writesByKey.computeIfAbsent(write.key(), key -> new ArrayList<>()).add(write);
+        }
+        return writesByKey;
+    }
+
+    private void flush(Map<LikeKey, List<PendingWrite>> writesByKey) {
+        if (writesByKey.isEmpty()) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            Map<LikeKey, Boolean> changed = transactionTemplate.execute(status -> write(writesByKey));
+            writesByKey.forEach((key, writes) -> complete(writes, changed.get(key)));
+        } catch (RuntimeException exception) {
+            if (writesByKey.size() > 1 && exception instanceof DataAccessException) {
+                // Одна ошибочная запись не должна валить всю пачку: повторяем по одной паре
+                log.warn("Пакетная запись лайков не удалась, повтор по одной записи: {}", exception.getMessage());
+                writesByKey.forEach((key, writes) -> flush(Map.of(key, writes)));
+                return;
+            }
+            writesByKey.values().forEach(writes ->
+                    writes.forEach(write -> write.result().completeExceptionally(exception)));
+        } finally {
+            flushCount.incrementAndGet();
+            flushTimeNanos.addAndGet(System.nanoTime() - started);
+        }
+    }
+
+    private Map<LikeKey, Boolean> write(Map<LikeKey, List<PendingWrite>> writesByKey) {
+        List<LikeKey> inserts = new ArrayList<>();
+        List<LikeKey> deletes = new ArrayList<>();
+        writesByKey.forEach((key, writes) -> {
+            writeCount.addAndGet(writes.size());
+            coalescedCount.addAndGet(writes.size() - 1);
+            // В БД уходит только итоговое состояние пары
+            if (writes.get(writes.size() - 1).like()) {
+                inserts.add(key);
+            } else {
+                deletes.add(key);
+            }
+        });
+
+        long now = System.currentTimeMillis();
+        int[] inserted = jdbc.batchUpdate(INSERT_LIKE_QUERY, inserts.stream()
+                .map(key -> new Object[]{key.filmId(), key.userId(), now, key.filmId(), key.userId()})
+                .toList());
+        int[] deleted = jdbc.batchUpdate(DELETE_LIKE_QUERY, deletes.stream()
+                .map(key -> new Object[]{key.filmId(), key.userId()})
+                .toList());
+
+        Map<LikeKey, Boolean> changed = new HashMap<>();
+        Map<Long, Long> deltas = new TreeMap<>();
+        for (int idx = 0; idx < inserts.size(); idx++) {
+            boolean rowChanged = inserted[idx] > 0;
+            changed.put(inserts.get(idx), rowChanged);
+            if (rowChanged) {
+                deltas.merge(inserts.get(idx).filmId(), 1L, Long::sum);
+            }
+        }
+        for (int idx = 0; idx < deletes.size(); idx++) {
+            boolean rowChanged = deleted[idx] > 0;
+            changed.put(deletes.get(idx), rowChanged);
+            if (rowChanged) {
+                deltas.merge(deletes.get(idx).filmId(), -1L, Long::sum);
+            }
+        }
+
+        // TreeMap задаёт одинаковый порядок блокировки строк films во всех пачках
+        jdbc.batchUpdate(CHANGE_LIKES_COUNT_QUERY, deltas.entrySet().stream()
+                .filter(entry -> entry.getValue() != 0)
+                .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                .toList());
+        return changed;
+    }
+
+    private static void complete(List<PendingWrite> writes, boolean finalChanged) {
+        boolean finalLike = writes.get(writes.size() - 1).like();
+        // Восстанавливаем исходное состояние и раздаём каждому вызову его собственный результат,
+        // чтобы сумма изменений совпала с тем, что попало в БД
+        boolean liked = finalChanged != finalLike;
+        for (PendingWrite write : writes) {
+            write.result().complete(write.like() != liked);
+            liked = write.like();
+        }
+    }
+
+    private record LikeKey(long filmId, long userId) {
+    }
+
+    private record PendingWrite(LikeKey key, boolean like, CompletableFuture<Boolean> result) {
+    }
+}
@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+@Component
+@RequiredArgsConstructor
+public class LikeWriteMetrics implements MeterBinder {
+
+    private final LikeWriteBuffer likeWriteBuffer;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.likes.queue.depth", likeWriteBuffer, LikeWriteBuffer::getQueueDepth)
+                .description("Записи лайков, ожидающие групповой фиксации")
+                .register(registry);
+        FunctionTimer.builder("filmorate.likes.flush", likeWriteBuffer,
+                        LikeWriteBuffer::getFlushCount, LikeWriteBuffer::getFlushTimeNanos, TimeUnit.NANOSECONDS)
+                .description("Время записи одной пачки лайков")
+                .register(registry);
+        FunctionCounter.builder("filmorate.likes.writes", likeWriteBuffer, LikeWriteBuffer::getWriteCount)
+                .description("Принятые записи лайков")
+                .register(registry);
+        FunctionCounter.builder("filmorate.likes.coalesced", likeWriteBuffer, LikeWriteBuffer::getCoalescedCount)
+                .description("Записи лайков, схлопнутые с другими записями той же пары в пачке")
+                .register(registry);
+    }
+}
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.dal;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -34,15 +35,27 @@ public class ReviewDbStorage extends BaseDbStorage<Review> implements ReviewStor
             SELECT *
             FROM reviews
             WHERE (? IS NULL OR film_id = ?)
-            ORDER BY useful DESC
+            ORDER BY useful DESC, review_id
             LIMIT ?
             """;
+    private static final String FIND_PAGE_QUERY = """
+            SELECT *
+            FROM reviews
+            WHERE (? IS NULL OR film_id = ?)
+              AND (useful < ? OR (useful = ? AND review_id > ?))
+            ORDER BY useful DESC, review_id
+            LIMIT ?
+            """;
+
+    private static final String FIND_ALL_IDS_QUERY = "SELECT review_id FROM reviews";
 
     private static final String MERGE_LIKE_QUERY = """
             MERGE INTO review_likes (review_id, user_id, is_like)
             VALUES (?, ?, ?)
             """;
 
+    private final IdRegistry reviewIds = new IdRegistry();
+
     @Autowired
     public ReviewDbStorage(
             JdbcTemplate jdbc,
@@ -50,9 +63,14 @@ public class ReviewDbStorage extends BaseDbStorage<Review> implements ReviewStor
         super(jdbc, mapper);
     }
 
+    @PostConstruct
+    public void loadIds() {
+        reviewIds.reset(jdbc.queryForList(FIND_ALL_IDS_QUERY, Long.class));
+    }
+
     @Override
     public Review create(Review review) {
-        long id = insert(INSERT_QUERY,
+        long id = insert(INSERT_QUERY, "review_id",
                 review.getContent(),
                 review.getIsPositive(),
                 review.getUserId(),
@@ -60,6 +78,7 @@ public class ReviewDbStorage extends BaseDbStorage<Review> implements ReviewStor
         );
         review.setReviewId(id);
         review.setUseful(0);
+        reviewIds.add(id);
         log.info("Created review {}", review);
         return review;
     }
@@ -86,6 +105,7 @@ public class ReviewDbStorage extends BaseDbStorage<Review> implements ReviewStor
     public void delete(Long id) {
         jdbc.update("DELETE FROM review_likes WHERE review_id = ?", id);
         int deleted = jdbc.update(DELETE_BY_ID_QUERY, id);
+        reviewIds.remove(id);
         if (deleted == 0) {
             throw new NotFoundException("Отзыв с id " + id + " не найден");
         }
@@ -99,6 +119,11 @@ public class ReviewDbStorage extends BaseDbStorage<Review> implements ReviewStor
         return optionalReview;
     }
 
+    @Override
+    public boolean existsById(long id) {
+        return reviewIds.contains(id);
+    }
+
     @Override
     public List<Review> getAll(Long filmId, int count) {
         List<Review> list = findMany(FIND_ALL_QUERY, filmId, filmId, count);
@@ -106,6 +131,11 @@ public class ReviewDbStorage extends BaseDbStorage<Review> implements ReviewStor
         return list;
     }
 
+    @Override
+    public List<Review> getPage(Long filmId, int afterUseful, long afterReviewId, int count) {
+        return findMany(FIND_PAGE_QUERY, filmId, filmId, afterUseful, afterUseful, afterReviewId, count);
+    }
+
     @Override
     public void removeLike(Long reviewId, Long userId) {
         delete(DELETE_LIKE_QUERY, reviewId, userId);
@@ -1,20 +1,28 @@
 package ru.yandex.practicum.filmorate.dal;
 
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Primary
 @Repository("userDbStorage")
 public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
 
     private static final String FIND_ALL_QUERY = "SELECT * FROM users";
+    private static final String FIND_PAGE_QUERY = "SELECT * FROM users WHERE user_id > ? ORDER BY user_id LIMIT ?";
+    private static final String EXPORT_QUERY = "SELECT * FROM users ORDER BY user_id";
     private static final String FIND_BY_EMAIL_QUERY = "SELECT * FROM users WHERE email = ?";
     private static final String FIND_BY_ID_QUERY = "SELECT * FROM users WHERE user_id = ?";
     private static final String INSERT_QUERY = "INSERT INTO users(email, login, name, birthday) " +
@@ -29,14 +37,29 @@ public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
             "WHERE user_id = ? AND friend_id = ?";
     private static final String GET_FRIENDS_QUERY = "SELECT u.* FROM users u JOIN friends f ON u.user_id = f.friend_id " +
             "WHERE f.user_id = ?";
+    private static final String GET_FRIEND_IDS_QUERY = "SELECT friend_id FROM friends WHERE user_id = ?";
     private static final String GET_COMMON_FRIENDS_QUERY = "SELECT u.* FROM users u " +
             "JOIN friends f1 ON u.user_id = f1.friend_id " +
             "JOIN friends f2 ON u.user_id = f2.friend_id " +
             "WHERE f1.user_id = ? AND f2.user_id = ?";
     private static final String DELETE_QUERY = "DELETE FROM users WHERE user_id = ?";
+    private static final String FIND_ALL_IDS_QUERY = "SELECT user_id FROM users";
+    // Лайки пользователя удаляются каскадно, поэтому счётчики фильмов уменьшаем заранее
+    private static final String RELEASE_LIKES_COUNT_QUERY = "UPDATE films SET likes_count = likes_count - 1 " +
+            "WHERE film_id IN (SELECT film_id FROM film_likes WHERE user_id = ?)";
 
-    public UserDbStorage(JdbcTemplate jdbc, RowMapper<User> mapper) {
+    private final IdRegistry userIds = new IdRegistry();
+    private final int exportFetchSize;
+
+    public UserDbStorage(JdbcTemplate jdbc, RowMapper<User> mapper,
+                         @Value("${filmorate.export.fetch-size:500}") int exportFetchSize) {
         super(jdbc, mapper);
+        this.exportFetchSize = exportFetchSize;
+    }
+
+    @PostConstruct
+    public void loadIds() {
+        userIds.reset(jdbc.queryForList(FIND_ALL_IDS_QUERY, Long.class));
     }
 
     @Override
@@ -44,6 +67,23 @@ public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
         return findMany(FIND_ALL_QUERY);
     }
 
+    @Override
+    public List<User> findPage(long afterId, int limit) {
+        return findMany(FIND_PAGE_QUERY, afterId, limit);
+    }
+
+    @Override
+    public void streamAll(Consumer<User> consumer) {
+        jdbc.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(EXPORT_QUERY,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(exportFetchSize);
+            return ps;
+        }, rs -> {
+            consumer.accept(mapper.mapRow(rs, rs.getRow()));
+        });
+    }
+
     @Override
     public Optional<User> findByEmail(String email) {
         return findOne(FIND_BY_EMAIL_QUERY, email);
@@ -54,10 +94,16 @@ public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
         return findOne(FIND_BY_ID_QUERY, userId);
     }
 
+    @Override
+    public boolean existsById(long id) {
+        return userIds.contains(id);
+    }
+
     @Override
     public User save(User user) {
-        long id = insert(INSERT_QUERY, user.getEmail(), user.getLogin(), user.getName(), user.getBirthday());
+        long id = insert(INSERT_QUERY, "user_id", user.getEmail(), user.getLogin(), user.getName(), user.getBirthday());
         user.setId(id);
+        userIds.add(id);
         return user;
     }
 
@@ -85,14 +131,22 @@ public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
         return findMany(GET_FRIENDS_QUERY, userId);
     }
 
+    @Override
+    public List<Long> getFriendIds(long userId) {
+        return jdbc.queryForList(GET_FRIEND_IDS_QUERY, Long.class, userId);
+    }
+
     @Override
     public List<User> getCommonFriends(long userId, long otherUserId) {
         return findMany(GET_COMMON_FRIENDS_QUERY, userId, otherUserId);
     }
 
     @Override
+    @Transactional
     public void delete(long id) {
+        jdbc.update(RELEASE_LIKES_COUNT_QUERY, id);
         boolean deleted = delete(DELETE_QUERY, id);
+        userIds.remove(id);
         if (!deleted) {
             throw new NotFoundException("Пользователь с id " + id + " не найден");
         }
@@ -3,10 +3,15 @@ package ru.yandex.practicum.filmorate.dal.mappers;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import java.sql.Array;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 @Slf4j
 @Component
@@ -21,6 +26,7 @@ public class FilmRowMapper implements RowMapper<Film> {
             film.setReleaseDate(rs.getDate("release_date").toLocalDate());
         }
         film.setDuration(rs.getInt("duration"));
+        film.setLikesCount(rs.getLong("likes_count"));
 
         Mpa mpa = new Mpa();
         mpa.setId(rs.getLong("rating_id"));
@@ -32,6 +38,40 @@ public class FilmRowMapper implements RowMapper<Film> {
         }
         film.setMpa(mpa);
 
+        Object[] genreIds = readArray(rs, "genre_ids");
+        Object[] genreNames = readArray(rs, "genre_names");
+        List<Genre> genres = new ArrayList<>(genreIds.length);
+        for (int idx = 0; idx < genreIds.length; idx++) {
+            Genre genre = new Genre();
+            genre.setId(((Number) genreIds[idx]).longValue());
+            genre.setName((String) genreNames[idx]);
+            genres.add(genre);
+        }
+        film.setGenres(genres);
+
+        Object[] directorIds = readArray(rs, "director_ids");
+        Object[] directorNames = readArray(rs, "director_names");
+        List<Director> directors = new ArrayList<>(directorIds.length);
+        for (int idx = 0; idx < directorIds.length; idx++) {
+            Director director = new Director();
+            director.setId(((Number) directorIds[idx]).longValue());
+            director.setName((String) directorNames[idx]);
+            directors.add(director);
+        }
+        film.setDirectors(directors);
+
         return film;
     }
+
+    private static Object[] readArray(ResultSet rs, String column) throws SQLException {
+        Array array = rs.getArray(column);
+        if (array == null) {
+            return new Object[0];
+        }
+        try {
+            return (Object[]) array.getArray();
+        } finally {
+            array.free();
+        }
+    }
 }
\ No newline at end of file
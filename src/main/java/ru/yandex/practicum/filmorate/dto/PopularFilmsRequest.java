@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Data;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Параметры выборки популярных фильмов. Несколько значений одного фильтра объединяются (ИЛИ),
+ * разные фильтры пересекаются (И). {@code genreId} и {@code year} оставлены для совместимости.
+ * {@code forUser} переставляет список по вкусам пользователя.
+ */
+@Data
+public class PopularFilmsRequest {
+    private int count = 10;
+    private Long genreId;
+    private List<Long> genreIds = new ArrayList<>();
+    private List<Long> mpaIds = new ArrayList<>();
+    private Integer year;
+    private Integer yearFrom;
+    private Integer yearTo;
+    private String after;
+    private Long forUser;
+}
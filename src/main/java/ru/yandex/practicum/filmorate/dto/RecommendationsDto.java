@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class RecommendationsDto {
+    private List<FilmDto> films;
+    private Instant computedAt;
+    private boolean stale;
+}
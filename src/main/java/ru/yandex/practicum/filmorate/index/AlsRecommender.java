@@ -0,0 +1,196 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Рекомендации по матричной факторизации (режим {@code filmorate.recommendations.mode=als}).
+ * Модель обучается в фоне по снимку {@link LikesIndex} и подменяется целиком, запросы читают
+ * ту модель, что была на момент начала. Вектор пользователя при запросе пересчитывается по его
+ * текущим лайкам, а ближайшие к нему фильмы ищутся в HNSW-графе по векторам фильмов.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.recommendations.mode", havingValue = "als")
+public class AlsRecommender implements FilmIndexListener {
+
+    private final LikesIndex likesIndex;
+    private final ForkJoinPool pool;
+    private final AlsTrainer trainer;
+    private final int hnswM;
+    private final int efConstruction;
+    private final int efSearch;
+    private final int limit;
+    private final long seed;
+    private final AtomicReference<Model> model = new AtomicReference<>();
+    // Счётчик изменений лайков: модель помнит значение, на котором сделан её снимок
+    private final AtomicLong likesVersion = new AtomicLong();
+    private final AtomicBoolean training = new AtomicBoolean();
+    private final Clock clock = Clock.systemUTC();
+
+    public AlsRecommender(LikesIndex likesIndex,
+                          @Value("${filmorate.recommendations.als.factors:32}") int factors,
+                          @Value("${filmorate.recommendations.als.iterations:10}") int iterations,
+                          @Value("${filmorate.recommendations.als.regularization:0.1}") double regularization,
+                          @Value("${filmorate.recommendations.als.alpha:40}") double alpha,
+                          @Value("${filmorate.recommendations.als.threads:0}") int threads,
+                          @Value("${filmorate.recommendations.als.hnsw-m:16}") int hnswM,
+                          @Value("${filmorate.recommendations.als.ef-construction:100}") int efConstruction,
+                          @Value("${filmorate.recommendations.als.ef-search:100}") int efSearch,
+                          @Value("${filmorate.recommendations.als.limit:100}") int limit,
+                          @Value("${filmorate.recommendations.als.seed:42}") long seed) {
+        this.likesIndex = likesIndex;
+        this.pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        this.trainer = new AlsTrainer(factors, iterations, regularization, alpha, seed, pool);
+        this.hnswM = hnswM;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.limit = limit;
+        this.seed = seed;
+    }
+
+    /**
+     * Запускает обучение, если лайки изменились с прошлого раза и обучение ещё не идёт.
+     * Первый вызов происходит сразу после старта.
+     */
+    @Scheduled(fixedDelayString = "${filmorate.recommendations.als.retrain-interval-ms:600000}")
+    public void retrain() {
+        Model current = model.get();
+        if (current != null && current.likesVersion() == likesVersion.get()) {
+            return;
+        }
+        if (training.compareAndSet(false, true)) {
+            pool.execute(() -> {
+                try {
+                    model.set(train());
+                } catch (RuntimeException exception) {
+                    log.error("Ошибка обучения ALS-модели", exception);
+                } finally {
+                    training.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Рекомендации или {@code null}, если первая модель ещё не обучена.
+     */
+    public Result recommend(long userId) {
+        Model current = model.get();
+        if (current == null) {
+            return null;
+        }
+        RoaringBitmap liked = likesIndex.getFilms(userId);
+        int[] row = current.rowOf(liked);
+        if (row.length == 0) {
+            return new Result(List.of(), current.trainedAt(), isStale(current));
+        }
+
+        float[] userVector = trainer.foldIn(row, current.filmFactors(), current.gram());
+        int count = Math.min(limit + row.length, current.filmIds().length);
+        int[] nearest = current.index().search(userVector, count, Math.max(efSearch, count));
+        List<Long> filmIds = new ArrayList<>(Math.min(limit, nearest.length));
+        for (int idx = 0; idx < nearest.length && filmIds.size() < limit; idx++) {
+            int filmId = current.filmIds()[nearest[idx]];
+            if (!liked.contains(filmId)) {
+                filmIds.add((long) filmId);
+            }
+        }
+        return new Result(filmIds, current.trainedAt(), isStale(current));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Override
+    public void onLikeAdded(long filmId, long userId) {
+        likesVersion.incrementAndGet();
+    }
+
+    @Override
+    public void onLikeRemoved(long filmId, long userId) {
+        likesVersion.incrementAndGet();
+    }
+
+    @Override
+    public void onFilmDeleted(long filmId) {
+        likesVersion.incrementAndGet();
+    }
+
+    private boolean isStale(Model current) {
+        return current.likesVersion() != likesVersion.get();
+    }
+
+    private Model train() {
+        long start = System.nanoTime();
+        long version = likesVersion.get();
+        List<RoaringBitmap> users = new ArrayList<>();
+        RoaringBitmap films = new RoaringBitmap();
+        likesIndex.forEachUser(userId -> {
+            RoaringBitmap liked = likesIndex.getFilms(userId);
+            if (!liked.isEmpty()) {
+                users.add(liked);
+                films.or(liked);
+            }
+        });
+
+        // Номер фильма в модели — его позиция среди всех лайкнутых фильмов
+        int[][] rows = new int[users.size()][];
+        for (int idx = 0; idx < rows.length; idx++) {
+            rows[idx] = toRow(users.get(idx), films);
+        }
+        int[] filmIds = films.toArray();
+        AlsTrainer.Result result = trainer.train(rows, filmIds.length);
+        HnswIndex index = new HnswIndex(result.filmFactors(), trainer.factors(), hnswM, efConstruction, seed);
+
+        log.info("ALS-модель обучена за {} мс: {} пользователей, {} фильмов, {} факторов",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), rows.length, filmIds.length,
+                trainer.factors());
+        return new Model(filmIds, result.filmFactors(), result.gram(), index, version, Instant.now(clock));
+    }
+
+    private static int[] toRow(RoaringBitmap liked, RoaringBitmap films) {
+        int[] row = new int[liked.getCardinality()];
+        int[] size = new int[1];
+        liked.forEach((int filmId) -> row[size[0]++] = (int) films.rank(filmId) - 1);
+        return row;
+    }
+
+    public record Result(List<Long> filmIds, Instant trainedAt, boolean stale) {
+    }
+
+    private record Model(int[] filmIds, float[] filmFactors, double[] gram, HnswIndex index,
+                         long likesVersion, Instant trainedAt) {
+
+        // Лайки пользователя, переведённые в номера фильмов модели; новые фильмы пропускаются
+        int[] rowOf(RoaringBitmap liked) {
+            int[] row = new int[liked.getCardinality()];
+            int size = 0;
+            for (int filmId : liked.toArray()) {
+                int position = Arrays.binarySearch(filmIds, filmId);
+                if (position >= 0) {
+                    row[size++] = position;
+                }
+            }
+            return size == row.length ? row : Arrays.copyOf(row, size);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Неявный ALS (Hu, Koren, Volinsky): лайк — наблюдение с уверенностью {@code 1 + alpha}, отсутствие
+ * лайка — ноль с уверенностью 1. Попеременно решает задачи наименьших квадратов для векторов
+ * пользователей и фильмов; строки решаются независимо и параллельно в переданном ForkJoinPool.
+ * Векторы хранятся подряд в одном массиве float: строка {@code row} занимает
+ * {@code [row * factors, (row + 1) * factors)}.
+ */
+final class AlsTrainer {
+
+    private static final int GRAM_BLOCK = 4096;
+
+    private final int factors;
+    private final int iterations;
+    private final double regularization;
+    private final double alpha;
+    private final long seed;
+    private final ForkJoinPool pool;
+
+    AlsTrainer(int factors, int iterations, double regularization, double alpha, long seed, ForkJoinPool pool) {
+        this.factors = factors;
+        this.iterations = iterations;
+        this.regularization = regularization;
+        this.alpha = alpha;
+        this.seed = seed;
+        this.pool = pool;
+    }
+
+    int factors() {
+        return factors;
+    }
+
+    /**
+     * Обучает модель по строкам матрицы лайков: {@code userRows[u]} — номера фильмов пользователя
+     * в диапазоне {@code [0, filmCount)}. Возвращает векторы фильмов и их матрицу Грама.
+     */
+    Result train(int[][] userRows, int filmCount) {
+        int[][] filmRows = transpose(userRows, filmCount);
+        float[] userFactors = new float[userRows.length * factors];
+        float[] filmFactors = randomFactors(filmCount);
+
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            solveAll(userRows, filmFactors, filmCount, userFactors);
+            solveAll(filmRows, userFactors, userRows.length, filmFactors);
+        }
+        return new Result(filmFactors, gram(filmFactors, filmCount));
+    }
+
+    /**
+     * Вектор пользователя при фиксированных векторах фильмов — тот же шаг, что и при обучении.
+     * Позволяет учитывать лайки, поставленные после обучения модели.
+     */
+    float[] foldIn(int[] row, float[] filmFactors, double[] gram) {
+        float[] result = new float[factors];
+        solveRow(row, filmFactors, gram, result, 0, new double[factors * factors], new double[factors]);
+        return result;
+    }
+
+    private void solveAll(int[][] rows, float[] fixed, int fixedCount, float[] target) {
+        double[] gram = gram(fixed, fixedCount);
+        run(() -> IntStream.range(0, rows.length).parallel().forEach(row -> {
+            if (rows[row].length > 0) {
+                solveRow(rows[row], fixed, gram, target, row * factors,
+                        new double[factors * factors], new double[factors]);
+            }
+        }));
+    }
+
+    // A = YᵀY + alpha * Σ y_i y_iᵀ + λI, b = (1 + alpha) * Σ y_i по отмеченным строкам
+    private void solveRow(int[] row, float[] fixed, double[] gram, float[] target, int targetOffset,
+                          double[] matrix, double[] vector) {
+        System.arraycopy(gram, 0, matrix, 0, matrix.length);
+        for (int idx = 0; idx < factors; idx++) {
+            matrix[idx * factors + idx] += regularization;
+        }
+        for (int other : row) {
+            int offset = other * factors;
+            for (int a = 0; a < factors; a++) {
+                double value = fixed[offset + a];
+                vector[a] += (1 + alpha) * value;
+                double scaled = alpha * value;
+                for (int b = 0; b <= a; b++) {
+                    matrix[a * factors + b] += scaled * fixed[offset + b];
+                }
+            }
+        }
+        choleskySolve(matrix, vector);
+        for (int idx = 0; idx < factors; idx++) {
+            target[targetOffset + idx] = (float) vector[idx];
+        }
+    }
+
+    // Разложение Холецкого по нижнему треугольнику на месте, затем прямой и обратный ход
+    private void choleskySolve(double[] matrix, double[] vector) {
+        int n = factors;
+        for (int j = 0; j < n; j++) {
+            double diagonal = matrix[j * n + j];
+            for (int k = 0; k < j; k++) {
+                diagonal -= matrix[j * n + k] * matrix[j * n + k];
+            }
+            diagonal = Math.sqrt(diagonal);
+            matrix[j * n + j] = diagonal;
+            for (int i = j + 1; i < n; i++) {
+                double value = matrix[i * n + j];
+                for (int k = 0; k < j; k++) {
+                    value -= matrix[i * n + k] * matrix[j * n + k];
+                }
+                matrix[i * n + j] = value / diagonal;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            double value = vector[i];
+            for (int k = 0; k < i; k++) {
+                value -= matrix[i * n + k] * vector[k];
+            }
+            vector[i] = value / matrix[i * n + i];
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            double value = vector[i];
+            for (int k = i + 1; k < n; k++) {
+                value -= matrix[k * n + i] * vector[k];
+            }
+            vector[i] = value / matrix[i * n + i];
+        }
+    }
+
+    // Нижний треугольник YᵀY: частичные суммы по блокам строк складываются после параллельного прохода
+    private double[] gram(float[] vectors, int count) {
+        int blocks = (count + GRAM_BLOCK - 1) / GRAM_BLOCK;
+        double[] result = new double[factors * factors];
+        double[][] partial = new double[blocks][];
+        run(() -> IntStream.range(0, blocks).parallel().forEach(block -> {
+            double[] sum = new double[factors * factors];
+            int to = Math.min(count, (block + 1) * GRAM_BLOCK);
+            for (int row = block * GRAM_BLOCK; row < to; row++) {
+                int offset = row * factors;
+                for (int a = 0; a < factors; a++) {
+                    double value = vectors[offset + a];
+                    for (int b = 0; b <= a; b++) {
+                        sum[a * factors + b] += value * vectors[offset + b];
+                    }
+                }
+            }
+            partial[block] = sum;
+        }));
+        for (double[] sum : partial) {
+            for (int idx = 0; idx < result.length; idx++) {
+                result[idx] += sum[idx];
+            }
+        }
+        return result;
+    }
+
+    private float[] randomFactors(int count) {
+        Random random = new Random(seed);
+        float[] result = new float[count * factors];
+        double scale = 1 / Math.sqrt(factors);
+        for (int idx = 0; idx < result.length; idx++) {
+            result[idx] = (float) (random.nextGaussian() * scale);
+        }
+        return result;
+    }
+
+    private static int[][] transpose(int[][] rows, int columnCount) {
+        int[] sizes = new int[columnCount];
+        for (int[] row : rows) {
+            for (int column : row) {
+                sizes[column]++;
+            }
+        }
+        int[][] result = new int[columnCount][];
+        for (int column = 0; column < columnCount; column++) {
+            result[column] = new int[sizes[column]];
+            sizes[column] = 0;
+        }
+        for (int row = 0; row < rows.length; row++) {
+            for (int column : rows[row]) {
+                result[column][sizes[column]++] = row;
+            }
+        }
+        return result;
+    }
+
+    // Параллельный поток, запущенный из задачи пула, выполняется в этом же пуле
+    private void run(Runnable task) {
+        pool.submit(task).join();
+    }
+
+    record Result(float[] filmFactors, double[] gram) {
+    }
+}
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.index;
+
+/**
+ * Ядро сходства по упакованным битовым наборам лайков: бит i слова w соответствует фильму 64 * w + i.
+ * Сходство по Жаккару считается как popcount(a AND b) / popcount(a OR b).
+ * Через ядро {@link LikesIndex} считает общие фильмы пользователей, в том числе для кандидатов
+ * в соседи в {@link RecommendationIndex}.
+ */
+public interface BitsetKernel {
+
+    int andCount(long[] left, long[] right);
+
+    int orCount(long[] left, long[] right);
+
+    default double jaccard(long[] left, long[] right) {
+        int union = orCount(left, right);
+        return union == 0 ? 0 : (double) andCount(left, right) / union;
+    }
+
+    /**
+     * Сходство одного набора со всеми строками матрицы, записанной подряд по {@code row.length} слов.
+     */
+    void jaccardAll(long[] row, long[] matrix, double[] scores);
+
+    /**
+     * Размер пересечения набора с каждой из первых {@code rows} строк матрицы.
+     */
+    void andCountAll(long[] row, long[] matrix, int rows, int[] counts);
+
+    /**
+     * Векторная реализация, если JVM запущена с модулем jdk.incubator.vector, иначе скалярная.
+     */
+    static BitsetKernel best() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            return new VectorBitsetKernel();
+        }
+        return new ScalarBitsetKernel();
+    }
+}
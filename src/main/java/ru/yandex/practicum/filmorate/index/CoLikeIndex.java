@@ -0,0 +1,313 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static ru.yandex.practicum.filmorate.index.LikesIndex.toInt;
+
+/**
+ * Похожие фильмы по совместным лайкам. Для каждого фильма хранится счётчик совместных лайков
+ * с другими фильмами; лайк пользователя увеличивает счётчики пар «новый фильм — каждый из его
+ * прежних фильмов». Чтобы память не росла квадратично, у фильма остаются только самые частые
+ * соседи: при переполнении список обрезается сразу, а фоновая задача периодически обрезает все
+ * списки до top-N. Если пара отсутствует в уже обрезанном списке, её счётчик при новом совместном
+ * лайке не начинается с нуля, а восстанавливается точно — пересечением столбцов двух фильмов
+ * в {@link RecommendationIndex}. При загрузке списки строятся по тем же столбцам сразу точными.
+ * Загрузка стоит Σ(лайков пользователя)² и идёт в фоне: пока она не закончена, похожие фильмы
+ * считаются по столбцам на запрос, а изменения лишь помечают затронутые фильмы для пересчёта.
+ */
+@Slf4j
+@Component
+public class CoLikeIndex implements FilmIndexListener {
+
+    // Во сколько раз список соседей может вырасти сверх top-N до немедленной обрезки
+    private static final int PRUNE_SLACK = 4;
+
+    private final LikesIndex likesIndex;
+    private final RecommendationIndex recommendationIndex;
+    private final Map<Integer, Neighbours> neighboursByFilm = new ConcurrentHashMap<>();
+    private final int topN;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    // Пока идёт загрузка, изменения копятся здесь и применяются загрузкой перед готовностью
+    private final Object loadLock = new Object();
+    private final Set<Integer> staleFilms = new HashSet<>();
+    private final Set<Integer> deletedFilms = new HashSet<>();
+    private volatile boolean ready = true;
+
+    public CoLikeIndex(LikesIndex likesIndex,
+                       RecommendationIndex recommendationIndex,
+                       @Value("${filmorate.similar.top-n:50}") int topN) {
+        this.likesIndex = likesIndex;
+        this.recommendationIndex = recommendationIndex;
+        this.topN = topN;
+    }
+
+    @PostConstruct
+    public void loadInBackground() {
+        ready = false;
+        executor.execute(() -> {
+            try {
+                load();
+            } catch (RuntimeException exception) {
+                log.error("Ошибка загрузки индекса совместных лайков", exception);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Строит списки по столбцам {@link RecommendationIndex}: для каждого фильма считает совместные
+     * лайки со всеми фильмами его пользователей и сразу оставляет top-N, так что в памяти одновременно
+     * лежит только один полный список. Затем пересчитывает фильмы, изменившиеся за время загрузки.
+     */
+    public void load() {
+        synchronized (loadLock) {
+            ready = false;
+        }
+        neighboursByFilm.clear();
+        recommendationIndex.forEachColumn((users, filmId) -> rebuild(filmId, users));
+        while (true) {
+            List<Integer> stale;
+            List<Integer> deleted;
+            synchronized (loadLock) {
+                if (staleFilms.isEmpty() && deletedFilms.isEmpty()) {
+                    ready = true;
+                    break;
+                }
+                stale = new ArrayList<>(staleFilms);
+                deleted = new ArrayList<>(deletedFilms);
+                staleFilms.clear();
+                deletedFilms.clear();
+            }
+            deleted.forEach(this::drop);
+            stale.forEach(filmId -> rebuild(filmId, recommendationIndex.getUsers(filmId)));
+        }
+        log.info("Индекс совместных лайков загружен: {} фильмов", neighboursByFilm.size());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Фильмы, чаще всего лайкнутые вместе с данным, по убыванию числа совместных лайков.
+     */
+    public List<Long> getSimilar(long filmId, int count) {
+        List<Neighbour> top;
+        if (!ready) {
+            top = top(countCoLikes(toInt(filmId), recommendationIndex.getUsers(filmId)), count);
+        } else {
+            Neighbours neighbours = neighboursByFilm.get(toInt(filmId));
+            if (neighbours == null) {
+                return List.of();
+            }
+            synchronized (neighbours) {
+                top = top(neighbours.counts, count);
+            }
+        }
+        return top.stream()
+                .map(neighbour -> (long) neighbour.filmId())
+                .toList();
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.similar.prune-interval-ms:60000}",
+            initialDelayString = "${filmorate.similar.prune-interval-ms:60000}")
+    public void prune() {
+        int pruned = 0;
+        for (Neighbours neighbours : neighboursByFilm.values()) {
+            synchronized (neighbours) {
+                if (neighbours.counts.size() > topN) {
+                    neighbours.prune(topN);
+                    pruned++;
+                }
+            }
+        }
+        if (pruned > 0) {
+            log.debug("Списки похожих фильмов обрезаны до {} у {} фильмов", topN, pruned);
+        }
+    }
+
+    @Override
+    public void onLikeAdded(long filmId, long userId) {
+        if (markStale(filmId, userId)) {
+            return;
+        }
+        // LikesIndex уже учёл лайк, поэтому сам фильм пропускаем
+        int film = toInt(filmId);
+        int user = toInt(userId);
+        likesIndex.forEachFilm(userId, other -> {
+            if (other != film) {
+                change(film, other, 1, user);
+                change(other, film, 1, user);
+            }
+        });
+    }
+
+    @Override
+    public void onLikeRemoved(long filmId, long userId) {
+        if (markStale(filmId, userId)) {
+            return;
+        }
+        int film = toInt(filmId);
+        int user = toInt(userId);
+        likesIndex.forEachFilm(userId, other -> {
+            if (other != film) {
+                change(film, other, -1, user);
+                change(other, film, -1, user);
+            }
+        });
+    }
+
+    @Override
+    public void onFilmDeleted(long filmId) {
+        if (!ready) {
+            synchronized (loadLock) {
+                if (!ready) {
+                    deletedFilms.add(toInt(filmId));
+                    staleFilms.remove(toInt(filmId));
+                    return;
+                }
+            }
+        }
+        drop(toInt(filmId));
+    }
+
+    // Во время загрузки помечает фильм и все фильмы пользователя: у них меняется пара с этим фильмом
+    private boolean markStale(long filmId, long userId) {
+        if (ready) {
+            return false;
+        }
+        synchronized (loadLock) {
+            if (ready) {
+                return false;
+            }
+            staleFilms.add(toInt(filmId));
+            likesIndex.forEachFilm(userId, staleFilms::add);
+            return true;
+        }
+    }
+
+    private void rebuild(int filmId, RoaringBitmap users) {
+        Neighbours neighbours = new Neighbours();
+        neighbours.counts = countCoLikes(filmId, users);
+        if (neighbours.counts.size() > topN) {
+            neighbours.prune(topN);
+        }
+        if (neighbours.counts.size() > 0) {
+            neighboursByFilm.put(filmId, neighbours);
+        } else {
+            neighboursByFilm.remove(filmId);
+        }
+    }
+
+    private IntDoubleMap countCoLikes(int filmId, RoaringBitmap users) {
+        IntDoubleMap counts = new IntDoubleMap();
+        users.forEach((int userId) -> likesIndex.forEachFilm(userId, other -> {
+            if (other != filmId) {
+                counts.add(other, 1);
+            }
+        }));
+        return counts;
+    }
+
+    private void drop(int film) {
+        neighboursByFilm.remove(film);
+        // Список удалённого фильма мог быть обрезан, поэтому обратные ссылки ищем у всех фильмов
+        for (Neighbours neighbours : neighboursByFilm.values()) {
+            synchronized (neighbours) {
+                if (neighbours.counts.get(film) != 0) {
+                    neighbours.drop(film);
+                }
+            }
+        }
+    }
+
+    private void change(int filmId, int otherId, int delta, int userId) {
+        Neighbours neighbours = delta > 0
+                ? neighboursByFilm.computeIfAbsent(filmId, id -> new Neighbours())
+                : neighboursByFilm.get(filmId);
+        if (neighbours == null) {
+            return;
+        }
+        synchronized (neighbours) {
+            double current = neighbours.counts.get(otherId);
+            if (delta < 0 && current <= 0) {
+                return;
+            }
+            if (delta > 0 && current <= 0 && neighbours.pruned) {
+                // Пару могли обрезать: прежние совместные лайки берём из столбцов без этого пользователя,
+                // а текущий прибавляем сами
+                delta += recommendationIndex.countCommonUsers(filmId, otherId, userId) - (int) current;
+            }
+            neighbours.counts.add(otherId, delta);
+            if (neighbours.counts.size() > topN * PRUNE_SLACK) {
+                neighbours.prune(topN);
+            }
+        }
+    }
+
+    private static List<Neighbour> top(IntDoubleMap counts, int count) {
+        PriorityQueue<Neighbour> heap = new PriorityQueue<>(count + 1, Neighbour.ORDER);
+        counts.forEach((filmId, coLikes) -> {
+            if (coLikes <= 0) {
+                return;
+            }
+            Neighbour neighbour = new Neighbour(filmId, coLikes);
+            if (heap.size() < count) {
+                heap.add(neighbour);
+            } else if (Neighbour.ORDER.compare(neighbour, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(neighbour);
+            }
+        });
+        List<Neighbour> result = new ArrayList<>(heap);
+        result.sort(Neighbour.ORDER.reversed());
+        return result;
+    }
+
+    private record Neighbour(int filmId, double coLikes) {
+        // Возрастание «качества»: меньше совместных лайков, затем больший id
+        private static final Comparator<Neighbour> ORDER = Comparator
+                .comparingDouble(Neighbour::coLikes)
+                .thenComparing(Neighbour::filmId, Comparator.reverseOrder());
+    }
+
+    private static final class Neighbours {
+        private IntDoubleMap counts = new IntDoubleMap();
+        // Список уже обрезался, и отсутствие пары не означает, что совместных лайков не было
+        private boolean pruned;
+
+        private void prune(int keep) {
+            pruned = true;
+            IntDoubleMap kept = new IntDoubleMap(keep);
+            for (Neighbour neighbour : top(counts, keep)) {
+                kept.add(neighbour.filmId(), neighbour.coLikes());
+            }
+            counts = kept;
+        }
+
+        private void drop(int filmId) {
+            IntDoubleMap kept = new IntDoubleMap(counts.size());
+            counts.forEach((other, coLikes) -> {
+                if (other != filmId && coLikes > 0) {
+                    kept.add(other, coLikes);
+                }
+            });
+            counts = kept;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static ru.yandex.practicum.filmorate.index.LikesIndex.toInt;
+
+/**
+ * Полнотекстовый поиск по описаниям фильмов. Инвертированный индекс хранит для каждого слова
+ * фильмы по возрастанию id вместе с числом вхождений; оценка BM25 умножается на
+ * {@code 1 + w * ln(1 + лайки)}. Оценки копятся в {@link IntDoubleMap}, лучшие отбираются
+ * ограниченной кучей, так что запрос из частых слов не сортирует все совпадения.
+ */
+@Slf4j
+@Component
+@Order(3)
+public class DescriptionIndex implements FilmIndexListener {
+
+    // Обычные параметры BM25: насыщение частоты слова и поправка на длину описания
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final Comparator<Scored> BY_SCORE = Comparator
+            .comparingDouble(Scored::score)
+            .thenComparing(Scored::filmId, Comparator.reverseOrder());
+
+    private final FilmStorage filmStorage;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final double popularityWeight;
+    private final int limit;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> postings = new HashMap<>();
+    // Слова описания каждого фильма, чтобы при обновлении убрать его из списков
+    private final Map<Integer, String[]> wordsByFilm = new HashMap<>();
+    // Число слов в описании, строка — id фильма
+    private int[] lengths = new int[0];
+    private long totalLength;
+
+    public DescriptionIndex(@Qualifier("filmDbStorage") FilmStorage filmStorage,
+                            PopularFilmsIndex popularFilmsIndex,
+                            @Value("${filmorate.search.description.popularity-weight:0.1}") double popularityWeight,
+                            @Value("${filmorate.search.description.limit:100}") int limit) {
+        this.filmStorage = filmStorage;
+        this.popularFilmsIndex = popularFilmsIndex;
+        this.popularityWeight = popularityWeight;
+        this.limit = limit;
+    }
+
+    @PostConstruct
+    public void load() {
+        filmStorage.streamAll(films -> films.forEach(this::onFilmSaved));
+        log.info("Индекс описаний загружен: {} фильмов, {} слов", wordsByFilm.size(), postings.size());
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * До {@code limit} фильмов, в описании которых есть слова запроса, по убыванию BM25 с учётом лайков.
+     */
+    public List<Long> search(String query) {
+        Set<String> words = new LinkedHashSet<>(FilmSearchIndex.splitWords(FilmSearchIndex.normalize(query)));
+        IntDoubleMap scores = new IntDoubleMap();
+        lock.readLock().lock();
+        try {
+            int films = wordsByFilm.size();
+            if (films == 0) {
+                return List.of();
+            }
+            double averageLength = (double) totalLength / films;
+            for (String word : words) {
+                Postings list = postings.get(word);
+                if (list == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (films - list.size + 0.5) / (list.size + 0.5));
+                for (int idx = 0; idx < list.size; idx++) {
+                    int filmId = list.films[idx];
+                    int frequency = list.frequencies[idx];
+                    double norm = K1 * (1 - B + B * lengths[filmId] / averageLength);
+                    scores.add(filmId, idf * frequency * (K1 + 1) / (frequency + norm));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        PriorityQueue<Scored> best = new PriorityQueue<>(limit + 1, BY_SCORE);
+        scores.forEach((filmId, score) -> {
+            double blended = score * (1 + popularityWeight * Math.log1p(popularFilmsIndex.getLikes(filmId)));
+            if (best.size() < limit) {
+                best.add(new Scored(filmId, blended));
+            } else if (blended > best.peek().score()) {
+                best.poll();
+                best.add(new Scored(filmId, blended));
+            }
+        });
+        List<Scored> result = new ArrayList<>(best);
+        result.sort(BY_SCORE.reversed());
+        return result.stream()
+                .map(scored -> (long) scored.filmId())
+                .toList();
+    }
+
+    @Override
+    public void onFilmSaved(Film film) {
+        int filmId = toInt(film.getId());
+        List<String> words = film.getDescription() == null
+                ? List.of()
+                : FilmSearchIndex.splitWords(FilmSearchIndex.normalize(film.getDescription()));
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String word : words) {
+            frequencies.merge(word, 1, Integer::sum);
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeFilm(filmId);
+            if (words.isEmpty()) {
+                return;
+            }
+            frequencies.forEach((word, frequency) ->
+                    postings.computeIfAbsent(word, key -> new Postings()).add(filmId, frequency));
+            wordsByFilm.put(filmId, frequencies.keySet().toArray(String[]::new));
+            if (filmId >= lengths.length) {
+                lengths = Arrays.copyOf(lengths, Math.max(filmId + 1, lengths.length * 2));
+            }
+            lengths[filmId] = words.size();
+            totalLength += words.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onFilmDeleted(long filmId) {
+        lock.writeLock().lock();
+        try {
+            removeFilm(toInt(filmId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeFilm(int filmId) {
+        String[] words = wordsByFilm.remove(filmId);
+        if (words == null) {
+            return;
+        }
+        for (String word : words) {
+            postings.computeIfPresent(word, (key, list) -> {
+                list.remove(filmId);
+                return list.size == 0 ? null : list;
+            });
+        }
+        totalLength -= lengths[filmId];
+        lengths[filmId] = 0;
+    }
+
+    // Фильмы по возрастанию id и число вхождений слова; новые фильмы обычно дописываются в конец
+    private static final class Postings {
+
+        private int[] films = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+
+        void add(int filmId, int frequency) {
+            int position = Arrays.binarySearch(films, 0, size, filmId);
+            if (position >= 0) {
+                frequencies[position] = frequency;
+                return;
+            }
+            position = -position - 1;
+            if (size == films.length) {
+                films = Arrays.copyOf(films, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            System.arraycopy(films, position, films, position + 1, size - position);
+            System.arraycopy(frequencies, position, frequencies, position + 1, size - position);
+            films[position] = filmId;
+            frequencies[position] = frequency;
+            size++;
+        }
+
+        void remove(int filmId) {
+            int position = Arrays.binarySearch(films, 0, size, filmId);
+            if (position < 0) {
+                return;
+            }
+            System.arraycopy(films, position + 1, films, position, size - position - 1);
+            System.arraycopy(frequencies, position + 1, frequencies, position, size - position - 1);
+            size--;
+        }
+    }
+
+    private record Scored(int filmId, double score) {
+    }
+}
@@ -0,0 +1,408 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.MpaStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static ru.yandex.practicum.filmorate.index.LikesIndex.toInt;
+
+/**
+ * Признаки фильмов для рекомендаций по содержанию: жанры, режиссёры, рейтинг MPA и десятилетие
+ * выхода. Жанры, MPA и десятилетие лежат плотной строкой в одном массиве float, строки идут подряд
+ * без дыр, а номер строки фильма хранит отдельная таблица, так что размер массива зависит от числа
+ * фильмов, а не от наибольшего идентификатора. Жанры и MPA занимают плотные номера: при загрузке
+ * по справочникам, а незнакомый идентификатор получает следующий номер с расширением раскладки,
+ * так что разные значения не делят одну координату. Режиссёров неограниченно много, поэтому у строки
+ * есть список их идентификаторов и общий нормированный вес: каждый режиссёр — своя координата
+ * вектора, без склеивания по остатку. Профиль пользователя — сумма векторов понравившихся фильмов.
+ * Обновляется раньше {@link UserAffinityIndex}, который пересчитывает профили по новым векторам.
+ */
+@Slf4j
+@Component
+@Order(1)
+public class FilmFeatureIndex implements FilmIndexListener {
+
+    // Раскладка плотной части: жанры и MPA по плотным номерам, затем десятилетие
+    private static final int DECADE_SLOTS = 16;
+    private static final int FIRST_DECADE = 1890;
+    private static final int INITIAL_ROWS = 16;
+    private static final int INITIAL_SLOTS = 8;
+
+    private static final float GENRE_WEIGHT = 1f;
+    private static final float DIRECTOR_WEIGHT = 1f;
+    private static final float MPA_WEIGHT = 0.5f;
+    private static final float DECADE_WEIGHT = 0.5f;
+
+    private final FilmStorage filmStorage;
+    private final GenreStorage genreStorage;
+    private final MpaStorage mpaStorage;
+    private final int limit;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Плотные номера жанров и MPA по их идентификаторам
+    private final Map<Long, Integer> genreSlots = new HashMap<>();
+    private final Map<Long, Integer> mpaSlots = new HashMap<>();
+    private int genreCapacity = INITIAL_SLOTS;
+    private int mpaCapacity = INITIAL_SLOTS;
+    private int dimension = INITIAL_SLOTS * 2 + DECADE_SLOTS;
+    // Номер строки по идентификатору фильма; удалённую строку занимает последняя
+    private final Map<Integer, Integer> rows = new HashMap<>();
+    private int[] filmIds = new int[0];
+    private float[] features = new float[0];
+    private int[][] directors = new int[0][];
+    private float[] directorWeights = new float[0];
+    private int size;
+
+    public FilmFeatureIndex(@Qualifier("filmDbStorage") FilmStorage filmStorage,
+                            @Qualifier("genreDbStorage") GenreStorage genreStorage,
+                            @Qualifier("mpaDbStorage") MpaStorage mpaStorage,
+                            @Value("${filmorate.recommendations.content.limit:100}") int limit) {
+        this.filmStorage = filmStorage;
+        this.genreStorage = genreStorage;
+        this.mpaStorage = mpaStorage;
+        this.limit = limit;
+    }
+
+    @PostConstruct
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            genreStorage.findAll().forEach(genre -> slotOf(genreSlots, genre.getId()));
+            mpaStorage.findAll().forEach(mpa -> slotOf(mpaSlots, mpa.getId()));
+            relayout(Math.max(1, genreSlots.size()), Math.max(1, mpaSlots.size()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        filmStorage.streamAll(films -> films.forEach(this::onFilmSaved));
+        log.info("Признаки фильмов загружены: {} фильмов, размерность {} и режиссёры", size, dimension);
+    }
+
+    /**
+     * Фильмы, ближайшие к профилю пользователя по скалярному произведению, кроме уже понравившихся.
+     */
+    public List<Long> recommend(RoaringBitmap liked) {
+        IntDoubleMap directorProfile = new IntDoubleMap();
+        TopFilms top = new TopFilms(limit);
+        lock.readLock().lock();
+        try {
+            float[] profile = new float[dimension];
+            liked.forEach((int filmId) -> {
+                Integer row = rows.get(filmId);
+                if (row != null) {
+                    int offset = row * dimension;
+                    for (int idx = 0; idx < dimension; idx++) {
+                        profile[idx] += features[offset + idx];
+                    }
+                    for (int directorId : directors[row]) {
+                        directorProfile.add(directorId, directorWeights[row]);
+                    }
+                }
+            });
+
+            for (int row = 0, offset = 0; row < size; row++, offset += dimension) {
+                if (liked.contains(filmIds[row])) {
+                    continue;
+                }
+                float score = 0;
+                for (int idx = 0; idx < dimension; idx++) {
+                    score += profile[idx] * features[offset + idx];
+                }
+                for (int directorId : directors[row]) {
+                    score += (float) (directorWeights[row] * directorProfile.get(directorId));
+                }
+                if (score > 0) {
+                    top.offer(filmIds[row], score);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return top.toList();
+    }
+
+    /**
+     * Прибавляет к профилю жанры и режиссёров фильма с весом {@code weight}.
+     */
+    void addAffinity(int filmId, Affinity profile, float weight) {
+        lock.readLock().lock();
+        try {
+            Integer row = rows.get(filmId);
+            if (row == null) {
+                return;
+            }
+            int offset = row * dimension;
+            synchronized (profile) {
+                if (profile.genres.length < genreCapacity) {
+                    profile.genres = Arrays.copyOf(profile.genres, genreCapacity);
+                }
+                for (int idx = 0; idx < genreCapacity; idx++) {
+                    profile.genres[idx] += weight * features[offset + idx];
+                }
+                for (int directorId : directors[row]) {
+                    profile.directors.add(directorId, weight * directorWeights[row]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Скалярное произведение жанров и режиссёров фильма с профилем.
+     */
+    float affinity(int filmId, Affinity profile) {
+        lock.readLock().lock();
+        try {
+            Integer row = rows.get(filmId);
+            if (row == null) {
+                return 0;
+            }
+            int offset = row * dimension;
+            float score = 0;
+            synchronized (profile) {
+                for (int idx = 0, slots = Math.min(genreCapacity, profile.genres.length); idx < slots; idx++) {
+                    score += profile.genres[idx] * features[offset + idx];
+                }
+                for (int directorId : directors[row]) {
+                    score += (float) (directorWeights[row] * profile.directors.get(directorId));
+                }
+            }
+            return score;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onFilmSaved(Film film) {
+        int filmId = toInt(film.getId());
+        int[] filmDirectors = film.getDirectors().stream()
+                .mapToInt(director -> toInt(director.getId()))
+                .distinct()
+                .toArray();
+        lock.writeLock().lock();
+        try {
+            int[] genres = film.getGenres().stream()
+                    .mapToInt(genre -> slotOf(genreSlots, genre.getId()))
+                    .toArray();
+            int mpa = film.getMpa() != null ? slotOf(mpaSlots, film.getMpa().getId()) : -1;
+            if (genreSlots.size() > genreCapacity || mpaSlots.size() > mpaCapacity) {
+                relayout(Math.max(genreSlots.size(), genreCapacity * 2), Math.max(mpaSlots.size(), mpaCapacity * 2));
+            }
+            float[] vector = new float[dimension];
+            float directorWeight = vectorOf(genres, mpa, film.getReleaseDate(), filmDirectors.length, vector);
+            Integer row = rows.get(filmId);
+            if (row == null) {
+                if (size == filmIds.length) {
+                    grow();
+                }
+                row = size++;
+                rows.put(filmId, row);
+                filmIds[row] = filmId;
+            }
+            System.arraycopy(vector, 0, features, row * dimension, dimension);
+            directors[row] = filmDirectors;
+            directorWeights[row] = directorWeight;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onFilmDeleted(long filmId) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rows.remove(toInt(filmId));
+            if (row == null) {
+                return;
+            }
+            int last = --size;
+            if (row != last) {
+                filmIds[row] = filmIds[last];
+                System.arraycopy(features, last * dimension, features, row * dimension, dimension);
+                directors[row] = directors[last];
+                directorWeights[row] = directorWeights[last];
+                rows.put(filmIds[row], row);
+            }
+            directors[last] = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void grow() {
+        int capacity = Math.max(INITIAL_ROWS, filmIds.length * 2);
+        filmIds = Arrays.copyOf(filmIds, capacity);
+        features = Arrays.copyOf(features, capacity * dimension);
+        directors = Arrays.copyOf(directors, capacity);
+        directorWeights = Arrays.copyOf(directorWeights, capacity);
+    }
+
+    private static int slotOf(Map<Long, Integer> slots, long id) {
+        Integer slot = slots.get(id);
+        if (slot == null) {
+            slot = slots.size();
+            slots.put(id, slot);
+        }
+        return slot;
+    }
+
+    // Переносит строки в раскладку с новым числом мест под жанры и MPA; вызывается под блокировкой записи
+    private void relayout(int newGenreCapacity, int newMpaCapacity) {
+        int newDimension = newGenreCapacity + newMpaCapacity + DECADE_SLOTS;
+        float[] relaid = new float[filmIds.length * newDimension];
+        for (int row = 0; row < size; row++) {
+            int from = row * dimension;
+            int to = row * newDimension;
+            System.arraycopy(features, from, relaid, to, genreCapacity);
+            System.arraycopy(features, from + genreCapacity, relaid, to + newGenreCapacity, mpaCapacity);
+            System.arraycopy(features, from + genreCapacity + mpaCapacity,
+                    relaid, to + newGenreCapacity + newMpaCapacity, DECADE_SLOTS);
+        }
+        features = relaid;
+        genreCapacity = newGenreCapacity;
+        mpaCapacity = newMpaCapacity;
+        dimension = newDimension;
+    }
+
+    // Заполняет плотную часть нормированного вектора и возвращает нормированный вес каждого режиссёра
+    private float vectorOf(int[] genres, int mpa, LocalDate releaseDate, int directorCount, float[] vector) {
+        for (int genre : genres) {
+            vector[genre] = GENRE_WEIGHT;
+        }
+        if (mpa >= 0) {
+            vector[genreCapacity + mpa] = MPA_WEIGHT;
+        }
+        if (releaseDate != null) {
+            int decade = (releaseDate.getYear() - FIRST_DECADE) / 10;
+            vector[genreCapacity + mpaCapacity + Math.max(0, Math.min(DECADE_SLOTS - 1, decade))] = DECADE_WEIGHT;
+        }
+
+        float norm = directorCount * DIRECTOR_WEIGHT * DIRECTOR_WEIGHT;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0) {
+            return 0;
+        }
+        norm = (float) Math.sqrt(norm);
+        for (int idx = 0; idx < dimension; idx++) {
+            vector[idx] /= norm;
+        }
+        return DIRECTOR_WEIGHT / norm;
+    }
+
+    /**
+     * Сумма жанров и режиссёров нескольких фильмов. Изменяется и читается под собственным монитором.
+     */
+    static final class Affinity {
+        private float[] genres = new float[0];
+        private final IntDoubleMap directors = new IntDoubleMap();
+
+        synchronized double norm() {
+            double[] norm = {0};
+            for (float value : genres) {
+                norm[0] += value * value;
+            }
+            directors.forEach((directorId, value) -> norm[0] += value * value);
+            return Math.sqrt(norm[0]);
+        }
+    }
+
+    // Ограниченная куча лучших фильмов: в корне худший из отобранных, при равной оценке — больший id
+    private static final class TopFilms {
+        private final int[] ids;
+        private final float[] scores;
+        private int size;
+
+        private TopFilms(int limit) {
+            ids = new int[limit];
+            scores = new float[limit];
+        }
+
+        private void offer(int filmId, float score) {
+            if (size < ids.length) {
+                ids[size] = filmId;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (size > 0 && worse(scores[0], ids[0], score, filmId)) {
+                ids[0] = filmId;
+                scores[0] = score;
+                siftDown();
+            }
+        }
+
+        private List<Long> toList() {
+            Integer[] order = new Integer[size];
+            for (int idx = 0; idx < size; idx++) {
+                order[idx] = idx;
+            }
+            Arrays.sort(order, Comparator.comparingDouble((Integer idx) -> scores[idx]).reversed()
+                    .thenComparingInt(idx -> ids[idx]));
+            List<Long> result = new ArrayList<>(size);
+            for (Integer idx : order) {
+                result.add((long) ids[idx]);
+            }
+            return result;
+        }
+
+        private static boolean worse(float score, int filmId, float otherScore, int otherId) {
+            return score < otherScore || score == otherScore && filmId > otherId;
+        }
+
+        private void siftUp(int position) {
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (!worse(scores[position], ids[position], scores[parent], ids[parent])) {
+                    break;
+                }
+                swap(position, parent);
+                position = parent;
+            }
+        }
+
+        private void siftDown() {
+            int position = 0;
+            while (true) {
+                int child = position * 2 + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && worse(scores[child + 1], ids[child + 1], scores[child], ids[child])) {
+                    child++;
+                }
+                if (!worse(scores[child], ids[child], scores[position], ids[position])) {
+                    break;
+                }
+                swap(position, child);
+                position = child;
+            }
+        }
+
+        private void swap(int left, int right) {
+            int id = ids[left];
+            ids[left] = ids[right];
+            ids[right] = id;
+            float score = scores[left];
+            scores[left] = scores[right];
+            scores[right] = score;
+        }
+    }
+}
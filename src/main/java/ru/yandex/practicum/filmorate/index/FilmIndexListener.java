@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.index;
+
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+
+/**
+ * Подписчик на изменения фильмов и лайков, поддерживающий своё представление данных в памяти.
+ * Вызывается сервисами после того, как изменение записано в БД.
+ */
+public interface FilmIndexListener {
+
+    default void onFilmSaved(Film film) {
+    }
+
+    default void onFilmDeleted(long filmId) {
+    }
+
+    default void onLikeAdded(long filmId, long userId) {
+    }
+
+    default void onLikeRemoved(long filmId, long userId) {
+    }
+
+    /**
+     * Пользователь удалён. Вызывается до {@link #onLikeRemoved} для каждого из его лайков.
+     */
+    default void onUserDeleted(long userId) {
+    }
+
+    default void onDirectorSaved(Director director) {
+    }
+
+    default void onDirectorDeleted(long directorId) {
+    }
+}
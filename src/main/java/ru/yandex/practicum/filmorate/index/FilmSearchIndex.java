@@ -0,0 +1,427 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.ObjIntConsumer;
+
+import static ru.yandex.practicum.filmorate.index.LikesIndex.toInt;
+
+/**
+ * Поиск подстроки в названиях фильмов и именах режиссёров по триграммному инвертированному индексу.
+ * Для каждой триграммы хранится битмап фильмов (по названию) и режиссёров (по имени); кандидаты —
+ * пересечение битмапов триграмм запроса, затем подстрока проверяется на самой строке. Запросы
+ * короче трёх символов проверяются перебором строк в памяти. Найденное упорядочивается по лайкам.
+ * Для нечёткого поиска слова названий и имён лежат в {@link LevenshteinTrie}: каждое слово запроса
+ * ищется с допуском в 1–2 правки, фильм должен подойти по всем словам.
+ */
+@Slf4j
+@Component
+@Order(3)
+public class FilmSearchIndex implements FilmIndexListener {
+
+    private static final int GRAM = 3;
+    // Слова короче ищутся точно, до этой длины — с одной правкой, длиннее — с двумя
+    private static final int EXACT_WORD_LENGTH = 2;
+    private static final int ONE_EDIT_WORD_LENGTH = 5;
+
+    private static final Comparator<long[]> BY_LIKES_DESC = Comparator
+            .comparingLong((long[] film) -> film[1]).reversed()
+            .thenComparingLong(film -> film[0]);
+
+    private static final Comparator<long[]> BY_DISTANCE_THEN_LIKES = Comparator
+            .comparingLong((long[] film) -> film[1])
+            .thenComparing(Comparator.comparingLong((long[] film) -> film[2]).reversed())
+            .thenComparingLong(film -> film[0]);
+
+    private final FilmStorage filmStorage;
+    private final DirectorStorage directorStorage;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final int fuzzyLimit;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, String> titles = new HashMap<>();
+    private final Map<Integer, String> directorNames = new HashMap<>();
+    // Строки в исходном написании для подсказок
+    private final Map<Integer, String> titleTexts = new HashMap<>();
+    private final Map<Integer, String> directorTexts = new HashMap<>();
+    private final Map<Long, RoaringBitmap> filmsByGram = new HashMap<>();
+    private final Map<Long, RoaringBitmap> directorsByGram = new HashMap<>();
+    private final Map<Integer, RoaringBitmap> filmsByDirector = new HashMap<>();
+    private final Map<Integer, int[]> directorsByFilm = new HashMap<>();
+    private final Map<String, RoaringBitmap> filmsByWord = new HashMap<>();
+    private final Map<String, RoaringBitmap> directorsByWord = new HashMap<>();
+    private final LevenshteinTrie words = new LevenshteinTrie();
+
+    public FilmSearchIndex(@Qualifier("filmDbStorage") FilmStorage filmStorage,
+                           @Qualifier("directorDbStorage") DirectorStorage directorStorage,
+                           PopularFilmsIndex popularFilmsIndex,
+                           @Value("${filmorate.search.fuzzy.limit:100}") int fuzzyLimit) {
+        this.filmStorage = filmStorage;
+        this.directorStorage = directorStorage;
+        this.popularFilmsIndex = popularFilmsIndex;
+        this.fuzzyLimit = fuzzyLimit;
+    }
+
+    @PostConstruct
+    public void load() {
+        directorStorage.findAll().forEach(this::onDirectorSaved);
+        filmStorage.streamAll(films -> films.forEach(this::onFilmSaved));
+        log.info("Поисковый индекс загружен: {} названий, {} режиссёров, {} триграмм",
+                titles.size(), directorNames.size(), filmsByGram.size() + directorsByGram.size());
+    }
+
+    public int getFuzzyLimit() {
+        return fuzzyLimit;
+    }
+
+    /**
+     * Названия фильмов в исходном написании вместе с id фильма. Обход идёт под блокировкой чтения.
+     */
+    public void forEachTitle(ObjIntConsumer<String> consumer) {
+        lock.readLock().lock();
+        try {
+            titleTexts.forEach((filmId, title) -> consumer.accept(title, filmId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Имена режиссёров, у которых есть фильмы, вместе с этими фильмами. Битмап нельзя сохранять
+     * и менять: обход идёт под блокировкой чтения.
+     */
+    public void forEachDirector(BiConsumer<String, RoaringBitmap> consumer) {
+        lock.readLock().lock();
+        try {
+            filmsByDirector.forEach((directorId, films) -> {
+                String name = directorTexts.get(directorId);
+                if (name != null) {
+                    consumer.accept(name, films);
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Идентификаторы фильмов, у которых название или имя режиссёра содержит {@code query}
+     * без учёта регистра, по убыванию лайков.
+     */
+    public List<Long> search(String query, boolean byTitle, boolean byDirector) {
+        String needle = normalize(query);
+        RoaringBitmap found = new RoaringBitmap();
+        lock.readLock().lock();
+        try {
+            if (byTitle) {
+                found.or(matching(needle, titles, filmsByGram));
+            }
+            if (byDirector) {
+                matching(needle, directorNames, directorsByGram).forEach((int directorId) -> {
+                    RoaringBitmap films = filmsByDirector.get(directorId);
+                    if (films != null) {
+                        found.or(films);
+                    }
+                });
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<long[]> ranked = new ArrayList<>(found.getCardinality());
+        found.forEach((int filmId) -> ranked.add(new long[]{filmId, popularFilmsIndex.getLikes(filmId)}));
+        ranked.sort(BY_LIKES_DESC);
+        return ranked.stream()
+                .map(film -> film[0])
+                .toList();
+    }
+
+    /**
+     * Фильмы, у которых каждому слову запроса нашлось слово названия или имени режиссёра с допуском
+     * в 1–2 правки: не больше {@code fuzzyLimit} лучших по возрастанию суммарного числа правок,
+     * затем по убыванию лайков.
+     */
+    public List<Long> searchFuzzy(String query, boolean byTitle, boolean byDirector) {
+        List<String> tokens = splitWords(normalize(query));
+        if (tokens.isEmpty()) {
+            return List.of();
+        }
+        List<RoaringBitmap[]> matches = new ArrayList<>(tokens.size());
+        RoaringBitmap found = null;
+        lock.readLock().lock();
+        try {
+            for (String token : tokens) {
+                RoaringBitmap[] byDistance = matchWord(token, byTitle, byDirector);
+                RoaringBitmap matched = FastAggregation.or(byDistance);
+                found = found == null ? matched : RoaringBitmap.and(found, matched);
+                if (found.isEmpty()) {
+                    return List.of();
+                }
+                matches.add(byDistance);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Расстояние считается только для прошедших пересечение: по каждому слову — первый битмап с фильмом.
+        // Короткое слово с опечаткой задевает десятки тысяч фильмов, поэтому в куче остаются только лучшие
+        PriorityQueue<long[]> best = new PriorityQueue<>(fuzzyLimit + 1, BY_DISTANCE_THEN_LIKES.reversed());
+        found.forEach((int filmId) -> {
+            int distance = 0;
+            for (RoaringBitmap[] byDistance : matches) {
+                int tokenDistance = 0;
+                while (!byDistance[tokenDistance].contains(filmId)) {
+                    tokenDistance++;
+                }
+                distance += tokenDistance;
+            }
+            if (best.size() == fuzzyLimit && distance > best.peek()[1]) {
+                return;
+            }
+            long[] film = {filmId, distance, popularFilmsIndex.getLikes(filmId)};
+            if (best.size() < fuzzyLimit) {
+                best.add(film);
+            } else if (BY_DISTANCE_THEN_LIKES.compare(film, best.peek()) < 0) {
+                best.poll();
+                best.add(film);
+            }
+        });
+        List<long[]> ranked = new ArrayList<>(best);
+        ranked.sort(BY_DISTANCE_THEN_LIKES);
+        return ranked.stream()
+                .map(film -> film[0])
+                .toList();
+    }
+
+    // Фильмы с близким к слову запроса словом в названии или у режиссёра, по одному битмапу на число правок
+    private RoaringBitmap[] matchWord(String token, boolean byTitle, boolean byDirector) {
+        int radius = token.length() <= EXACT_WORD_LENGTH ? 0 : token.length() <= ONE_EDIT_WORD_LENGTH ? 1 : 2;
+        List<List<RoaringBitmap>> postings = new ArrayList<>(radius + 1);
+        for (int distance = 0; distance <= radius; distance++) {
+            postings.add(new ArrayList<>());
+        }
+        words.search(token, radius, (word, distance) -> {
+            RoaringBitmap films = byTitle ? filmsByWord.get(word) : null;
+            if (films != null) {
+                postings.get(distance).add(films);
+            }
+            RoaringBitmap directors = byDirector ? directorsByWord.get(word) : null;
+            if (directors != null) {
+                directors.forEach((int directorId) -> {
+                    RoaringBitmap directorFilms = filmsByDirector.get(directorId);
+                    if (directorFilms != null) {
+                        postings.get(distance).add(directorFilms);
+                    }
+                });
+            }
+        });
+
+        RoaringBitmap[] result = new RoaringBitmap[radius + 1];
+        for (int distance = 0; distance <= radius; distance++) {
+            result[distance] = postings.get(distance).isEmpty()
+                    ? new RoaringBitmap()
+                    : FastAggregation.or(postings.get(distance).iterator());
+        }
+        return result;
+    }
+
+    static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    // Кандидаты по триграммам с проверкой подстроки; пересечение начинается с самого короткого списка
+    private static RoaringBitmap matching(String needle, Map<Integer, String> values, Map<Long, RoaringBitmap> grams) {
+        RoaringBitmap result = new RoaringBitmap();
+        if (needle.length() < GRAM) {
+            values.forEach((id, value) -> {
+                if (value.contains(needle)) {
+                    result.add(id);
+                }
+            });
+            return result;
+        }
+
+        List<RoaringBitmap> postings = new ArrayList<>();
+        for (long gram : grams(needle)) {
+            RoaringBitmap posting = grams.get(gram);
+            if (posting == null) {
+                return result;
+            }
+            postings.add(posting);
+        }
+        postings.sort(Comparator.comparingInt(RoaringBitmap::getCardinality));
+        RoaringBitmap candidates = FastAggregation.and(postings.iterator());
+        candidates.forEach((int id) -> {
+            if (values.get(id).contains(needle)) {
+                result.add(id);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void onFilmSaved(Film film) {
+        int filmId = toInt(film.getId());
+        lock.writeLock().lock();
+        try {
+            removeFilm(filmId);
+            String title = normalize(film.getName());
+            titles.put(filmId, title);
+            titleTexts.put(filmId, film.getName());
+            for (long gram : grams(title)) {
+                filmsByGram.computeIfAbsent(gram, key -> new RoaringBitmap()).add(filmId);
+            }
+            addWords(title, filmId, filmsByWord);
+
+            int[] directorIds = new int[film.getDirectors().size()];
+            for (int idx = 0; idx < directorIds.length; idx++) {
+                Director director = film.getDirectors().get(idx);
+                directorIds[idx] = toInt(director.getId());
+                filmsByDirector.computeIfAbsent(directorIds[idx], key -> new RoaringBitmap()).add(filmId);
+                if (!directorNames.containsKey(directorIds[idx]) && director.getName() != null) {
+                    putDirector(directorIds[idx], director.getName());
+                }
+            }
+            directorsByFilm.put(filmId, directorIds);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onFilmDeleted(long filmId) {
+        lock.writeLock().lock();
+        try {
+            removeFilm(toInt(filmId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onDirectorSaved(Director director) {
+        int directorId = toInt(director.getId());
+        lock.writeLock().lock();
+        try {
+            removeDirectorName(directorId);
+            putDirector(directorId, director.getName());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onDirectorDeleted(long directorId) {
+        int id = toInt(directorId);
+        lock.writeLock().lock();
+        try {
+            removeDirectorName(id);
+            RoaringBitmap films = filmsByDirector.remove(id);
+            if (films != null) {
+                films.forEach((int filmId) -> directorsByFilm.computeIfPresent(filmId, (key, directorIds) ->
+                        Arrays.stream(directorIds).filter(other -> other != id).toArray()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void putDirector(int directorId, String name) {
+        String normalized = normalize(name);
+        directorNames.put(directorId, normalized);
+        directorTexts.put(directorId, name);
+        for (long gram : grams(normalized)) {
+            directorsByGram.computeIfAbsent(gram, key -> new RoaringBitmap()).add(directorId);
+        }
+        addWords(normalized, directorId, directorsByWord);
+    }
+
+    private void removeDirectorName(int directorId) {
+        String name = directorNames.remove(directorId);
+        directorTexts.remove(directorId);
+        if (name != null) {
+            removeGrams(name, directorId, directorsByGram);
+            removeWords(name, directorId, directorsByWord);
+        }
+    }
+
+    private void removeFilm(int filmId) {
+        String title = titles.remove(filmId);
+        titleTexts.remove(filmId);
+        if (title != null) {
+            removeGrams(title, filmId, filmsByGram);
+            removeWords(title, filmId, filmsByWord);
+        }
+        int[] directorIds = directorsByFilm.remove(filmId);
+        if (directorIds != null) {
+            for (int directorId : directorIds) {
+                filmsByDirector.computeIfPresent(directorId, (key, films) -> {
+                    films.remove(filmId);
+                    return films.isEmpty() ? null : films;
+                });
+            }
+        }
+    }
+
+    private static void removeGrams(String value, int id, Map<Long, RoaringBitmap> grams) {
+        for (long gram : grams(value)) {
+            grams.computeIfPresent(gram, (key, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    private void addWords(String value, int id, Map<String, RoaringBitmap> postings) {
+        for (String word : splitWords(value)) {
+            postings.computeIfAbsent(word, key -> new RoaringBitmap()).add(id);
+            words.add(word);
+        }
+    }
+
+    // Слово уходит из словаря, когда его не осталось ни в названиях, ни в именах
+    private void removeWords(String value, int id, Map<String, RoaringBitmap> postings) {
+        for (String word : splitWords(value)) {
+            postings.computeIfPresent(word, (key, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+            if (!filmsByWord.containsKey(word) && !directorsByWord.containsKey(word)) {
+                words.remove(word);
+            }
+        }
+    }
+
+    static List<String> splitWords(String value) {
+        List<String> result = new ArrayList<>();
+        for (String word : value.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                result.add(word);
+            }
+        }
+        return result;
+    }
+
+    // Три символа UTF-16 упакованы в одно число
+    private static Set<Long> grams(String value) {
+        Set<Long> result = new HashSet<>();
+        for (int idx = 0; idx + GRAM <= value.length(); idx++) {
+            result.add((long) value.charAt(idx) << 32 | (long) value.charAt(idx + 1) << 16 | value.charAt(idx + 2));
+        }
+        return result;
+    }
+}
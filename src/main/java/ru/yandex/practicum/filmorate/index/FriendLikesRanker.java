@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Рекомендации по лайкам друзей. Фильмы каждого друга в {@link LikesIndex} уже отсортированы,
+ * поэтому списки сливаются k-путевым слиянием через кучу курсоров: одинаковые фильмы идут подряд,
+ * и число друзей, отметивших фильм, считается без хеш-таблицы. Лучшие фильмы по этому числу,
+ * затем по общему числу лайков, отбираются ограниченной кучей.
+ */
+@Component
+public class FriendLikesRanker {
+
+    private static final Comparator<Cursor> BY_FILM = Comparator.comparingInt(Cursor::film);
+    private static final Comparator<Scored> BY_SCORE = Comparator
+            .comparingInt(Scored::friends)
+            .thenComparingLong(Scored::likes)
+            .thenComparing(Scored::filmId, Comparator.reverseOrder());
+
+    private final LikesIndex likesIndex;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final int limit;
+
+    public FriendLikesRanker(LikesIndex likesIndex,
+                             PopularFilmsIndex popularFilmsIndex,
+                             @Value("${filmorate.recommendations.friends.limit:100}") int limit) {
+        this.likesIndex = likesIndex;
+        this.popularFilmsIndex = popularFilmsIndex;
+        this.limit = limit;
+    }
+
+    /**
+     * Фильмы, которые лайкнули друзья, но не сам пользователь: по убыванию числа друзей,
+     * при равенстве — по убыванию общего числа лайков.
+     */
+    public List<Long> rank(long userId, List<Long> friendIds) {
+        RoaringBitmap liked = likesIndex.getFilms(userId);
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(Math.max(1, friendIds.size()), BY_FILM);
+        for (long friendId : friendIds) {
+            PeekableIntIterator films = likesIndex.getFilms(friendId).getIntIterator();
+            if (films.hasNext()) {
+                cursors.add(new Cursor(films));
+            }
+        }
+
+        PriorityQueue<Scored> best = new PriorityQueue<>(limit + 1, BY_SCORE);
+        while (!cursors.isEmpty()) {
+            int filmId = cursors.peek().film();
+            int friends = 0;
+            while (!cursors.isEmpty() && cursors.peek().film() == filmId) {
+                Cursor cursor = cursors.poll();
+                friends++;
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+            }
+            if (liked.contains(filmId)) {
+                continue;
+            }
+            Scored scored = new Scored(filmId, friends, popularFilmsIndex.getLikes(filmId));
+            if (best.size() < limit) {
+                best.add(scored);
+            } else if (BY_SCORE.compare(scored, best.peek()) > 0) {
+                best.poll();
+                best.add(scored);
+            }
+        }
+
+        List<Scored> result = new ArrayList<>(best);
+        result.sort(BY_SCORE.reversed());
+        return result.stream()
+                .map(scored -> (long) scored.filmId())
+                .toList();
+    }
+
+    // Текущий фильм одного друга; копия набора читается без блокировок
+    private static final class Cursor {
+
+        private final PeekableIntIterator films;
+        private int film;
+
+        Cursor(PeekableIntIterator films) {
+            this.films = films;
+            this.film = films.next();
+        }
+
+        int film() {
+            return film;
+        }
+
+        boolean advance() {
+            if (!films.hasNext()) {
+                return false;
+            }
+            film = films.next();
+            return true;
+        }
+    }
+
+    private record Scored(int filmId, int friends, long likes) {
+    }
+}
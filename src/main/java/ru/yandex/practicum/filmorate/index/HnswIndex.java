@@ -0,0 +1,211 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Иерархический граф малого мира (HNSW) для приближённого поиска векторов с наибольшим скалярным
+ * произведением. Строится один раз по готовому массиву векторов и после этого только читается,
+ * поэтому поиск можно вызывать из любых потоков. Списки соседей хранятся в массивах int,
+ * нулевой элемент — их текущее число.
+ */
+public final class HnswIndex {
+
+    private static final Comparator<Candidate> CLOSEST_FIRST = Comparator.comparingDouble(Candidate::distance);
+    private static final Comparator<Candidate> FARTHEST_FIRST = CLOSEST_FIRST.reversed();
+
+    private final float[] vectors;
+    private final int dimension;
+    private final int size;
+    private final int maxLinks;
+    private final int maxLinksBottom;
+    private final int[][][] links;
+    private int entryPoint = -1;
+    private int topLevel = -1;
+
+    /**
+     * @param vectors        векторы подряд, {@code size * dimension} значений
+     * @param m              число связей узла на верхних уровнях, на нижнем — вдвое больше
+     * @param efConstruction ширина поиска при вставке
+     */
+    public HnswIndex(float[] vectors, int dimension, int m, int efConstruction, long seed) {
+        this.vectors = vectors;
+        this.dimension = dimension;
+        this.size = vectors.length / dimension;
+        this.maxLinks = m;
+        this.maxLinksBottom = m * 2;
+        this.links = new int[size][][];
+
+        Random random = new Random(seed);
+        double levelFactor = 1 / Math.log(m);
+        for (int node = 0; node < size; node++) {
+            insert(node, (int) (-Math.log(1 - random.nextDouble()) * levelFactor), efConstruction);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Номера до {@code count} векторов с наибольшим скалярным произведением с {@code query},
+     * по убыванию произведения.
+     */
+    public int[] search(float[] query, int count, int ef) {
+        if (size == 0 || count <= 0) {
+            return new int[0];
+        }
+        int current = entryPoint;
+        for (int level = topLevel; level > 0; level--) {
+            current = greedy(query, current, level);
+        }
+        List<Candidate> found = searchLevel(query, current, Math.max(ef, count), 0);
+        int[] result = new int[Math.min(count, found.size())];
+        for (int idx = 0; idx < result.length; idx++) {
+            result[idx] = found.get(idx).node();
+        }
+        return result;
+    }
+
+    private void insert(int node, int level, int efConstruction) {
+        links[node] = new int[level + 1][];
+        for (int layer = 0; layer <= level; layer++) {
+            links[node][layer] = new int[capacity(layer) + 1];
+        }
+        if (entryPoint < 0) {
+            entryPoint = node;
+            topLevel = level;
+            return;
+        }
+
+        int current = entryPoint;
+        for (int layer = topLevel; layer > level; layer--) {
+            current = greedy(vectors, node * dimension, current, layer);
+        }
+        for (int layer = Math.min(level, topLevel); layer >= 0; layer--) {
+            List<Candidate> candidates = searchLevel(vectors, node * dimension, current, efConstruction, layer);
+            int[] own = links[node][layer];
+            for (int idx = 0; idx < candidates.size() && own[0] < capacity(layer); idx++) {
+                int neighbour = candidates.get(idx).node();
+                own[++own[0]] = neighbour;
+                link(neighbour, node, layer);
+            }
+            current = candidates.get(0).node();
+        }
+        if (level > topLevel) {
+            entryPoint = node;
+            topLevel = level;
+        }
+    }
+
+    // Обратная связь; при переполнении у соседа остаются ближайшие к нему узлы
+    private void link(int from, int to, int layer) {
+        int[] list = links[from][layer];
+        int capacity = capacity(layer);
+        if (list[0] < capacity) {
+            list[++list[0]] = to;
+            return;
+        }
+        int offset = from * dimension;
+        int farthest = -1;
+        double farthestDistance = distance(vectors, offset, to);
+        for (int idx = 1; idx <= capacity; idx++) {
+            double candidate = distance(vectors, offset, list[idx]);
+            if (candidate > farthestDistance) {
+                farthestDistance = candidate;
+                farthest = idx;
+            }
+        }
+        if (farthest > 0) {
+            list[farthest] = to;
+        }
+    }
+
+    private int greedy(float[] query, int start, int layer) {
+        return greedy(query, 0, start, layer);
+    }
+
+    private int greedy(float[] query, int queryOffset, int start, int layer) {
+        int current = start;
+        double currentDistance = distance(query, queryOffset, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] list = links[current][layer];
+            for (int idx = 1; idx <= list[0]; idx++) {
+                double candidate = distance(query, queryOffset, list[idx]);
+                if (candidate < currentDistance) {
+                    currentDistance = candidate;
+                    current = list[idx];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    private List<Candidate> searchLevel(float[] query, int start, int ef, int layer) {
+        return searchLevel(query, 0, start, ef, layer);
+    }
+
+    // Поиск по одному уровню: очередь кандидатов по возрастанию расстояния и ограниченная ef
+    // куча найденных; заканчивается, когда ближайший кандидат дальше худшего найденного
+    private List<Candidate> searchLevel(float[] query, int queryOffset, int start, int ef, int layer) {
+        BitSet visited = new BitSet(size);
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(CLOSEST_FIRST);
+        PriorityQueue<Candidate> found = new PriorityQueue<>(ef + 1, FARTHEST_FIRST);
+        Candidate first = new Candidate(start, distance(query, queryOffset, start));
+        visited.set(start);
+        candidates.add(first);
+        found.add(first);
+
+        while (!candidates.isEmpty()) {
+            Candidate closest = candidates.poll();
+            if (closest.distance() > found.peek().distance()) {
+                break;
+            }
+            int[] list = links[closest.node()][layer];
+            for (int idx = 1; idx <= list[0]; idx++) {
+                int neighbour = list[idx];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                double distance = distance(query, queryOffset, neighbour);
+                if (found.size() < ef || distance < found.peek().distance()) {
+                    Candidate candidate = new Candidate(neighbour, distance);
+                    candidates.add(candidate);
+                    found.add(candidate);
+                    if (found.size() > ef) {
+                        found.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> result = new ArrayList<>(found);
+        result.sort(CLOSEST_FIRST);
+        return result;
+    }
+
+    // Расстояние — скалярное произведение со знаком минус: ближе тот, у кого произведение больше
+    private double distance(float[] query, int queryOffset, int node) {
+        int offset = node * dimension;
+        double dot = 0;
+        for (int idx = 0; idx < dimension; idx++) {
+            dot += query[queryOffset + idx] * vectors[offset + idx];
+        }
+        return -dot;
+    }
+
+    private int capacity(int layer) {
+        return layer == 0 ? maxLinksBottom : maxLinks;
+    }
+
+    private record Candidate(int node, double distance) {
+    }
+}
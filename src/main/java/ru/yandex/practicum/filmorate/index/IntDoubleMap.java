@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.Arrays;
+
+/**
+ * Хеш-таблица int -> double с открытой адресацией без упаковки ключей и значений.
+ * Используется как накопитель весов при подсчёте рекомендаций; не потокобезопасна.
+ */
+final class IntDoubleMap {
+
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private int[] keys;
+    private double[] values;
+    private int size;
+
+    IntDoubleMap() {
+        this(16);
+    }
+
+    IntDoubleMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new double[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    void add(int key, double delta) {
+        int slot = slot(keys, key);
+        values[slot] += delta;
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+        }
+    }
+
+    double get(int key) {
+        int slot = slot(keys, key);
+        return keys[slot] == EMPTY ? 0 : values[slot];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(Entry consumer) {
+        for (int idx = 0; idx < keys.length; idx++) {
+            if (keys[idx] != EMPTY) {
+                consumer.accept(keys[idx], values[idx]);
+            }
+        }
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        double[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new double[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int idx = 0; idx < oldKeys.length; idx++) {
+            if (oldKeys[idx] != EMPTY) {
+                int slot = slot(keys, oldKeys[idx]);
+                keys[slot] = oldKeys[idx];
+                values[slot] = oldValues[idx];
+            }
+        }
+    }
+
+    private static int slot(int[] keys, int key) {
+        int mask = keys.length - 1;
+        int hash = key * 0x9E3779B9;
+        int slot = (hash ^ hash >>> 16) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    @FunctionalInterface
+    interface Entry {
+        void accept(int key, double value);
+    }
+}
@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Словарь для нечёткого поиска: префиксное дерево слов, по которому запрос идёт вместе со строкой
+ * матрицы расстояния Левенштейна. Спуск по символу дерева добавляет одну строку матрицы, и ветка
+ * отбрасывается, как только минимум строки превысил радиус, — то же, что прогон автомата
+ * Левенштейна по дереву. Поэтому просматриваются только узлы с префиксами в пределах радиуса,
+ * а не весь словарь. Удалённое слово снимает отметку конца слова, узлы остаются.
+ * Не потокобезопасно.
+ */
+final class LevenshteinTrie {
+
+    private final Node root = new Node();
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    void add(String word) {
+        Node node = root;
+        for (int idx = 0; idx < word.length(); idx++) {
+            node = node.childOrCreate(word.charAt(idx));
+        }
+        if (node.word == null) {
+            node.word = word;
+            size++;
+        }
+    }
+
+    void remove(String word) {
+        Node node = root;
+        for (int idx = 0; idx < word.length() && node != null; idx++) {
+            node = node.child(word.charAt(idx));
+        }
+        if (node != null && node.word != null) {
+            node.word = null;
+            size--;
+        }
+    }
+
+    /**
+     * Передаёт все слова на расстоянии не больше {@code radius} от {@code query} вместе с расстоянием.
+     */
+    void search(String query, int radius, ObjIntConsumer<String> consumer) {
+        int[][] rows = new int[query.length() + radius + 2][];
+        rows[0] = new int[query.length() + 1];
+        for (int idx = 0; idx <= query.length(); idx++) {
+            rows[0][idx] = idx;
+        }
+        for (int child = 0; child < root.size; child++) {
+            search(root.children[child], root.labels[child], 1, query, radius, rows, consumer);
+        }
+    }
+
+    private void search(Node node, char label, int depth, String query, int radius, int[][] rows,
+                        ObjIntConsumer<String> consumer) {
+        // Глубже query.length() + radius совпадений уже не будет
+        if (depth >= rows.length) {
+            return;
+        }
+        int[] previous = rows[depth - 1];
+        int[] current = rows[depth];
+        if (current == null) {
+            current = new int[query.length() + 1];
+            rows[depth] = current;
+        }
+        current[0] = depth;
+        int best = depth;
+        for (int idx = 1; idx <= query.length(); idx++) {
+            int substitution = previous[idx - 1] + (query.charAt(idx - 1) == label ? 0 : 1);
+            current[idx] = Math.min(substitution, Math.min(previous[idx], current[idx - 1]) + 1);
+            best = Math.min(best, current[idx]);
+        }
+
+        if (node.word != null && current[query.length()] <= radius) {
+            consumer.accept(node.word, current[query.length()]);
+        }
+        if (best <= radius) {
+            for (int child = 0; child < node.size; child++) {
+                search(node.children[child], node.labels[child], depth + 1, query, radius, rows, consumer);
+            }
+        }
+    }
+
+    // Дети в двух параллельных массивах, упорядоченных по символу
+    private static final class Node {
+
+        private char[] labels = new char[0];
+        private Node[] children = new Node[0];
+        private int size;
+        private String word;
+
+        Node child(char label) {
+            int position = Arrays.binarySearch(labels, 0, size, label);
+            return position >= 0 ? children[position] : null;
+        }
+
+        Node childOrCreate(char label) {
+            int position = Arrays.binarySearch(labels, 0, size, label);
+            if (position >= 0) {
+                return children[position];
+            }
+            position = -position - 1;
+            if (size == labels.length) {
+                int capacity = Math.max(2, size * 2);
+                labels = Arrays.copyOf(labels, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(labels, position, labels, position + 1, size - position);
+            System.arraycopy(children, position, children, position + 1, size - position);
+            Node child = new Node();
+            labels[position] = label;
+            children[position] = child;
+            size++;
+            return child;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Лайки пользователей в памяти: для каждого пользователя сжатый битовый набор (Roaring) идентификаторов
+ * понравившихся фильмов. Отвечает на «нравится ли фильм пользователю», число лайков пользователя
+ * и общие фильмы двух пользователей без обращения к БД. Общие фильмы считаются ядром
+ * {@link BitsetKernel}: наборы упаковываются в слова long, а одного пользователя со многими
+ * сравнивает проход по матрице строк. Если строка получается слишком длинной (большие id при
+ * редких лайках), пересечение считается по Roaring.
+ */
+@Slf4j
+@Component
+@Order(0)
+public class LikesIndex implements FilmIndexListener {
+
+    // Длиннее упаковывать невыгодно: пересечение Roaring обходится дешевле
+    private static final int MAX_PACKED_WORDS = 1 << 14;
+    // Предел размера матрицы строк в одном проходе ядра
+    private static final int MATRIX_WORDS = 1 << 16;
+
+    private final BitsetKernel kernel = BitsetKernel.best();
+    private final FilmStorage filmStorage;
+    private final Map<Integer, RoaringBitmap> filmsByUser = new ConcurrentHashMap<>();
+
+    public LikesIndex(@Qualifier("filmDbStorage") FilmStorage filmStorage) {
+        this.filmStorage = filmStorage;
+    }
+
+    @PostConstruct
+    public void load() {
+        long[] likes = new long[1];
+        filmStorage.forEachLike((filmId, userId) -> {
+            filmsByUser.computeIfAbsent(toInt(userId), id -> new RoaringBitmap()).add(toInt(filmId));
+            likes[0]++;
+        });
+        filmsByUser.values().forEach(RoaringBitmap::runOptimize);
+        log.info("Индекс лайков загружен: {} лайков, {} пользователей", likes[0], filmsByUser.size());
+    }
+
+    public boolean isLiked(long userId, long filmId) {
+        RoaringBitmap films = filmsByUser.get(toInt(userId));
+        if (films == null) {
+            return false;
+        }
+        synchronized (films) {
+            return films.contains(toInt(filmId));
+        }
+    }
+
+    public int getLikesCount(long userId) {
+        RoaringBitmap films = filmsByUser.get(toInt(userId));
+        if (films == null) {
+            return 0;
+        }
+        synchronized (films) {
+            return films.getCardinality();
+        }
+    }
+
+    public List<Long> getCommonFilmIds(long userId, long otherUserId) {
+        RoaringBitmap films = getFilms(userId);
+        RoaringBitmap otherFilms = getFilms(otherUserId);
+        int words = Math.min(wordsOf(films), wordsOf(otherFilms));
+        if (words > MAX_PACKED_WORDS) {
+            RoaringBitmap common = RoaringBitmap.and(films, otherFilms);
+            List<Long> filmIds = new ArrayList<>(common.getCardinality());
+            common.forEach((int filmId) -> filmIds.add((long) filmId));
+            return filmIds;
+        }
+
+        long[] left = new long[words];
+        long[] right = new long[words];
+        pack(films, left, 0, words);
+        pack(otherFilms, right, 0, words);
+        List<Long> filmIds = new ArrayList<>(kernel.andCount(left, right));
+        for (int word = 0; word < words; word++) {
+            long common = left[word] & right[word];
+            while (common != 0) {
+                filmIds.add((long) word * Long.SIZE + Long.numberOfTrailingZeros(common));
+                common &= common - 1;
+            }
+        }
+        return filmIds;
+    }
+
+    /**
+     * Число общих фильмов набора {@code films} с каждым из пользователей {@code userIds}.
+     */
+    public int[] countCommon(RoaringBitmap films, int[] userIds) {
+        int[] counts = new int[userIds.length];
+        int words = wordsOf(films);
+        if (words == 0) {
+            return counts;
+        }
+        if (words > MAX_PACKED_WORDS) {
+            for (int idx = 0; idx < userIds.length; idx++) {
+                RoaringBitmap userFilms = filmsByUser.get(userIds[idx]);
+                if (userFilms != null) {
+                    synchronized (userFilms) {
+                        counts[idx] = RoaringBitmap.andCardinality(userFilms, films);
+                    }
+                }
+            }
+            return counts;
+        }
+
+        long[] row = new long[words];
+        pack(films, row, 0, words);
+        int chunk = Math.max(1, Math.min(userIds.length, MATRIX_WORDS / words));
+        long[] matrix = new long[chunk * words];
+        int[] chunkCounts = new int[chunk];
+        for (int from = 0; from < userIds.length; from += chunk) {
+            int rows = Math.min(chunk, userIds.length - from);
+            Arrays.fill(matrix, 0, rows * words, 0);
+            for (int idx = 0; idx < rows; idx++) {
+                RoaringBitmap userFilms = filmsByUser.get(userIds[from + idx]);
+                if (userFilms != null) {
+                    synchronized (userFilms) {
+                        pack(userFilms, matrix, idx * words, words);
+                    }
+                }
+            }
+            kernel.andCountAll(row, matrix, rows, chunkCounts);
+            System.arraycopy(chunkCounts, 0, counts, from, rows);
+        }
+        return counts;
+    }
+
+    public void forEachFilm(long userId, IntConsumer consumer) {
+        RoaringBitmap films = filmsByUser.get(toInt(userId));
+        if (films == null) {
+            return;
+        }
+        synchronized (films) {
+            films.forEach((int filmId) -> consumer.accept(filmId));
+        }
+    }
+
+    public void forEachUser(IntConsumer consumer) {
+        filmsByUser.keySet().forEach(consumer::accept);
+    }
+
+    /**
+     * Копия набора фильмов пользователя, которую можно читать без блокировок.
+     */
+    public RoaringBitmap getFilms(long userId) {
+        RoaringBitmap films = filmsByUser.get(toInt(userId));
+        if (films == null) {
+            return new RoaringBitmap();
+        }
+        synchronized (films) {
+            return films.clone();
+        }
+    }
+
+    /**
+     * Отмечает лайк, если его ещё не было, и под блокировкой набора пользователя вызывает {@code write}.
+     * Проверка, отметка и постановка записи в очередь атомарны, поэтому записи одной пары уходят в БД
+     * в том же порядке, в каком прошли проверку; ожидание фиксации происходит уже без блокировки.
+     *
+     * @return результат {@code write} или {@code null}, если лайк уже стоял
+     */
+    public <T> T addIfAbsent(long userId, long filmId, Supplier<T> write) {
+        int id = toInt(userId);
+        while (true) {
+            RoaringBitmap films = filmsByUser.computeIfAbsent(id, key -> new RoaringBitmap());
+            synchronized (films) {
+                // Пустой набор могли убрать из карты, пока мы ждали блокировку
+                if (filmsByUser.get(id) != films) {
+                    continue;
+                }
+                if (!films.checkedAdd(toInt(filmId))) {
+                    return null;
+                }
+                try {
+                    return write.get();
+                } catch (RuntimeException exception) {
+                    films.remove(toInt(filmId));
+                    throw exception;
+                }
+            }
+        }
+    }
+
+    /**
+     * Снимает отметку лайка, если он стоял, и под той же блокировкой вызывает {@code write},
+     * см. {@link #addIfAbsent}.
+     *
+     * @return результат {@code write} или {@code null}, если лайка не было
+     */
+    public <T> T removeIfPresent(long userId, long filmId, Supplier<T> write) {
+        int id = toInt(userId);
+        while (true) {
+            RoaringBitmap films = filmsByUser.get(id);
+            if (films == null) {
+                return null;
+            }
+            T result;
+            synchronized (films) {
+                if (filmsByUser.get(id) != films) {
+                    continue;
+                }
+                if (!films.checkedRemove(toInt(filmId))) {
+                    return null;
+                }
+                try {
+                    result = write.get();
+                } catch (RuntimeException exception) {
+                    films.add(toInt(filmId));
+                    throw exception;
+                }
+            }
+            // Пустой набор убираем вне блокировки набора: карта всегда блокируется первой
+            filmsByUser.computeIfPresent(id, (key, current) -> {
+                synchronized (current) {
+                    return current.isEmpty() ? null : current;
+                }
+            });
+            return result;
+        }
+    }
+
+    @Override
+    public void onLikeAdded(long filmId, long userId) {
+        filmsByUser.compute(toInt(userId), (id, films) -> {
+            RoaringBitmap updated = films != null ? films : new RoaringBitmap();
+            synchronized (updated) {
+                updated.add(toInt(filmId));
+            }
+            return updated;
+        });
+    }
+
+    @Override
+    public void onLikeRemoved(long filmId, long userId) {
+        filmsByUser.computeIfPresent(toInt(userId), (id, films) -> {
+            synchronized (films) {
+                films.remove(toInt(filmId));
+                return films.isEmpty() ? null : films;
+            }
+        });
+    }
+
+    @Override
+    public void onFilmDeleted(long filmId) {
+        int id = toInt(filmId);
+        for (Integer userId : filmsByUser.keySet()) {
+            filmsByUser.computeIfPresent(userId, (key, films) -> {
+                synchronized (films) {
+                    films.remove(id);
+                    return films.isEmpty() ? null : films;
+                }
+            });
+        }
+    }
+
+    private static int wordsOf(RoaringBitmap films) {
+        return films.isEmpty() ? 0 : (films.last() >>> 6) + 1;
+    }
+
+    // Фильмы за пределами words слов не могут попасть в пересечение и отбрасываются
+    private static void pack(RoaringBitmap films, long[] target, int offset, int words) {
+        long bound = (long) words * Long.SIZE;
+        PeekableIntIterator iterator = films.getIntIterator();
+        while (iterator.hasNext()) {
+            int filmId = iterator.next();
+            if (filmId >= bound) {
+                break;
+            }
+            target[offset + (filmId >>> 6)] |= 1L << filmId;
+        }
+    }
+
+    static int toInt(long id) {
+        return Math.toIntExact(id);
+    }
+}
@@ -0,0 +1,208 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static ru.yandex.practicum.filmorate.index.LikesIndex.toInt;
+
+/**
+ * MinHash-подписи пользователей по множеству лайкнутых фильмов и LSH-корзины по полосам подписи.
+ * Пользователи, совпавшие хотя бы в одной полосе, становятся кандидатами в соседи; вероятность
+ * совпадения растёт с их сходством по Жаккару, крутизну порога задают bands и rows.
+ * Лайк обновляет подпись за O(bands * rows), снятие лайка пересчитывает её по фильмам пользователя,
+ * а удаление пользователя сразу снимает подпись, и следующие за ним снятия лайков ничего не стоят.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.recommendations.candidates", havingValue = "lsh")
+public class MinHashIndex implements FilmIndexListener {
+
+    private static final long PRIME = (1L << 31) - 1;
+
+    private final FilmStorage filmStorage;
+    private final LikesIndex likesIndex;
+    private final int bands;
+    private final int rows;
+    private final long[] hashA;
+    private final long[] hashB;
+    private final Map<Integer, Signature> signatures = new ConcurrentHashMap<>();
+    private final Map<Long, RoaringBitmap> buckets = new ConcurrentHashMap<>();
+
+    public MinHashIndex(@Qualifier("filmDbStorage") FilmStorage filmStorage,
+                        LikesIndex likesIndex,
+                        @Value("${filmorate.recommendations.lsh.bands:20}") int bands,
+                        @Value("${filmorate.recommendations.lsh.rows:4}") int rows,
+                        @Value("${filmorate.recommendations.lsh.seed:42}") long seed) {
+        this.filmStorage = filmStorage;
+        this.likesIndex = likesIndex;
+        this.bands = bands;
+        this.rows = rows;
+        this.hashA = new long[bands * rows];
+        this.hashB = new long[bands * rows];
+        Random random = new Random(seed);
+        for (int idx = 0; idx < hashA.length; idx++) {
+            hashA[idx] = 1 + random.nextInt((int) PRIME - 1);
+            hashB[idx] = random.nextInt((int) PRIME);
+        }
+    }
+
+    @PostConstruct
+    public void load() {
+        filmStorage.forEachLike((filmId, userId) ->
+                signatures.computeIfAbsent(toInt(userId), id -> new Signature(hashA.length))
+                        .include(toInt(filmId)));
+        signatures.forEach((userId, signature) -> rebucket(userId, signature));
+        log.info("MinHash-индекс загружен: {} пользователей, {} полос по {} строк, {} корзин",
+                signatures.size(), bands, rows, buckets.size());
+    }
+
+    /**
+     * Пользователи, попавшие хотя бы в одну общую корзину с данным (без него самого).
+     */
+    public RoaringBitmap getCandidates(long userId) {
+        int user = toInt(userId);
+        Signature signature = signatures.get(user);
+        if (signature == null) {
+            return new RoaringBitmap();
+        }
+        long[] bandKeys;
+        synchronized (signature) {
+            bandKeys = signature.bandKeys.clone();
+        }
+        RoaringBitmap candidates = new RoaringBitmap();
+        for (long bandKey : bandKeys) {
+            RoaringBitmap bucket = buckets.get(bandKey);
+            if (bucket != null) {
+                synchronized (bucket) {
+                    candidates.or(bucket);
+                }
+            }
+        }
+        candidates.remove(user);
+        return candidates;
+    }
+
+    @Override
+    public void onLikeAdded(long filmId, long userId) {
+        int user = toInt(userId);
+        Signature signature = signatures.computeIfAbsent(user, id -> new Signature(hashA.length));
+        synchronized (signature) {
+            if (signature.include(toInt(filmId))) {
+                rebucket(user, signature);
+            }
+        }
+    }
+
+    @Override
+    public void onLikeRemoved(long filmId, long userId) {
+        // Минимум нельзя «откатить», поэтому подпись пересчитывается по оставшимся фильмам
+        int user = toInt(userId);
+        Signature signature = signatures.get(user);
+        if (signature == null) {
+            return;
+        }
+        synchronized (signature) {
+            signature.reset();
+            likesIndex.forEachFilm(userId, film -> signature.include(film));
+            rebucket(user, signature);
+            if (signature.isEmpty()) {
+                signatures.remove(user);
+            }
+        }
+    }
+
+    @Override
+    public void onUserDeleted(long userId) {
+        int user = toInt(userId);
+        Signature signature = signatures.remove(user);
+        if (signature == null) {
+            return;
+        }
+        synchronized (signature) {
+            signature.reset();
+            rebucket(user, signature);
+        }
+    }
+
+    private int hash(int function, int filmId) {
+        return (int) ((hashA[function] * filmId + hashB[function]) % PRIME);
+    }
+
+    private void rebucket(int userId, Signature signature) {
+        for (int band = 0; band < bands; band++) {
+            long key = signature.isEmpty() ? 0 : bandKey(band, signature.values);
+            long old = signature.bandKeys[band];
+            if (key == old) {
+                continue;
+            }
+            if (old != 0) {
+                buckets.computeIfPresent(old, (bandKey, users) -> {
+                    synchronized (users) {
+                        users.remove(userId);
+                        return users.isEmpty() ? null : users;
+                    }
+                });
+            }
+            if (key != 0) {
+                buckets.compute(key, (bandKey, users) -> {
+                    RoaringBitmap updated = users != null ? users : new RoaringBitmap();
+                    synchronized (updated) {
+                        updated.add(userId);
+                    }
+                    return updated;
+                });
+            }
+            signature.bandKeys[band] = key;
+        }
+    }
+
+    private long bandKey(int band, int[] values) {
+        long key = band + 1;
+        for (int row = band * rows; row < (band + 1) * rows; row++) {
+            key = key * 0x9E3779B97F4A7C15L + values[row];
+        }
+        // 0 зарезервирован под «полоса не назначена»
+        return key != 0 ? key : 1;
+    }
+
+    private final class Signature {
+        private final int[] values;
+        private final long[] bandKeys = new long[bands];
+
+        private Signature(int size) {
+            values = new int[size];
+            Arrays.fill(values, Integer.MAX_VALUE);
+        }
+
+        private boolean include(int filmId) {
+            boolean changed = false;
+            for (int function = 0; function < values.length; function++) {
+                int value = hash(function, filmId);
+                if (value < values[function]) {
+                    values[function] = value;
+                    changed = true;
+                }
+            }
+            return changed;
+        }
+
+        private void reset() {
+            Arrays.fill(values, Integer.MAX_VALUE);
+        }
+
+        private boolean isEmpty() {
+            return values[0] == Integer.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Рейтинг популярных фильмов в памяти: упорядоченный по лайкам набор и колонки-битмапы
+ * по жанру, рейтингу MPA и году выхода. Лайк переставляет фильм в наборе за O(log n), а фильтр
+ * вычисляется пересечением битмапов; значения внутри одного измерения объединяются.
+ */
+@Slf4j
+@Component
+public class PopularFilmsIndex implements FilmIndexListener {
+
+    // Если под фильтр попадает немного фильмов, дешевле отсортировать их, чем идти по всему рейтингу
+    private static final int DIRECT_SORT_FACTOR = 64;
+
+    private static final Comparator<Rank> BY_LIKES_DESC = Comparator
+            .comparingLong(Rank::likes).reversed()
+            .thenComparingLong(Rank::filmId);
+
+    private final FilmStorage filmStorage;
+    private final Map<Long, FilmState> films = new ConcurrentHashMap<>();
+    private final NavigableSet<Rank> global = new ConcurrentSkipListSet<>(BY_LIKES_DESC);
+    // Колонки меняются только при сохранении и удалении фильма, лайки их не трогают
+    private final ReadWriteLock columnsLock = new ReentrantReadWriteLock();
+    private final Map<Long, RoaringBitmap> filmsByGenre = new HashMap<>();
+    private final Map<Long, RoaringBitmap> filmsByMpa = new HashMap<>();
+    private final NavigableMap<Integer, RoaringBitmap> filmsByYear = new TreeMap<>();
+
+    public PopularFilmsIndex(@Qualifier("filmDbStorage") FilmStorage filmStorage) {
+        this.filmStorage = filmStorage;
+    }
+
+    @PostConstruct
+    public void load() {
+        filmStorage.streamAll(films -> films.forEach(this::onFilmSaved));
+        log.info("Рейтинг популярных фильмов загружен: {} фильмов", films.size());
+    }
+
+    public List<Long> getTop(int count, Filter filter) {
+        return getTop(count, filter, null).stream()
+                .map(Rank::filmId)
+                .toList();
+    }
+
+    /**
+     * Страница рейтинга, начинающаяся строго после позиции {@code after} (или с начала, если она не задана).
+     * Хвост набора берётся за O(log n), поэтому стоимость страницы не зависит от её глубины.
+     */
+    public List<Rank> getTop(int count, Filter filter, Rank after) {
+        NavigableSet<Rank> ranks = after != null ? global.tailSet(after, false) : global;
+        if (filter.isEmpty()) {
+            return ranks.stream().limit(count).toList();
+        }
+
+        RoaringBitmap candidates = select(filter);
+        if (candidates.getCardinality() <= (long) count * DIRECT_SORT_FACTOR) {
+            List<Rank> selected = new ArrayList<>(candidates.getCardinality());
+            candidates.forEach((int filmId) -> {
+                FilmState state = films.get((long) filmId);
+                if (state != null && (after == null || BY_LIKES_DESC.compare(state.rank, after) > 0)) {
+                    selected.add(state.rank);
+                }
+            });
+            selected.sort(BY_LIKES_DESC);
+            return List.copyOf(selected.subList(0, Math.min(count, selected.size())));
+        }
+
+        List<Rank> result = new ArrayList<>(count);
+        for (Rank rank : ranks) {
+            if (candidates.contains(LikesIndex.toInt(rank.filmId()))) {
+                result.add(rank);
+                if (result.size() == count) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    public long getLikes(long filmId) {
+        FilmState state = films.get(filmId);
+        return state != null ? state.rank.likes() : 0;
+    }
+
+    @Override
+    public void onFilmSaved(Film film) {
+        films.compute(film.getId(), (filmId, state) -> {
+            // При обновлении фильма счётчик берём из индекса: он мог измениться после чтения фильма
+            long likes = state != null ? state.rank.likes() : film.getLikesCount();
+            if (state != null) {
+                unlink(state);
+            }
+            FilmState updated = new FilmState(new Rank(likes, filmId), genreIds(film),
+                    film.getMpa().getId(), film.getReleaseDate().getYear());
+            link(updated);
+            return updated;
+        });
+    }
+
+    @Override
+    public void onFilmDeleted(long filmId) {
+        films.computeIfPresent(filmId, (id, state) -> {
+            unlink(state);
+            return null;
+        });
+    }
+
+    @Override
+    public void onLikeAdded(long filmId, long userId) {
+        changeLikes(filmId, 1);
+    }
+
+    @Override
+    public void onLikeRemoved(long filmId, long userId) {
+        changeLikes(filmId, -1);
+    }
+
+    private void changeLikes(long filmId, long delta) {
+        films.computeIfPresent(filmId, (id, state) -> {
+            Rank old = state.rank;
+            Rank updated = new Rank(Math.max(0, old.likes() + delta), id);
+            // Сначала добавляем новую позицию, затем убираем старую, чтобы читатель не потерял фильм
+            global.add(updated);
+            global.remove(old);
+            state.rank = updated;
+            return state;
+        });
+    }
+
+    private void link(FilmState state) {
+        int filmId = LikesIndex.toInt(state.rank.filmId());
+        columnsLock.writeLock().lock();
+        try {
+            for (long genreId : state.genreIds) {
+                filmsByGenre.computeIfAbsent(genreId, key -> new RoaringBitmap()).add(filmId);
+            }
+            filmsByMpa.computeIfAbsent(state.mpaId, key -> new RoaringBitmap()).add(filmId);
+            filmsByYear.computeIfAbsent(state.year, key -> new RoaringBitmap()).add(filmId);
+        } finally {
+            columnsLock.writeLock().unlock();
+        }
+        global.add(state.rank);
+    }
+
+    private void unlink(FilmState state) {
+        global.remove(state.rank);
+        int filmId = LikesIndex.toInt(state.rank.filmId());
+        columnsLock.writeLock().lock();
+        try {
+            for (long genreId : state.genreIds) {
+                removeFrom(filmsByGenre, genreId, filmId);
+            }
+            removeFrom(filmsByMpa, state.mpaId, filmId);
+            removeFrom(filmsByYear, state.year, filmId);
+        } finally {
+            columnsLock.writeLock().unlock();
+        }
+    }
+
+    private RoaringBitmap select(Filter filter) {
+        columnsLock.readLock().lock();
+        try {
+            RoaringBitmap result = null;
+            if (!filter.genreIds().isEmpty()) {
+                result = intersect(result, union(filter.genreIds().stream().map(filmsByGenre::get)));
+            }
+            if (!filter.mpaIds().isEmpty()) {
+                result = intersect(result, union(filter.mpaIds().stream().map(filmsByMpa::get)));
+            }
+            if (filter.yearFrom() != null || filter.yearTo() != null) {
+                int from = filter.yearFrom() != null ? filter.yearFrom() : Integer.MIN_VALUE;
+                int to = filter.yearTo() != null ? filter.yearTo() : Integer.MAX_VALUE;
+                Collection<RoaringBitmap> years = from <= to
+                        ? filmsByYear.subMap(from, true, to, true).values()
+                        : List.of();
+                result = intersect(result, union(years.stream()));
+            }
+            return result != null ? result : new RoaringBitmap();
+        } finally {
+            columnsLock.readLock().unlock();
+        }
+    }
+
+    private static RoaringBitmap union(Stream<RoaringBitmap> bitmaps) {
+        return FastAggregation.or(bitmaps.filter(Objects::nonNull).iterator());
+    }
+
+    private static RoaringBitmap intersect(RoaringBitmap current, RoaringBitmap next) {
+        return current == null ? next : RoaringBitmap.and(current, next);
+    }
+
+    private static <K> void removeFrom(Map<K, RoaringBitmap> column, K key, int filmId) {
+        RoaringBitmap bitmap = column.get(key);
+        if (bitmap != null) {
+            bitmap.remove(filmId);
+            if (bitmap.isEmpty()) {
+                column.remove(key);
+            }
+        }
+    }
+
+    private static long[] genreIds(Film film) {
+        if (film.getGenres() == null) {
+            return new long[0];
+        }
+        return film.getGenres().stream()
+                .mapToLong(Genre::getId)
+                .distinct()
+                .toArray();
+    }
+
+    public record Rank(long likes, long filmId) {
+    }
+
+    /**
+     * Фильтр рейтинга: пустые наборы и незаданные границы года не ограничивают выборку.
+     */
+    public record Filter(Set<Long> genreIds, Set<Long> mpaIds, Integer yearFrom, Integer yearTo) {
+
+        public static final Filter NONE = new Filter(Set.of(), Set.of(), null, null);
+
+        public boolean isEmpty() {
+            return genreIds.isEmpty() && mpaIds.isEmpty() && yearFrom == null && yearTo == null;
+        }
+    }
+
+    private static final class FilmState {
+        private volatile Rank rank;
+        private final long[] genreIds;
+        private final long mpaId;
+        private final int year;
+
+        private FilmState(Rank rank, long[] genreIds, long mpaId, int year) {
+            this.rank = rank;
+            this.genreIds = genreIds;
+            this.mpaId = mpaId;
+            this.year = year;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static ru.yandex.practicum.filmorate.index.LikesIndex.toInt;
+
+/**
+ * Заранее посчитанные рекомендации. Лайк помечает устаревшими самого пользователя и тех, у кого
+ * он входит в ближайшие соседи; фоновая задача пересчитывает только помеченных, пачками
+ * параллельно. Пользователь, для которого списка ещё нет, считается синхронно при запросе.
+ * Работает в режиме {@code filmorate.recommendations.mode=neighbours} (по умолчанию).
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.recommendations.mode", havingValue = "neighbours",
+        matchIfMissing = true)
+public class PrecomputedRecommendations implements FilmIndexListener {
+
+    private final RecommendationIndex recommendationIndex;
+    private final LikesIndex likesIndex;
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+    // Для каждого пользователя — те, у кого он среди соседей
+    private final Map<Integer, Set<Integer>> dependants = new ConcurrentHashMap<>();
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor;
+    private final int batchSize;
+    private final int storedLimit;
+    private final Clock clock = Clock.systemUTC();
+
+    public PrecomputedRecommendations(RecommendationIndex recommendationIndex,
+                                      LikesIndex likesIndex,
+                                      @Value("${filmorate.recommendations.refresh-threads:0}") int threads,
+                                      @Value("${filmorate.recommendations.refresh-batch-size:256}") int batchSize,
+                                      @Value("${filmorate.recommendations.stored-limit:100}") int storedLimit) {
+        this.recommendationIndex = recommendationIndex;
+        this.likesIndex = likesIndex;
+        this.executor = Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        this.batchSize = batchSize;
+        this.storedLimit = storedLimit;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void markAllDirty() {
+        likesIndex.forEachUser(dirty::add);
+        log.info("Запланирован расчёт рекомендаций для {} пользователей", dirty.size());
+    }
+
+    /**
+     * Сохранённый список или {@code null}, если пользователь ещё не посчитан.
+     */
+    public Entry get(long userId) {
+        return entries.get(toInt(userId));
+    }
+
+    public boolean isStale(long userId) {
+        return dirty.contains(toInt(userId));
+    }
+
+    public Entry computeNow(long userId) {
+        return refresh(toInt(userId));
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.recommendations.refresh-interval-ms:1000}")
+    public void refreshDirty() {
+        // Снимаем отметку до пересчёта: лайк во время расчёта снова пометит пользователя
+        List<Integer> users = new ArrayList<>();
+        for (Iterator<Integer> iterator = dirty.iterator(); iterator.hasNext(); ) {
+            users.add(iterator.next());
+            iterator.remove();
+        }
+        if (users.isEmpty()) {
+            return;
+        }
+
+        List<Callable<Void>> batches = new ArrayList<>();
+        for (int from = 0; from < users.size(); from += batchSize) {
+            List<Integer> batch = users.subList(from, Math.min(from + batchSize, users.size()));
+            batches.add(() -> {
+                batch.forEach(this::refresh);
+                return null;
+            });
+        }
+
+        long start = System.nanoTime();
+        try {
+            for (Future<Void> result : executor.invokeAll(batches)) {
+                result.get();
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            dirty.addAll(users);
+            return;
+        } catch (ExecutionException exception) {
+            log.error("Ошибка пересчёта рекомендаций", exception.getCause());
+            dirty.addAll(users);
+            return;
+        }
+        log.debug("Пересчитаны рекомендации {} пользователей за {} мс", users.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void onLikeAdded(long filmId, long userId) {
+        markDirty(toInt(userId));
+    }
+
+    @Override
+    public void onLikeRemoved(long filmId, long userId) {
+        markDirty(toInt(userId));
+    }
+
+    private void markDirty(int userId) {
+        dirty.add(userId);
+        Set<Integer> users = dependants.get(userId);
+        if (users != null) {
+            dirty.addAll(users);
+        }
+    }
+
+    private Entry refresh(int userId) {
+        RecommendationIndex.Recommendation recommendation = recommendationIndex.compute(userId);
+        List<Long> filmIds = recommendation.filmIds();
+        Entry entry = new Entry(filmIds.size() > storedLimit ? List.copyOf(filmIds.subList(0, storedLimit)) : filmIds,
+                recommendation.neighbourIds(), Instant.now(clock));
+        // Связи «сосед -> зависимые» меняем под блокировкой записи пользователя
+        entries.compute(userId, (id, old) -> {
+            if (old != null) {
+                old.neighbourIds().forEach(neighbourId -> dependants.computeIfPresent(toInt(neighbourId),
+                        (key, users) -> {
+                            users.remove(userId);
+                            return users.isEmpty() ? null : users;
+                        }));
+            }
+            entry.neighbourIds().forEach(neighbourId -> dependants.compute(toInt(neighbourId), (key, users) -> {
+                Set<Integer> updated = users != null ? users : ConcurrentHashMap.newKeySet();
+                updated.add(userId);
+                return updated;
+            }));
+            return entry;
+        });
+        return entry;
+    }
+
+    public record Entry(List<Long> filmIds, List<Long> neighbourIds, Instant computedAt) {
+    }
+}
@@ -0,0 +1,261 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjIntConsumer;
+
+import static ru.yandex.practicum.filmorate.index.LikesIndex.toInt;
+
+/**
+ * Рекомендации по ближайшим пользователям. Строки матрицы лайков (фильмы пользователя) берутся
+ * из {@link LikesIndex}, здесь хранятся столбцы — пользователи, лайкнувшие фильм. Пересечения
+ * с другими пользователями считаются обходом столбцов своих фильмов, из них выбираются k самых
+ * похожих (Жаккар или косинус), а фильмы соседей ранжируются по сумме их сходства.
+ * Если включён {@link MinHashIndex}, пересечения считаются только с кандидатами из LSH-корзин:
+ * все кандидаты сравниваются с пользователем одним проходом {@link BitsetKernel} в {@link LikesIndex}.
+ * Обновляется после {@link UserAffinityIndex}: при удалении фильма тот перестраивает профили
+ * поклонников по столбцу, который здесь ещё не снят.
+ */
+@Slf4j
+@Component
+@Order(5)
+public class RecommendationIndex implements FilmIndexListener {
+
+    public enum Similarity {
+        JACCARD, COSINE
+    }
+
+    private static final Comparator<Neighbour> BY_SIMILARITY = Comparator
+            .comparingDouble(Neighbour::similarity)
+            .thenComparing(Neighbour::userId, Comparator.reverseOrder());
+
+    private final FilmStorage filmStorage;
+    private final LikesIndex likesIndex;
+    private final MinHashIndex minHashIndex;
+    private final Map<Integer, RoaringBitmap> usersByFilm = new ConcurrentHashMap<>();
+    private final Similarity similarity;
+    private final int neighbourCount;
+
+    public RecommendationIndex(@Qualifier("filmDbStorage") FilmStorage filmStorage,
+                               LikesIndex likesIndex,
+                               Optional<MinHashIndex> minHashIndex,
+                               @Value("${filmorate.recommendations.similarity:jaccard}") String similarity,
+                               @Value("${filmorate.recommendations.neighbours:20}") int neighbourCount) {
+        this.filmStorage = filmStorage;
+        this.likesIndex = likesIndex;
+        this.minHashIndex = minHashIndex.orElse(null);
+        this.similarity = Similarity.valueOf(similarity.toUpperCase());
+        this.neighbourCount = neighbourCount;
+    }
+
+    @PostConstruct
+    public void load() {
+        filmStorage.forEachLike((filmId, userId) ->
+                usersByFilm.computeIfAbsent(toInt(filmId), id -> new RoaringBitmap()).add(toInt(userId)));
+        usersByFilm.values().forEach(RoaringBitmap::runOptimize);
+        log.info("Индекс рекомендаций загружен: {} фильмов с лайками, сходство {}, соседей {}, кандидаты {}",
+                usersByFilm.size(), similarity, neighbourCount, minHashIndex != null ? "LSH" : "все");
+    }
+
+    /**
+     * Фильмы, которые понравились похожим пользователям, но ещё не отмечены самим пользователем,
+     * в порядке убывания суммарного сходства.
+     */
+    public List<Long> recommend(long userId) {
+        return compute(userId).filmIds();
+    }
+
+    /**
+     * Рекомендации вместе с соседями, по которым они посчитаны.
+     */
+    public Recommendation compute(long userId) {
+        RoaringBitmap liked = likesIndex.getFilms(userId);
+        if (liked.isEmpty()) {
+            return Recommendation.EMPTY;
+        }
+        List<Neighbour> neighbours = findNeighbours(toInt(userId), liked);
+        return new Recommendation(rank(liked, neighbours), neighbours.stream()
+                .map(neighbour -> (long) neighbour.userId())
+                .toList());
+    }
+
+    /**
+     * Идентификаторы k ближайших пользователей по убыванию сходства.
+     */
+    public List<Long> getNeighbourIds(long userId) {
+        RoaringBitmap liked = likesIndex.getFilms(userId);
+        if (liked.isEmpty()) {
+            return List.of();
+        }
+        return findNeighbours(toInt(userId), liked).stream()
+                .map(neighbour -> (long) neighbour.userId())
+                .toList();
+    }
+
+    /**
+     * Копия столбца фильма — пользователей, которые его лайкнули.
+     */
+    public RoaringBitmap getUsers(long filmId) {
+        RoaringBitmap users = usersByFilm.get(toInt(filmId));
+        if (users == null) {
+            return new RoaringBitmap();
+        }
+        synchronized (users) {
+            return users.clone();
+        }
+    }
+
+    /**
+     * Число пользователей, лайкнувших оба фильма, не считая {@code userId}.
+     */
+    int countCommonUsers(int filmId, int otherFilmId, int userId) {
+        RoaringBitmap users = getUsers(filmId);
+        users.remove(userId);
+        RoaringBitmap others = usersByFilm.get(otherFilmId);
+        if (others == null) {
+            return 0;
+        }
+        synchronized (others) {
+            return RoaringBitmap.andCardinality(users, others);
+        }
+    }
+
+    /**
+     * Обходит столбцы всех фильмов с лайками; потребитель получает копию столбца.
+     */
+    void forEachColumn(ObjIntConsumer<RoaringBitmap> consumer) {
+        for (Integer filmId : usersByFilm.keySet()) {
+            RoaringBitmap users = getUsers(filmId);
+            if (!users.isEmpty()) {
+                consumer.accept(users, filmId);
+            }
+        }
+    }
+
+    List<Neighbour> findNeighbours(int userId, RoaringBitmap liked) {
+        IntDoubleMap overlaps = minHashIndex != null
+                ? candidateOverlaps(userId, liked)
+                : exactOverlaps(userId, liked);
+
+        int likedCount = liked.getCardinality();
+        PriorityQueue<Neighbour> nearest = new PriorityQueue<>(neighbourCount + 1, BY_SIMILARITY);
+        overlaps.forEach((otherId, overlap) -> {
+            int otherCount = likesIndex.getLikesCount(otherId);
+            if (otherCount == 0) {
+                return;
+            }
+            Neighbour neighbour = new Neighbour(otherId, similarity(overlap, likedCount, otherCount));
+            if (nearest.size() < neighbourCount) {
+                nearest.add(neighbour);
+            } else if (BY_SIMILARITY.compare(neighbour, nearest.peek()) > 0) {
+                nearest.poll();
+                nearest.add(neighbour);
+            }
+        });
+
+        List<Neighbour> result = new ArrayList<>(nearest);
+        result.sort(BY_SIMILARITY.reversed());
+        return result;
+    }
+
+    private IntDoubleMap exactOverlaps(int userId, RoaringBitmap liked) {
+        IntDoubleMap overlaps = new IntDoubleMap();
+        liked.forEach((int filmId) -> {
+            RoaringBitmap users = usersByFilm.get(filmId);
+            if (users == null) {
+                return;
+            }
+            synchronized (users) {
+                users.forEach((int otherId) -> {
+                    if (otherId != userId) {
+                        overlaps.add(otherId, 1);
+                    }
+                });
+            }
+        });
+        return overlaps;
+    }
+
+    private IntDoubleMap candidateOverlaps(int userId, RoaringBitmap liked) {
+        int[] candidates = minHashIndex.getCandidates(userId).toArray();
+        // Пользователь сравнивается со всеми кандидатами за один проход ядра по упакованным строкам
+        int[] common = likesIndex.countCommon(liked, candidates);
+        IntDoubleMap overlaps = new IntDoubleMap(candidates.length);
+        for (int idx = 0; idx < candidates.length; idx++) {
+            if (common[idx] > 0) {
+                overlaps.add(candidates[idx], common[idx]);
+            }
+        }
+        return overlaps;
+    }
+
+    List<Long> rank(RoaringBitmap liked, List<Neighbour> neighbours) {
+        IntDoubleMap scores = new IntDoubleMap();
+        for (Neighbour neighbour : neighbours) {
+            likesIndex.forEachFilm(neighbour.userId(), filmId -> {
+                if (!liked.contains(filmId)) {
+                    scores.add(filmId, neighbour.similarity());
+                }
+            });
+        }
+
+        List<Scored> ranked = new ArrayList<>(scores.size());
+        scores.forEach((filmId, score) -> ranked.add(new Scored(filmId, score)));
+        ranked.sort(Comparator.comparingDouble(Scored::score).reversed().thenComparingInt(Scored::filmId));
+        return ranked.stream()
+                .map(scored -> (long) scored.filmId())
+                .toList();
+    }
+
+    private double similarity(double overlap, int likedCount, int otherCount) {
+        return switch (similarity) {
+            case JACCARD -> overlap / (likedCount + otherCount - overlap);
+            case COSINE -> overlap / Math.sqrt((double) likedCount * otherCount);
+        };
+    }
+
+    @Override
+    public void onLikeAdded(long filmId, long userId) {
+        usersByFilm.compute(toInt(filmId), (id, users) -> {
+            RoaringBitmap updated = users != null ? users : new RoaringBitmap();
+            synchronized (updated) {
+                updated.add(toInt(userId));
+            }
+            return updated;
+        });
+    }
+
+    @Override
+    public void onLikeRemoved(long filmId, long userId) {
+        usersByFilm.computeIfPresent(toInt(filmId), (id, users) -> {
+            synchronized (users) {
+                users.remove(toInt(userId));
+                return users.isEmpty() ? null : users;
+            }
+        });
+    }
+
+    @Override
+    public void onFilmDeleted(long filmId) {
+        usersByFilm.remove(toInt(filmId));
+    }
+
+    public record Recommendation(List<Long> filmIds, List<Long> neighbourIds) {
+        public static final Recommendation EMPTY = new Recommendation(List.of(), List.of());
+    }
+
+    record Neighbour(int userId, double similarity) {
+    }
+
+    private record Scored(int filmId, double score) {
+    }
+}
@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.index;
+
+public class ScalarBitsetKernel implements BitsetKernel {
+
+    @Override
+    public int andCount(long[] left, long[] right) {
+        int count = 0;
+        int words = Math.min(left.length, right.length);
+        for (int word = 0; word < words; word++) {
+            count += Long.bitCount(left[word] & right[word]);
+        }
+        return count;
+    }
+
+    @Override
+    public int orCount(long[] left, long[] right) {
+        int count = 0;
+        int words = Math.min(left.length, right.length);
+        for (int word = 0; word < words; word++) {
+            count += Long.bitCount(left[word] | right[word]);
+        }
+        for (int word = words; word < left.length; word++) {
+            count += Long.bitCount(left[word]);
+        }
+        for (int word = words; word < right.length; word++) {
+            count += Long.bitCount(right[word]);
+        }
+        return count;
+    }
+
+    @Override
+    public void jaccardAll(long[] row, long[] matrix, double[] scores) {
+        int words = row.length;
+        for (int user = 0; user < scores.length; user++) {
+            int offset = user * words;
+            int intersection = 0;
+            int union = 0;
+            for (int word = 0; word < words; word++) {
+                long other = matrix[offset + word];
+                intersection += Long.bitCount(row[word] & other);
+                union += Long.bitCount(row[word] | other);
+            }
+            scores[user] = union == 0 ? 0 : (double) intersection / union;
+        }
+    }
+
+    @Override
+    public void andCountAll(long[] row, long[] matrix, int rows, int[] counts) {
+        int words = row.length;
+        for (int user = 0; user < rows; user++) {
+            int offset = user * words;
+            int intersection = 0;
+            for (int word = 0; word < words; word++) {
+                intersection += Long.bitCount(row[word] & matrix[offset + word]);
+            }
+            counts[user] = intersection;
+        }
+    }
+}
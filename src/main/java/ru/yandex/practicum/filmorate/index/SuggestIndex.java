@@ -0,0 +1,293 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Подсказки по префиксу для названий фильмов и имён режиссёров. Словарь хранится как префиксное
+ * дерево, уложенное в массивы: дети узла лежат подряд и упорядочены по символу, переход ищется
+ * двоичным поиском, а в каждом узле заранее записаны k самых популярных продолжений. Поэтому
+ * ответ — проход по символам префикса без обращений к БД. Каждое слово строки тоже начинает
+ * путь в дереве, так что «matrix» находит «The Matrix». Дерево собирается из строк
+ * {@link FilmSearchIndex}, перестраивается в фоне после изменений и подменяется целиком;
+ * лайки меняют только порядок подсказок, поэтому из-за них дерево перестраивается реже.
+ */
+@Slf4j
+@Component
+// После FilmSearchIndex: сборка, начатая по событию, должна уже видеть изменённые строки
+@Order(4)
+public class SuggestIndex implements FilmIndexListener {
+
+    public enum Type {
+        TITLE, DIRECTOR
+    }
+
+    private final FilmSearchIndex filmSearchIndex;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final int topK;
+    private final long likesRebuildNanos;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private volatile Trie trie = Trie.EMPTY;
+    // Изменения строк с момента последней сборки
+    private final AtomicLong version = new AtomicLong();
+    private volatile long builtVersion = -1;
+    private final AtomicBoolean likesChanged = new AtomicBoolean();
+    private volatile long builtAt;
+    private final AtomicBoolean building = new AtomicBoolean();
+
+    public SuggestIndex(FilmSearchIndex filmSearchIndex,
+                        PopularFilmsIndex popularFilmsIndex,
+                        @Value("${filmorate.suggest.top-k:10}") int topK,
+                        @Value("${filmorate.suggest.likes-rebuild-interval-ms:60000}") long likesRebuildMs) {
+        this.filmSearchIndex = filmSearchIndex;
+        this.popularFilmsIndex = popularFilmsIndex;
+        this.topK = topK;
+        this.likesRebuildNanos = TimeUnit.MILLISECONDS.toNanos(likesRebuildMs);
+    }
+
+    @PostConstruct
+    public void load() {
+        rebuild();
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    /**
+     * До {@code limit} самых популярных строк, одно из слов которых начинается с {@code prefix}.
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        return trie.lookup(normalize(prefix), limit);
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.suggest.rebuild-interval-ms:5000}")
+    public void rebuildIfChanged() {
+        boolean changed = builtVersion != version.get()
+                || likesChanged.get() && System.nanoTime() - builtAt > likesRebuildNanos;
+        if (changed && building.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                try {
+                    rebuild();
+                } catch (RuntimeException exception) {
+                    log.error("Ошибка перестроения подсказок", exception);
+                } finally {
+                    building.set(false);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void onFilmSaved(Film film) {
+        version.incrementAndGet();
+    }
+
+    @Override
+    public void onFilmDeleted(long filmId) {
+        version.incrementAndGet();
+    }
+
+    @Override
+    public void onLikeAdded(long filmId, long userId) {
+        likesChanged.set(true);
+    }
+
+    @Override
+    public void onLikeRemoved(long filmId, long userId) {
+        likesChanged.set(true);
+    }
+
+    @Override
+    public void onDirectorSaved(Director director) {
+        version.incrementAndGet();
+    }
+
+    @Override
+    public void onDirectorDeleted(long directorId) {
+        version.incrementAndGet();
+    }
+
+    private void rebuild() {
+        long start = System.nanoTime();
+        long startVersion = version.get();
+        likesChanged.set(false);
+        // Одинаковые названия склеиваются, популярность режиссёра — сумма лайков его фильмов
+        Map<String, Suggestion> titles = new HashMap<>();
+        List<Suggestion> terms = new ArrayList<>();
+        filmSearchIndex.forEachTitle((title, filmId) -> {
+            long likes = popularFilmsIndex.getLikes(filmId);
+            titles.merge(normalize(title), new Suggestion(title, Type.TITLE, likes),
+                    (left, right) -> left.likes() >= right.likes() ? left : right);
+        });
+        filmSearchIndex.forEachDirector((name, films) -> terms.add(
+                new Suggestion(name, Type.DIRECTOR, sumLikes(films))));
+
+        terms.addAll(titles.values());
+        terms.sort(Comparator.comparingLong(Suggestion::likes).reversed().thenComparing(Suggestion::text));
+        trie = Trie.build(terms, topK);
+        builtVersion = startVersion;
+        builtAt = start;
+        log.info("Подсказки перестроены за {} мс: {} строк, {} узлов",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), terms.size(), trie.size());
+    }
+
+    private long sumLikes(RoaringBitmap films) {
+        long[] likes = new long[1];
+        films.forEach((int filmId) -> likes[0] += popularFilmsIndex.getLikes(filmId));
+        return likes[0];
+    }
+
+    static String normalize(String value) {
+        return value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    public record Suggestion(String text, Type type, long likes) {
+    }
+
+    /**
+     * Неизменяемое дерево в массивах. Узел {@code n}: дети — {@code [firstChild[n], firstChild[n] + childCount[n])}
+     * с символами {@code labels}, лучшие продолжения — {@code top[topStart[n] .. topStart[n + 1])}
+     * как номера строк, уже упорядоченных по популярности.
+     */
+    private static final class Trie {
+
+        static final Trie EMPTY = build(List.of(), 0);
+
+        private final List<Suggestion> terms;
+        private final char[] labels;
+        private final int[] firstChild;
+        private final int[] childCount;
+        private final int[] topStart;
+        private final int[] top;
+
+        private Trie(List<Suggestion> terms, char[] labels, int[] firstChild, int[] childCount,
+                     int[] topStart, int[] top) {
+            this.terms = terms;
+            this.labels = labels;
+            this.firstChild = firstChild;
+            this.childCount = childCount;
+            this.topStart = topStart;
+            this.top = top;
+        }
+
+        int size() {
+            return labels.length;
+        }
+
+        List<Suggestion> lookup(String prefix, int limit) {
+            int node = 0;
+            for (int idx = 0; idx < prefix.length(); idx++) {
+                int from = firstChild[node];
+                int position = Arrays.binarySearch(labels, from, from + childCount[node], prefix.charAt(idx));
+                if (position < 0) {
+                    return List.of();
+                }
+                node = position;
+            }
+            int end = Math.min(topStart[node + 1], topStart[node] + limit);
+            List<Suggestion> result = new ArrayList<>(end - topStart[node]);
+            for (int idx = topStart[node]; idx < end; idx++) {
+                result.add(terms.get(top[idx]));
+            }
+            return result;
+        }
+
+        // Строки добавляются по убыванию популярности, поэтому первые k попавших в узел — лучшие
+        static Trie build(List<Suggestion> terms, int topK) {
+            Node root = new Node();
+            for (int term = 0; term < terms.size(); term++) {
+                String text = normalize(terms.get(term).text());
+                for (int start = 0; start < text.length(); start++) {
+                    if (start > 0 && text.charAt(start - 1) != ' ') {
+                        continue;
+                    }
+                    Node node = root;
+                    node.offer(term, topK);
+                    for (int idx = start; idx < text.length(); idx++) {
+                        node = node.children.computeIfAbsent(text.charAt(idx), key -> new Node());
+                        node.offer(term, topK);
+                    }
+                }
+            }
+            return flatten(terms, root);
+        }
+
+        // Обход в ширину: дети каждого узла получают соседние номера
+        private static Trie flatten(List<Suggestion> terms, Node root) {
+            List<Node> order = new ArrayList<>();
+            List<Character> labelList = new ArrayList<>();
+            order.add(root);
+            labelList.add('\0');
+            for (int idx = 0; idx < order.size(); idx++) {
+                Node node = order.get(idx);
+                node.firstChild = order.size();
+                node.children.forEach((label, child) -> {
+                    order.add(child);
+                    labelList.add(label);
+                });
+            }
+
+            int size = order.size();
+            char[] labels = new char[size];
+            int[] firstChild = new int[size];
+            int[] childCount = new int[size];
+            int[] topStart = new int[size + 1];
+            int topSize = 0;
+            for (int idx = 0; idx < size; idx++) {
+                Node node = order.get(idx);
+                labels[idx] = labelList.get(idx);
+                firstChild[idx] = node.firstChild;
+                childCount[idx] = node.children.size();
+                topStart[idx] = topSize;
+                topSize += node.topCount;
+            }
+            topStart[size] = topSize;
+            int[] top = new int[topSize];
+            for (int idx = 0; idx < size; idx++) {
+                Node node = order.get(idx);
+                System.arraycopy(node.top, 0, top, topStart[idx], node.topCount);
+            }
+            return new Trie(terms, labels, firstChild, childCount, topStart, top);
+        }
+    }
+
+    // Узел на время сборки
+    private static final class Node {
+
+        private final TreeMap<Character, Node> children = new TreeMap<>();
+        private int[] top = new int[0];
+        private int topCount;
+        private int firstChild;
+
+        void offer(int term, int topK) {
+            if (topCount >= topK || (topCount > 0 && top[topCount - 1] == term)) {
+                return;
+            }
+            if (topCount == top.length) {
+                top = Arrays.copyOf(top, Math.min(topK, Math.max(2, top.length * 2)));
+            }
+            top[topCount++] = term;
+        }
+    }
+}
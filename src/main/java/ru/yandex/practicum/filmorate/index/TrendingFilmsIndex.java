@@ -0,0 +1,192 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Трендовые фильмы по лайкам за скользящее окно. Для каждого фильма с недавней активностью хранится
+ * кольцо почасовых счётчиков за последние {@link #MAX_WINDOW}; оценка — сумма счётчиков окна
+ * с экспоненциальным затуханием по возрасту корзины (период полураспада — четверть окна).
+ * Фильмы без лайков во всём кольце вытесняются, так что память ограничена числом активных фильмов.
+ * Счётчики меняются только настоящими лайками и их отменами (повторы отсекает {@link LikesIndex}),
+ * после перезапуска восстанавливаются по времени постановки лайков в film_likes. Время каждого
+ * лайка в кольце запоминается, так что отмена снимает его из той корзины, куда он был засчитан,
+ * а отмена лайка старше кольца счётчики не трогает.
+ */
+@Slf4j
+@Component
+public class TrendingFilmsIndex implements FilmIndexListener {
+
+    public static final Duration BUCKET = Duration.ofHours(1);
+    public static final Duration MAX_WINDOW = Duration.ofDays(7);
+
+    private static final long BUCKET_MILLIS = BUCKET.toMillis();
+    private static final int BUCKETS = (int) (MAX_WINDOW.toMillis() / BUCKET_MILLIS);
+
+    private final FilmStorage filmStorage;
+    private final Clock clock;
+    private final Map<Long, Counters> films = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TrendingFilmsIndex(@Qualifier("filmDbStorage") FilmStorage filmStorage) {
+        this(filmStorage, Clock.systemUTC());
+    }
+
+    public TrendingFilmsIndex(FilmStorage filmStorage, Clock clock) {
+        this.filmStorage = filmStorage;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void load() {
+        long since = clock.millis() - MAX_WINDOW.toMillis();
+        long[] likes = new long[1];
+        filmStorage.forEachLikeSince(since, (filmId, userId, likedAt) -> {
+            record(filmId, userId, likedAt);
+            likes[0]++;
+        });
+        log.info("Трендовые фильмы восстановлены по {} лайкам за {} дней", likes[0], MAX_WINDOW.toDays());
+    }
+
+    public List<Long> getTrending(Duration window, int count) {
+        if (window.compareTo(BUCKET) < 0 || window.compareTo(MAX_WINDOW) > 0) {
+            throw new IllegalArgumentException("Окно трендов должно быть от " + BUCKET.toHours() + "h до "
+                    + MAX_WINDOW.toDays() + "d");
+        }
+        int windowBuckets = (int) Math.ceil((double) window.toMillis() / BUCKET_MILLIS);
+        double[] weights = new double[windowBuckets];
+        double halfLifeBuckets = windowBuckets / 4.0;
+        for (int age = 0; age < windowBuckets; age++) {
+            weights[age] = Math.pow(0.5, age / halfLifeBuckets);
+        }
+
+        long epoch = currentEpoch();
+        PriorityQueue<Score> top = new PriorityQueue<>(Comparator.comparingDouble(Score::value)
+                .thenComparing(Score::filmId, Comparator.reverseOrder()));
+        for (Long filmId : films.keySet()) {
+            Counters counters = films.computeIfPresent(filmId, (id, current) ->
+                    current.isExpired(epoch) ? null : current);
+            if (counters == null) {
+                continue;
+            }
+            double value = counters.score(epoch, weights);
+            if (value <= 0) {
+                continue;
+            }
+            top.add(new Score(filmId, value));
+            if (top.size() > count) {
+                top.poll();
+            }
+        }
+
+        List<Long> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            result.add(top.poll().filmId());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    @Override
+    public void onLikeAdded(long filmId, long userId) {
+        record(filmId, userId, clock.millis());
+    }
+
+    @Override
+    public void onLikeRemoved(long filmId, long userId) {
+        Counters counters = films.get(filmId);
+        if (counters != null) {
+            counters.remove(userId);
+        }
+    }
+
+    @Override
+    public void onFilmDeleted(long filmId) {
+        films.remove(filmId);
+    }
+
+    private void record(long filmId, long userId, long timestamp) {
+        if (timestamp / BUCKET_MILLIS <= currentEpoch() - BUCKETS) {
+            return;
+        }
+        films.compute(filmId, (id, counters) -> {
+            Counters updated = counters != null ? counters : new Counters();
+            updated.add(userId, timestamp);
+            return updated;
+        });
+    }
+
+    private long currentEpoch() {
+        return clock.millis() / BUCKET_MILLIS;
+    }
+
+    private record Score(long filmId, double value) {
+    }
+
+    private static final class Counters {
+        private final int[] counts = new int[BUCKETS];
+        // Время засчитанных лайков по пользователю, только в пределах кольца
+        private final Map<Long, Long> likedAt = new HashMap<>();
+        private long lastEpoch = Long.MIN_VALUE / 2;
+
+        private synchronized void add(long userId, long timestamp) {
+            long epoch = timestamp / BUCKET_MILLIS;
+            if (epoch > lastEpoch) {
+                // Обнуляем корзины, через которые кольцо прошло с прошлой записи, и забываем их лайки
+                long from = Math.max(lastEpoch + 1, epoch - BUCKETS + 1);
+                for (long e = from; e <= epoch; e++) {
+                    counts[slot(e)] = 0;
+                }
+                lastEpoch = epoch;
+                likedAt.values().removeIf(time -> time / BUCKET_MILLIS <= epoch - BUCKETS);
+            } else if (epoch <= lastEpoch - BUCKETS) {
+                return;
+            }
+            counts[slot(epoch)]++;
+            likedAt.put(userId, timestamp);
+        }
+
+        private synchronized void remove(long userId) {
+            Long timestamp = likedAt.remove(userId);
+            if (timestamp == null) {
+                return;
+            }
+            long epoch = timestamp / BUCKET_MILLIS;
+            if (epoch > lastEpoch - BUCKETS) {
+                counts[slot(epoch)]--;
+            }
+        }
+
+        private synchronized double score(long epoch, double[] weights) {
+            double score = 0;
+            for (int age = 0; age < weights.length; age++) {
+                long e = epoch - age;
+                if (e > lastEpoch) {
+                    continue;
+                }
+                if (e <= lastEpoch - BUCKETS) {
+                    break;
+                }
+                score += counts[slot(e)] * weights[age];
+            }
+            return score;
+        }
+
+        private synchronized boolean isExpired(long epoch) {
+            return lastEpoch <= epoch - BUCKETS;
+        }
+
+        private static int slot(long epoch) {
+            return (int) Math.floorMod(epoch, (long) BUCKETS);
+        }
+    }
+}
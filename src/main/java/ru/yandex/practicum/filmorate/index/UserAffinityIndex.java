@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static ru.yandex.practicum.filmorate.index.LikesIndex.toInt;
+
+/**
+ * Вкусы пользователей: сумма жанров и режиссёров понравившихся фильмов из {@link FilmFeatureIndex}.
+ * Лайк прибавляет вектор фильма к профилю, снятие лайка — вычитает, так что персональный список
+ * популярного не требует соединения лайков с жанрами на каждый запрос. При изменении или удалении
+ * фильма пересчитываются только профили тех, кто его лайкнул: их список берётся из столбца
+ * {@link RecommendationIndex}, который обновляется последним и на момент удаления ещё хранит лайки.
+ */
+@Slf4j
+@Component
+@Order(2)
+public class UserAffinityIndex implements FilmIndexListener {
+
+    private final LikesIndex likesIndex;
+    private final FilmFeatureIndex filmFeatureIndex;
+    private final RecommendationIndex recommendationIndex;
+    private final double weight;
+    private final Map<Integer, FilmFeatureIndex.Affinity> profiles = new ConcurrentHashMap<>();
+
+    public UserAffinityIndex(LikesIndex likesIndex,
+                             FilmFeatureIndex filmFeatureIndex,
+                             RecommendationIndex recommendationIndex,
+                             @Value("${filmorate.popular.affinity-weight:1.0}") double weight) {
+        this.likesIndex = likesIndex;
+        this.filmFeatureIndex = filmFeatureIndex;
+        this.recommendationIndex = recommendationIndex;
+        this.weight = weight;
+    }
+
+    @PostConstruct
+    public void load() {
+        likesIndex.forEachUser(this::rebuild);
+        log.info("Профили вкусов загружены: {} пользователей", profiles.size());
+    }
+
+    /**
+     * Переставляет кандидатов из рейтинга популярного по оценке
+     * {@code log(1 + лайки) * (1 + weight * сходство)}, где сходство — косинус между профилем
+     * пользователя и жанрами/режиссёрами фильма. Без лайков у пользователя порядок не меняется.
+     */
+    public List<Long> rerank(long userId, List<PopularFilmsIndex.Rank> candidates, int count) {
+        FilmFeatureIndex.Affinity profile = profiles.get(toInt(userId));
+        if (profile == null) {
+            return candidates.stream()
+                    .limit(count)
+                    .map(PopularFilmsIndex.Rank::filmId)
+                    .toList();
+        }
+        double profileNorm = profile.norm();
+
+        List<Scored> scored = new ArrayList<>(candidates.size());
+        for (PopularFilmsIndex.Rank rank : candidates) {
+            double affinity = profileNorm > 0
+                    ? filmFeatureIndex.affinity(toInt(rank.filmId()), profile) / profileNorm
+                    : 0;
+            scored.add(new Scored(rank.filmId(), Math.log1p(rank.likes()) * (1 + weight * affinity)));
+        }
+        scored.sort(Comparator.comparingDouble(Scored::score).reversed().thenComparingLong(Scored::filmId));
+        return scored.stream()
+                .limit(count)
+                .map(Scored::filmId)
+                .toList();
+    }
+
+    @Override
+    public void onLikeAdded(long filmId, long userId) {
+        profiles.compute(toInt(userId), (id, profile) -> {
+            FilmFeatureIndex.Affinity updated = profile != null ? profile : new FilmFeatureIndex.Affinity();
+            filmFeatureIndex.addAffinity(toInt(filmId), updated, 1);
+            return updated;
+        });
+    }
+
+    @Override
+    public void onLikeRemoved(long filmId, long userId) {
+        profiles.computeIfPresent(toInt(userId), (id, profile) -> {
+            if (likesIndex.getLikesCount(userId) == 0) {
+                return null;
+            }
+            filmFeatureIndex.addAffinity(toInt(filmId), profile, -1);
+            return profile;
+        });
+    }
+
+    @Override
+    public void onFilmSaved(Film film) {
+        recommendationIndex.getUsers(film.getId()).forEach((int userId) -> rebuild(userId));
+    }
+
+    // LikesIndex уже снял лайки удалённого фильма, а столбец в RecommendationIndex ещё на месте
+    @Override
+    public void onFilmDeleted(long filmId) {
+        recommendationIndex.getUsers(filmId).forEach((int userId) -> rebuild(userId));
+    }
+
+    private void rebuild(int userId) {
+        profiles.compute(userId, (id, old) -> {
+            FilmFeatureIndex.Affinity profile = new FilmFeatureIndex.Affinity();
+            likesIndex.forEachFilm(userId, filmId -> filmFeatureIndex.addAffinity(filmId, profile, 1));
+            return likesIndex.getLikesCount(userId) > 0 ? profile : null;
+        });
+    }
+
+    private record Scored(long filmId, double score) {
+    }
+}
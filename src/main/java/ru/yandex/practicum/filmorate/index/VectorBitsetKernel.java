@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Ядро на Vector API: AND/OR и подсчёт бит выполняются над целым регистром слов,
+ * частичные суммы копятся в векторе и сворачиваются один раз на строку.
+ * Создавать только через {@link BitsetKernel#best()}, которое проверяет наличие модуля.
+ */
+public class VectorBitsetKernel implements BitsetKernel {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    private final ScalarBitsetKernel scalar = new ScalarBitsetKernel();
+
+    @Override
+    public int andCount(long[] left, long[] right) {
+        int words = Math.min(left.length, right.length);
+        int bound = SPECIES.loopBound(words);
+        LongVector counts = LongVector.zero(SPECIES);
+        int word = 0;
+        for (; word < bound; word += SPECIES.length()) {
+            LongVector and = LongVector.fromArray(SPECIES, left, word)
+                    .and(LongVector.fromArray(SPECIES, right, word));
+            counts = counts.add(and.lanewise(VectorOperators.BIT_COUNT));
+        }
+        long count = counts.reduceLanes(VectorOperators.ADD);
+        for (; word < words; word++) {
+            count += Long.bitCount(left[word] & right[word]);
+        }
+        return (int) count;
+    }
+
+    @Override
+    public int orCount(long[] left, long[] right) {
+        if (left.length != right.length) {
+            return scalar.orCount(left, right);
+        }
+        int bound = SPECIES.loopBound(left.length);
+        LongVector counts = LongVector.zero(SPECIES);
+        int word = 0;
+        for (; word < bound; word += SPECIES.length()) {
+            LongVector or = LongVector.fromArray(SPECIES, left, word)
+                    .or(LongVector.fromArray(SPECIES, right, word));
+            counts = counts.add(or.lanewise(VectorOperators.BIT_COUNT));
+        }
+        long count = counts.reduceLanes(VectorOperators.ADD);
+        for (; word < left.length; word++) {
+            count += Long.bitCount(left[word] | right[word]);
+        }
+        return (int) count;
+    }
+
+    @Override
+    public void jaccardAll(long[] row, long[] matrix, double[] scores) {
+        int words = row.length;
+        int bound = SPECIES.loopBound(words);
+        for (int user = 0; user < scores.length; user++) {
+            int offset = user * words;
+            LongVector intersections = LongVector.zero(SPECIES);
+            LongVector unions = LongVector.zero(SPECIES);
+            int word = 0;
+            for (; word < bound; word += SPECIES.length()) {
+                LongVector mine = LongVector.fromArray(SPECIES, row, word);
+                LongVector other = LongVector.fromArray(SPECIES, matrix, offset + word);
+                intersections = intersections.add(mine.and(other).lanewise(VectorOperators.BIT_COUNT));
+                unions = unions.add(mine.or(other).lanewise(VectorOperators.BIT_COUNT));
+            }
+            long intersection = intersections.reduceLanes(VectorOperators.ADD);
+            long union = unions.reduceLanes(VectorOperators.ADD);
+            for (; word < words; word++) {
+                intersection += Long.bitCount(row[word] & matrix[offset + word]);
+                union += Long.bitCount(row[word] | matrix[offset + word]);
+            }
+            scores[user] = union == 0 ? 0 : (double) intersection / union;
+        }
+    }
+
+    @Override
+    public void andCountAll(long[] row, long[] matrix, int rows, int[] counts) {
+        int words = row.length;
+        int bound = SPECIES.loopBound(words);
+        for (int user = 0; user < rows; user++) {
+            int offset = user * words;
+            LongVector intersections = LongVector.zero(SPECIES);
+            int word = 0;
+            for (; word < bound; word += SPECIES.length()) {
+                LongVector mine = LongVector.fromArray(SPECIES, row, word);
+                LongVector other = LongVector.fromArray(SPECIES, matrix, offset + word);
+                intersections = intersections.add(mine.and(other).lanewise(VectorOperators.BIT_COUNT));
+            }
+            long intersection = intersections.reduceLanes(VectorOperators.ADD);
+            for (; word < words; word++) {
+                intersection += Long.bitCount(row[word] & matrix[offset + word]);
+            }
+            counts[user] = (int) intersection;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.mapper;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Непрозрачный курсор постраничной выдачи: ключи сортировки последнего элемента страницы,
+ * упакованные в base64url.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class CursorMapper {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    public static String encode(long... keys) {
+        String raw = String.join(":", Arrays.stream(keys).mapToObj(Long::toString).toList());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static long[] decode(String cursor, int keyCount) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length != keyCount) {
+                throw new IllegalArgumentException("Некорректный курсор: " + cursor);
+            }
+            return Arrays.stream(parts).mapToLong(Long::parseLong).toArray();
+        } catch (IllegalArgumentException exception) {
+            // NumberFormatException тоже IllegalArgumentException
+            throw new IllegalArgumentException("Некорректный курсор: " + cursor);
+        }
+    }
+
+    public static void checkLimit(int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Размер страницы(limit) должен быть от 1 до " + MAX_LIMIT);
+        }
+    }
+}
@@ -15,4 +15,5 @@ public class Film {
     private Mpa mpa;
     private List<Genre> genres = new ArrayList<>();
     private List<Director> directors = new ArrayList<>();
+    private long likesCount;
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dto.DirectorDto;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.index.FilmIndexListener;
 import ru.yandex.practicum.filmorate.mapper.DirectorMapper;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.storage.DirectorStorage;
@@ -14,9 +15,11 @@ import java.util.stream.Collectors;
 @Service
 public class DirectorService {
     private final DirectorStorage directorStorage;
+    private final List<FilmIndexListener> indexListeners;
 
-    public DirectorService(DirectorStorage directorStorage) {
+    public DirectorService(DirectorStorage directorStorage, List<FilmIndexListener> indexListeners) {
         this.directorStorage = directorStorage;
+        this.indexListeners = indexListeners;
     }
 
     public List<DirectorDto> getAll() {
@@ -33,6 +36,8 @@ public class DirectorService {
     public DirectorDto create(DirectorDto directorDto) {
         Director director = DirectorMapper.mapToDirector(directorDto);
         director = directorStorage.save(director);
+        Director savedDirector = director;
+        indexListeners.forEach(listener -> listener.onDirectorSaved(savedDirector));
         return DirectorMapper.mapToDirectorDto(director);
     }
 
@@ -44,12 +49,15 @@ public class DirectorService {
                 .orElseThrow(() -> new NotFoundException("Режиссёр не найден"));
         Director director = DirectorMapper.mapToDirector(directorDto);
         director = directorStorage.update(director);
+        Director updatedDirector = director;
+        indexListeners.forEach(listener -> listener.onDirectorSaved(updatedDirector));
         return DirectorMapper.mapToDirectorDto(director);
     }
 
     public void delete(long id) {
         directorStorage.findById(id).orElseThrow(() -> new NotFoundException("Режиссёр не найден"));
         directorStorage.delete(id);
+        indexListeners.forEach(listener -> listener.onDirectorDeleted(id));
     }
 
     public List<DirectorDto> getDirectorsByFilmId(long filmId) {
@@ -21,8 +21,9 @@ public class EventService {
     private final UserStorage userStorage;
 
     public List<EventDto> getUserEvents(long userId) {
-        userStorage.findById(userId)
-                .orElseThrow(() -> new NotFoundException("Пользователь с id=" + userId + " не найден"));
+        if (!userStorage.existsById(userId)) {
+            throw new NotFoundException("Пользователь с id=" + userId + " не найден");
+        }
 
         List<Event> events = eventStorage.getUserEvents(userId);
 
@@ -0,0 +1,199 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dto.DirectorDto;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.index.FilmIndexListener;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * LRU-кэш результатов поиска фильмов. Ключ — запрос в нижнем регистре, отсортированный набор полей
+ * и режим fuzzy. Запись удаляется, когда меняется или удаляется фильм из её результата, имя его
+ * режиссёра, а также когда новое название, описание или имя может подойти под её запрос; нечёткие
+ * запросы при таких изменениях сбрасываются целиком. Лайки меняют только порядок, поэтому после
+ * первого лайка фильма из результата запись живёт не дольше {@code likes-ttl-ms}. Если результат
+ * обрезан по лимиту, лайк фильма за его пределами может вывести фильм в результат, поэтому такие
+ * записи помечаются любым лайком.
+ * Уведомляется после поисковых индексов, чтобы пересчёт уже видел изменения.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class FilmSearchCache implements FilmIndexListener {
+
+    private final int capacity;
+    private final long likesTtlNanos;
+    private final Map<Key, Entry> entries;
+    // Номер события; результат, посчитанный до удаления записей, в кэш не кладётся
+    private long version;
+    private long invalidatedVersion;
+    private long likedVersion;
+
+    public FilmSearchCache(@Value("${filmorate.search.cache.size:1000}") int capacity,
+                           @Value("${filmorate.search.cache.likes-ttl-ms:5000}") long likesTtlMs) {
+        this.capacity = capacity;
+        this.likesTtlNanos = TimeUnit.MILLISECONDS.toNanos(likesTtlMs);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > FilmSearchCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Номер, который нужно запомнить перед поиском и передать в {@link #put}.
+     */
+    public synchronized long version() {
+        return version;
+    }
+
+    public synchronized List<FilmDto> get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.likesChanged && System.nanoTime() - entry.likesChangedAt > likesTtlNanos) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.films;
+    }
+
+    /**
+     * @param truncated результат обрезан по лимиту поиска и мог не вместить все подходящие фильмы
+     */
+    public synchronized void put(Key key, List<FilmDto> films, long startVersion, boolean truncated) {
+        if (invalidatedVersion > startVersion) {
+            return;
+        }
+        Entry entry = new Entry(key, films, truncated);
+        if (likedVersion > startVersion) {
+            entry.markLikesChanged();
+        }
+        entries.put(key, entry);
+    }
+
+    @Override
+    public void onFilmSaved(Film film) {
+        long filmId = film.getId();
+        String title = normalize(film.getName());
+        String description = normalize(film.getDescription());
+        List<String> directorNames = film.getDirectors() == null ? List.of() : film.getDirectors().stream()
+                .map(Director::getName)
+                .filter(Objects::nonNull)
+                .map(FilmSearchCache::normalize)
+                .toList();
+        invalidate(entry -> entry.filmIds.contains(filmId)
+                || entry.key.mayMatch(title, directorNames, description));
+    }
+
+    @Override
+    public void onFilmDeleted(long filmId) {
+        invalidate(entry -> entry.filmIds.contains(filmId));
+    }
+
+    @Override
+    public void onLikeAdded(long filmId, long userId) {
+        likesChanged(filmId);
+    }
+
+    @Override
+    public void onLikeRemoved(long filmId, long userId) {
+        likesChanged(filmId);
+    }
+
+    @Override
+    public void onDirectorSaved(Director director) {
+        long directorId = director.getId();
+        List<String> names = director.getName() == null ? List.of() : List.of(normalize(director.getName()));
+        invalidate(entry -> entry.directorIds.contains(directorId) || entry.key.mayMatch("", names, ""));
+    }
+
+    @Override
+    public void onDirectorDeleted(long directorId) {
+        invalidate(entry -> entry.directorIds.contains(directorId));
+    }
+
+    private synchronized void invalidate(Predicate<Entry> stale) {
+        version++;
+        invalidatedVersion = version;
+        entries.values().removeIf(stale);
+    }
+
+    private synchronized void likesChanged(long filmId) {
+        version++;
+        likedVersion = version;
+        for (Entry entry : entries.values()) {
+            if (!entry.likesChanged && (entry.truncated || entry.filmIds.contains(filmId))) {
+                entry.markLikesChanged();
+            }
+        }
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param query  запрос в нижнем регистре
+     * @param fields поля поиска через запятую в алфавитном порядке
+     */
+    public record Key(String query, String fields, boolean fuzzy) {
+
+        public static Key of(String query, Set<String> fields, boolean fuzzy) {
+            return new Key(normalize(query), String.join(",", new TreeSet<>(fields)), fuzzy);
+        }
+
+        // С запасом: для описания достаточно любого слова запроса как подстроки
+        boolean mayMatch(String title, List<String> directorNames, String description) {
+            if (fields.contains("title") && !title.isEmpty() && (fuzzy || title.contains(query))) {
+                return true;
+            }
+            if (fields.contains("director")
+                    && directorNames.stream().anyMatch(name -> fuzzy || name.contains(query))) {
+                return true;
+            }
+            return fields.contains("description") && !description.isEmpty()
+                    && Arrays.stream(query.split("[^\\p{L}\\p{N}]+"))
+                    .anyMatch(word -> !word.isEmpty() && description.contains(word));
+        }
+    }
+
+    private static final class Entry {
+
+        private final Key key;
+        private final List<FilmDto> films;
+        private final Set<Long> filmIds = new HashSet<>();
+        private final Set<Long> directorIds = new HashSet<>();
+        private final boolean truncated;
+        private boolean likesChanged;
+        private long likesChangedAt;
+
+        Entry(Key key, List<FilmDto> films, boolean truncated) {
+            this.key = key;
+            this.films = List.copyOf(films);
+            this.truncated = truncated;
+            for (FilmDto film : films) {
+                filmIds.add(film.getId());
+                if (film.getDirectors() != null) {
+                    film.getDirectors().stream()
+                            .map(DirectorDto::getId)
+                            .forEach(directorIds::add);
+                }
+            }
+        }
+
+        void markLikesChanged() {
+            likesChanged = true;
+            likesChangedAt = System.nanoTime();
+        }
+    }
+}
@@ -1,43 +1,102 @@
 package ru.yandex.practicum.filmorate.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.CursorPage;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.dto.NewFilmRequest;
+import ru.yandex.practicum.filmorate.dto.PopularFilmsRequest;
+import ru.yandex.practicum.filmorate.dto.SuggestionDto;
 import ru.yandex.practicum.filmorate.dto.UpdateFilmRequest;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.index.CoLikeIndex;
+import ru.yandex.practicum.filmorate.index.DescriptionIndex;
+import ru.yandex.practicum.filmorate.index.FilmIndexListener;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.index.SuggestIndex;
+import ru.yandex.practicum.filmorate.index.TrendingFilmsIndex;
+import ru.yandex.practicum.filmorate.index.UserAffinityIndex;
+import ru.yandex.practicum.filmorate.mapper.CursorMapper;
 import ru.yandex.practicum.filmorate.mapper.FilmMapper;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Event;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.*;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class FilmService {
 
+    private static final Set<String> SEARCH_FIELDS = Set.of("title", "director", "description");
+
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
     private final MpaStorage mpaStorage;
     private final GenreStorage genreStorage;
     private final EventService eventService;
     private final DirectorStorage directorStorage;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final TrendingFilmsIndex trendingFilmsIndex;
+    private final LikesIndex likesIndex;
+    private final CoLikeIndex coLikeIndex;
+    private final UserAffinityIndex userAffinityIndex;
+    private final FilmSearchIndex filmSearchIndex;
+    private final SuggestIndex suggestIndex;
+    private final DescriptionIndex descriptionIndex;
+    private final FilmSearchCache filmSearchCache;
+    private final int rerankDepth;
+    private final List<FilmIndexListener> indexListeners;
+    private final ObjectWriter filmWriter;
 
     public FilmService(@Qualifier("filmDbStorage") FilmStorage filmStorage,
                        @Qualifier("userDbStorage") UserStorage userStorage,
                        @Qualifier("mpaDbStorage") MpaStorage mpaStorage,
                        @Qualifier("genreDbStorage") GenreStorage genreStorage,
-                       @Qualifier("directorDbStorage") DirectorStorage directorStorage, EventService eventService) {
+                       @Qualifier("directorDbStorage") DirectorStorage directorStorage, EventService eventService,
+                       PopularFilmsIndex popularFilmsIndex, TrendingFilmsIndex trendingFilmsIndex,
+                       LikesIndex likesIndex, CoLikeIndex coLikeIndex, UserAffinityIndex userAffinityIndex,
+                       FilmSearchIndex filmSearchIndex, SuggestIndex suggestIndex, DescriptionIndex descriptionIndex,
+                       FilmSearchCache filmSearchCache,
+                       @Value("${filmorate.popular.rerank-depth:5}") int rerankDepth,
+                       List<FilmIndexListener> indexListeners, ObjectMapper objectMapper) {
         this.filmStorage = filmStorage;
         this.userStorage = userStorage;
         this.mpaStorage = mpaStorage;
         this.genreStorage = genreStorage;
         this.eventService = eventService;
         this.directorStorage = directorStorage;
+        this.popularFilmsIndex = popularFilmsIndex;
+        this.trendingFilmsIndex = trendingFilmsIndex;
+        this.likesIndex = likesIndex;
+        this.coLikeIndex = coLikeIndex;
+        this.userAffinityIndex = userAffinityIndex;
+        this.filmSearchIndex = filmSearchIndex;
+        this.suggestIndex = suggestIndex;
+        this.descriptionIndex = descriptionIndex;
+        this.filmSearchCache = filmSearchCache;
+        this.rerankDepth = rerankDepth;
+        this.indexListeners = indexListeners;
+        this.filmWriter = objectMapper.writerFor(FilmDto.class);
     }
 
     public List<FilmDto> getAll() {
@@ -46,6 +105,46 @@ public class FilmService {
                 .collect(Collectors.toList());
     }
 
+    public CursorPage<FilmDto> getAll(String after, Integer limit) {
+        if (after == null && limit == null) {
+            return new CursorPage<>(getAll(), null);
+        }
+        int pageSize = limit != null ? limit : CursorMapper.DEFAULT_LIMIT;
+        CursorMapper.checkLimit(pageSize);
+        long afterId = after != null ? CursorMapper.decode(after, 1)[0] : 0;
+
+        List<Film> films = filmStorage.findPage(afterId, pageSize);
+        String nextCursor = films.size() == pageSize
+                ? CursorMapper.encode(films.get(films.size() - 1).getId())
+                : null;
+        return new CursorPage<>(films.stream()
+                .map(FilmMapper::mapToFilmDto)
+                .collect(Collectors.toList()), nextCursor);
+    }
+
+    /**
+     * Выгружает все фильмы в формате NDJSON: по одному JSON-объекту на строку.
+     */
+    public void exportFilms(OutputStream out) throws IOException {
+        BufferedOutputStream buffered = new BufferedOutputStream(out);
+        try {
+            filmStorage.streamAll(films -> {
+                try {
+                    for (Film film : films) {
+                        buffered.write(filmWriter.writeValueAsBytes(FilmMapper.mapToFilmDto(film)));
+                        buffered.write('\n');
+                    }
+                    buffered.flush();
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            });
+        } catch (UncheckedIOException exception) {
+            // Клиент закрыл соединение, курсор уже закрыт JdbcTemplate
+            throw exception.getCause();
+        }
+    }
+
     public FilmDto getFilmById(long filmId) {
         Film film = filmStorage.findById(filmId).orElseThrow(() -> new NotFoundException("Фильм не найден"));
         return FilmMapper.mapToFilmDto(film);
@@ -55,8 +154,9 @@ public class FilmService {
         validateMpaGenresAndDirectors(request.getMpa().getId(), request.getGenres(), request.getDirectors());
 
         Film film = FilmMapper.mapToFilm(request);
-        film = filmStorage.save(film);
-        return FilmMapper.mapToFilmDto(film);
+        Film savedFilm = filmStorage.save(film);
+        indexListeners.forEach(listener -> listener.onFilmSaved(savedFilm));
+        return FilmMapper.mapToFilmDto(savedFilm);
     }
 
     public FilmDto update(UpdateFilmRequest request) {
@@ -65,39 +165,144 @@ public class FilmService {
 
         validateMpaGenresAndDirectors(request.getMpa().getId(), request.getGenres(), request.getDirectors());
 
-        Film updatedFilm = FilmMapper.updateFilmFields(film, request);
-        updatedFilm = filmStorage.update(updatedFilm);
+        Film updatedFilm = filmStorage.update(FilmMapper.updateFilmFields(film, request));
+        indexListeners.forEach(listener -> listener.onFilmSaved(updatedFilm));
         return FilmMapper.mapToFilmDto(updatedFilm);
     }
 
     public void addLike(long filmId, long userId) {
-        filmStorage.findById(filmId).orElseThrow(() -> new NotFoundException("Фильм не найден"));
-        userStorage.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь не найден"));
-        filmStorage.addLike(filmId, userId);
+        checkFilmAndUserExist(filmId, userId);
+        // Повторный лайк отсекаем по индексу, не обращаясь к БД; фиксацию ждём уже без блокировок
+        BooleanSupplier written = likesIndex.addIfAbsent(userId, filmId,
+                () -> filmStorage.enqueueLike(filmId, userId, true));
+        if (written != null && awaitLike(written, () -> likesIndex.onLikeRemoved(filmId, userId))) {
+            indexListeners.forEach(listener -> listener.onLikeAdded(filmId, userId));
+        }
         eventService.addEvent(userId, Event.EventType.LIKE, Event.Operation.ADD, filmId);
     }
 
     public void removeLike(long filmId, long userId) {
-        filmStorage.findById(filmId).orElseThrow(() -> new NotFoundException("Фильм не найден"));
-        userStorage.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь не найден"));
-        filmStorage.removeLike(filmId, userId);
+        checkFilmAndUserExist(filmId, userId);
+        BooleanSupplier written = likesIndex.removeIfPresent(userId, filmId,
+                () -> filmStorage.enqueueLike(filmId, userId, false));
+        if (written != null && awaitLike(written, () -> likesIndex.onLikeAdded(filmId, userId))) {
+            indexListeners.forEach(listener -> listener.onLikeRemoved(filmId, userId));
+        }
         eventService.addEvent(userId, Event.EventType.LIKE, Event.Operation.REMOVE, filmId);
     }
 
-    public List<FilmDto> getPopularFilms(int count, Long genreId, Integer year) {
+    public CursorPage<FilmDto> getPopularFilms(PopularFilmsRequest request) {
+        int count = request.getCount();
         if (count < 1) {
             throw new IllegalArgumentException("Количество популярных фильмов(count) должно быть больше 0.");
         }
-        if (genreId != null) {
+        PopularFilmsIndex.Filter filter = toFilter(request);
+        for (Long genreId : filter.genreIds()) {
             genreStorage.findById(genreId)
                     .orElseThrow(() -> new NotFoundException("Жанр не найден с id " + genreId));
         }
+        for (Long mpaId : filter.mpaIds()) {
+            mpaStorage.findById(mpaId)
+                    .orElseThrow(() -> new NotFoundException("Рейтинг MPA не найден с id " + mpaId));
+        }
+
+        if (request.getForUser() != null) {
+            return getPersonalPopularFilms(request.getForUser(), count, filter, request.getAfter());
+        }
+
+        PopularFilmsIndex.Rank afterRank = null;
+        if (request.getAfter() != null) {
+            long[] keys = CursorMapper.decode(request.getAfter(), 2);
+            afterRank = new PopularFilmsIndex.Rank(keys[0], keys[1]);
+        }
+
+        List<PopularFilmsIndex.Rank> ranks = popularFilmsIndex.getTop(count, filter, afterRank);
+        String nextCursor = null;
+        if (ranks.size() == count) {
+            PopularFilmsIndex.Rank last = ranks.get(ranks.size() - 1);
+            nextCursor = CursorMapper.encode(last.likes(), last.filmId());
+        }
+        List<Long> filmIds = ranks.stream()
+                .map(PopularFilmsIndex.Rank::filmId)
+                .toList();
+        return new CursorPage<>(filmStorage.findAllById(filmIds).stream()
+                .map(FilmMapper::mapToFilmDto)
+                .collect(Collectors.toList()), nextCursor);
+    }
+
+    // Переставляются первые count * rerankDepth фильмов рейтинга, поэтому курсора у такого списка нет
+    private CursorPage<FilmDto> getPersonalPopularFilms(long userId, int count, PopularFilmsIndex.Filter filter,
+                                                        String after) {
+        if (after != null) {
+            throw new IllegalArgumentException("Персональный список популярных фильмов не поддерживает курсор");
+        }
+        if (!userStorage.existsById(userId)) {
+            throw new NotFoundException("Пользователь с id " + userId + " не найден");
+        }
+        List<PopularFilmsIndex.Rank> candidates = popularFilmsIndex.getTop(
+                (int) Math.min(Integer.MAX_VALUE, (long) count * rerankDepth), filter, null);
+        List<Long> filmIds = userAffinityIndex.rerank(userId, candidates, count);
+        return new CursorPage<>(filmStorage.findAllById(filmIds).stream()
+                .map(FilmMapper::mapToFilmDto)
+                .collect(Collectors.toList()), null);
+    }
+
+    private static PopularFilmsIndex.Filter toFilter(PopularFilmsRequest request) {
+        Set<Long> genreIds = new HashSet<>(request.getGenreIds());
+        if (request.getGenreId() != null) {
+            genreIds.add(request.getGenreId());
+        }
+        Integer yearFrom = request.getYearFrom();
+        Integer yearTo = request.getYearTo();
+        if (request.getYear() != null) {
+            yearFrom = request.getYear();
+            yearTo = request.getYear();
+        }
+        return new PopularFilmsIndex.Filter(genreIds, new HashSet<>(request.getMpaIds()), yearFrom, yearTo);
+    }
 
-        return filmStorage.getPopular(count, genreId, year).stream()
+    public List<FilmDto> getTrendingFilms(String window, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Количество трендовых фильмов(count) должно быть больше 0.");
+        }
+        List<Long> filmIds = trendingFilmsIndex.getTrending(DurationStyle.detectAndParse(window), count);
+        return filmStorage.findAllById(filmIds).stream()
                 .map(FilmMapper::mapToFilmDto)
                 .collect(Collectors.toList());
     }
 
+    public List<FilmDto> getSimilarFilms(long filmId, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Количество похожих фильмов(count) должно быть больше 0.");
+        }
+        if (!filmStorage.existsById(filmId)) {
+            throw new NotFoundException("Фильм с id " + filmId + " не найден");
+        }
+        List<Long> filmIds = coLikeIndex.getSimilar(filmId, count);
+        return filmStorage.findAllById(filmIds).stream()
+                .map(FilmMapper::mapToFilmDto)
+                .collect(Collectors.toList());
+    }
+
+    private void checkFilmAndUserExist(long filmId, long userId) {
+        if (!filmStorage.existsById(filmId)) {
+            throw new NotFoundException("Фильм не найден");
+        }
+        if (!userStorage.existsById(userId)) {
+            throw new NotFoundException("Пользователь не найден");
+        }
+    }
+
+    private static boolean awaitLike(BooleanSupplier written, Runnable rollback) {
+        try {
+            return written.getAsBoolean();
+        } catch (RuntimeException exception) {
+            // Запись не дошла до БД: возвращаем отметку в индексе лайков
+            rollback.run();
+            throw exception;
+        }
+    }
+
     private void validateMpaGenresAndDirectors(Long mpaId, List<Genre> genres, List<Director> directors) {
         if (mpaId != null) {
             mpaStorage.findById(mpaId)
@@ -130,13 +335,15 @@ public class FilmService {
     }
 
     public void delete(long filmId) {
-        filmStorage.findById(filmId)
-                .orElseThrow(() -> new NotFoundException("Фильм с id " + filmId + " не найден"));
+        if (!filmStorage.existsById(filmId)) {
+            throw new NotFoundException("Фильм с id " + filmId + " не найден");
+        }
         filmStorage.delete(filmId);
+        indexListeners.forEach(listener -> listener.onFilmDeleted(filmId));
         log.info("Фильм id={} успешно удален", filmId);
     }
 
-    public List<FilmDto> searchFilms(String query, String by) {
+    public List<FilmDto> searchFilms(String query, String by, boolean fuzzy) {
         if (query == null || query.isBlank()) {
             throw new IllegalArgumentException("Поисковый запрос не может быть пуст");
         }
@@ -145,16 +352,60 @@ public class FilmService {
         }
 
         String normalizedBy = by.toLowerCase().trim().replaceAll("\\s+", "");
+        Set<String> fields = new HashSet<>(Arrays.asList(normalizedBy.split(",")));
 
-        if (!normalizedBy.equals("title") && !normalizedBy.equals("director") && !normalizedBy.equals("title,director")
-                && !normalizedBy.equals("director,title")) {
+        if (!SEARCH_FIELDS.containsAll(fields)) {
             throw new IllegalArgumentException("Параметр 'by' может принимать значения: " +
-                    "title, director");
+                    "title, director, description");
         }
 
-        return filmStorage.searchFilms(query, by).stream()
+        FilmSearchCache.Key key = FilmSearchCache.Key.of(query, fields, fuzzy);
+        List<FilmDto> cached = filmSearchCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        long version = filmSearchCache.version();
+
+        boolean byTitle = fields.contains("title");
+        boolean byDirector = fields.contains("director");
+        List<Long> filmIds = new ArrayList<>();
+        // Нечёткий поиск и поиск по описанию отдают не больше своего лимита лучших фильмов
+        boolean truncated = false;
+        if (byTitle || byDirector) {
+            if (fuzzy) {
+                List<Long> found = filmSearchIndex.searchFuzzy(query, byTitle, byDirector);
+                truncated = found.size() >= filmSearchIndex.getFuzzyLimit();
+                filmIds.addAll(found);
+            } else {
+                filmIds.addAll(filmSearchIndex.search(query, byTitle, byDirector));
+            }
+        }
+        if (fields.contains("description")) {
+            // Совпадение в названии или имени режиссёра точнее, найденное по описанию идёт после него
+            List<Long> described = descriptionIndex.search(query);
+            truncated |= described.size() >= descriptionIndex.getLimit();
+            Set<Long> found = new HashSet<>(filmIds);
+            described.stream()
+                    .filter(found::add)
+                    .forEach(filmIds::add);
+        }
+        List<FilmDto> films = filmStorage.findAllById(filmIds).stream()
                 .map(FilmMapper::mapToFilmDto)
                 .collect(Collectors.toList());
+        filmSearchCache.put(key, films, version, truncated);
+        return films;
+    }
+
+    public List<SuggestionDto> suggest(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            throw new IllegalArgumentException("Префикс не может быть пуст");
+        }
+        if (limit < 1 || limit > suggestIndex.getTopK()) {
+            throw new IllegalArgumentException("Параметр limit должен быть от 1 до " + suggestIndex.getTopK());
+        }
+        return suggestIndex.suggest(prefix, limit).stream()
+                .map(suggestion -> new SuggestionDto(suggestion.text(), suggestion.type().name().toLowerCase()))
+                .collect(Collectors.toList());
     }
 
     public List<FilmDto> getFilmsByDirector(long directorId, String sortBy) {
@@ -171,12 +422,17 @@ public class FilmService {
     }
 
     public List<FilmDto> getCommonFilms(long userId, long friendId) {
-        userStorage.findById(userId)
-                .orElseThrow(() -> new NotFoundException("Пользователь с id " + userId + " не найден"));
-        userStorage.findById(friendId)
-                .orElseThrow(() -> new NotFoundException("Пользователь (друг) с id " + friendId + " не найден"));
+        if (!userStorage.existsById(userId)) {
+            throw new NotFoundException("Пользователь с id " + userId + " не найден");
+        }
+        if (!userStorage.existsById(friendId)) {
+            throw new NotFoundException("Пользователь (друг) с id " + friendId + " не найден");
+        }
 
-        List<Film> commonFilms = filmStorage.getCommonFilms(userId, friendId);
+        List<Long> commonFilmIds = likesIndex.getCommonFilmIds(userId, friendId);
+        commonFilmIds.sort(Comparator.<Long>comparingLong(popularFilmsIndex::getLikes).reversed()
+                .thenComparing(Comparator.naturalOrder()));
+        List<Film> commonFilms = filmStorage.findAllById(commonFilmIds);
 
         log.info("Найдено общих фильмов: {}", commonFilms.size());
 
@@ -3,13 +3,14 @@ package ru.yandex.practicum.filmorate.service;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.CursorPage;
 import ru.yandex.practicum.filmorate.dto.ReviewDto;
 import ru.yandex.practicum.filmorate.dto.UpdateReviewRequest;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.mapper.CursorMapper;
 import ru.yandex.practicum.filmorate.mapper.ReviewMapper;
 import ru.yandex.practicum.filmorate.model.Event;
 import ru.yandex.practicum.filmorate.model.Review;
-import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.ReviewStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
@@ -70,12 +71,10 @@ public class ReviewService {
     }
 
     private void checkDataReviewDto(ReviewDto dto) {
-        filmStorage.findById(dto.getFilmId()).orElseThrow(
-                () -> new NotFoundException("Фильм не найден")
-        );
-        userStorage.findById(dto.getUserId()).orElseThrow(
-                () -> new NotFoundException("Пользователь c id = " + dto.getUserId() + "не найден")
-        );
+        if (!filmStorage.existsById(dto.getFilmId())) {
+            throw new NotFoundException("Фильм не найден");
+        }
+        checkUserExists(dto.getUserId());
     }
 
 
@@ -91,26 +90,45 @@ public class ReviewService {
                 id);
     }
 
-    public List<ReviewDto> getAll(Long filmId, int count) {
-        return reviewStorage.getAll(filmId, count).stream()
+    public CursorPage<ReviewDto> getAll(Long filmId, int count, String after) {
+        List<Review> reviews;
+        if (after == null) {
+            // Без курсора count принимается как и раньше, без ограничения размера страницы
+            reviews = reviewStorage.getAll(filmId, count);
+        } else {
+            CursorMapper.checkLimit(count);
+            long[] keys = CursorMapper.decode(after, 2);
+            // Полезность в курсоре — int, иначе курсор подделан
+            if (keys[0] < Integer.MIN_VALUE || keys[0] > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Некорректный курсор: " + after);
+            }
+            reviews = reviewStorage.getPage(filmId, (int) keys[0], keys[1], count);
+        }
+
+        String nextCursor = null;
+        if (!reviews.isEmpty() && reviews.size() == count) {
+            Review last = reviews.get(reviews.size() - 1);
+            nextCursor = CursorMapper.encode(last.getUseful(), last.getReviewId());
+        }
+        return new CursorPage<>(reviews.stream()
                 .map(ReviewMapper::toDto)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()), nextCursor);
     }
 
     public void addLike(Long reviewId, Long userId) {
-        checkReviewExists(reviewId);
+        checkReviewIdExists(reviewId);
         checkUserExists(userId);
         reviewStorage.addLike(reviewId, userId, true);
     }
 
     public void addDislike(Long reviewId, Long userId) {
-        checkReviewExists(reviewId);
+        checkReviewIdExists(reviewId);
         checkUserExists(userId);
         reviewStorage.addLike(reviewId, userId, false);
     }
 
     public void removeLike(Long reviewId, Long userId) {
-        checkReviewExists(reviewId);
+        checkReviewIdExists(reviewId);
         checkUserExists(userId);
         reviewStorage.removeLike(reviewId, userId);
     }
@@ -120,9 +138,15 @@ public class ReviewService {
                 .orElseThrow(() -> new NotFoundException("Отзыв не найден"));
     }
 
-    private User checkUserExists(long userId) throws NotFoundException {
-        return userStorage.findById(userId).orElseThrow(
-                () -> new NotFoundException("Пользователь c id = " + userId + "не найден")
-        );
+    private void checkReviewIdExists(long reviewId) throws NotFoundException {
+        if (!reviewStorage.existsById(reviewId)) {
+            throw new NotFoundException("Отзыв не найден");
+        }
+    }
+
+    private void checkUserExists(long userId) throws NotFoundException {
+        if (!userStorage.existsById(userId)) {
+            throw new NotFoundException("Пользователь c id = " + userId + "не найден");
+        }
     }
 }
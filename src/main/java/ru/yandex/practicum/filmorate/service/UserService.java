@@ -1,38 +1,85 @@
 package ru.yandex.practicum.filmorate.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.CursorPage;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.dto.NewUserRequest;
+import ru.yandex.practicum.filmorate.dto.RecommendationsDto;
 import ru.yandex.practicum.filmorate.dto.UpdateUserRequest;
 import ru.yandex.practicum.filmorate.dto.UserDto;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.index.AlsRecommender;
+import ru.yandex.practicum.filmorate.index.FilmFeatureIndex;
+import ru.yandex.practicum.filmorate.index.FilmIndexListener;
+import ru.yandex.practicum.filmorate.index.FriendLikesRanker;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.PrecomputedRecommendations;
+import ru.yandex.practicum.filmorate.mapper.CursorMapper;
 import ru.yandex.practicum.filmorate.mapper.FilmMapper;
 import ru.yandex.practicum.filmorate.mapper.UserMapper;
 import ru.yandex.practicum.filmorate.model.Event;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class UserService {
 
+    public enum RecommendationMode {
+        SQL, NEIGHBOURS, ALS
+    }
+
     private final UserStorage userStorage;
     private final FilmStorage filmStorage;
     private final EventService eventService;
+    private final List<FilmIndexListener> indexListeners;
+    private final RecommendationMode recommendationMode;
+    private final PrecomputedRecommendations recommendations;
+    private final AlsRecommender alsRecommender;
+    private final FriendLikesRanker friendLikesRanker;
+    private final FilmFeatureIndex filmFeatureIndex;
+    private final LikesIndex likesIndex;
+    private final ObjectWriter userWriter;
 
     public UserService(
             @Qualifier("userDbStorage") UserStorage userStorage,
             @Qualifier("filmDbStorage") FilmStorage filmStorage,
-            EventService eventService
+            EventService eventService,
+            List<FilmIndexListener> indexListeners,
+            @Value("${filmorate.recommendations.mode:neighbours}") String recommendationMode,
+            Optional<PrecomputedRecommendations> recommendations,
+            Optional<AlsRecommender> alsRecommender,
+            FriendLikesRanker friendLikesRanker,
+            FilmFeatureIndex filmFeatureIndex,
+            LikesIndex likesIndex,
+            ObjectMapper objectMapper
     ) {
         this.userStorage = userStorage;
         this.filmStorage = filmStorage;
         this.eventService = eventService;
+        this.indexListeners = indexListeners;
+        this.recommendationMode = RecommendationMode.valueOf(recommendationMode.toUpperCase());
+        this.recommendations = recommendations.orElse(null);
+        this.alsRecommender = alsRecommender.orElse(null);
+        this.friendLikesRanker = friendLikesRanker;
+        this.filmFeatureIndex = filmFeatureIndex;
+        this.likesIndex = likesIndex;
+        this.userWriter = objectMapper.writerFor(UserDto.class);
     }
 
     public List<UserDto> getAll() {
@@ -41,6 +88,43 @@ public class UserService {
                 .collect(Collectors.toList());
     }
 
+    public CursorPage<UserDto> getAll(String after, Integer limit) {
+        if (after == null && limit == null) {
+            return new CursorPage<>(getAll(), null);
+        }
+        int pageSize = limit != null ? limit : CursorMapper.DEFAULT_LIMIT;
+        CursorMapper.checkLimit(pageSize);
+        long afterId = after != null ? CursorMapper.decode(after, 1)[0] : 0;
+
+        List<User> users = userStorage.findPage(afterId, pageSize);
+        String nextCursor = users.size() == pageSize
+                ? CursorMapper.encode(users.get(users.size() - 1).getId())
+                : null;
+        return new CursorPage<>(users.stream()
+                .map(UserMapper::mapToUserDto)
+                .collect(Collectors.toList()), nextCursor);
+    }
+
+    /**
+     * Выгружает всех пользователей в формате NDJSON: по одному JSON-объекту на строку.
+     */
+    public void exportUsers(OutputStream out) throws IOException {
+        BufferedOutputStream buffered = new BufferedOutputStream(out);
+        try {
+            userStorage.streamAll(user -> {
+                try {
+                    buffered.write(userWriter.writeValueAsBytes(UserMapper.mapToUserDto(user)));
+                    buffered.write('\n');
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            });
+        } catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+        buffered.flush();
+    }
+
     public UserDto getUserById(long userId) {
         User user = userStorage.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь не найден"));
         return UserMapper.mapToUserDto(user);
@@ -62,8 +146,8 @@ public class UserService {
     }
 
     public void addFriend(long userId, long friendId) {
-        userStorage.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь не найден"));
-        userStorage.findById(friendId).orElseThrow(() -> new NotFoundException("Друг не найден"));
+        checkUserExists(userId, "Пользователь не найден");
+        checkUserExists(friendId, "Друг не найден");
         userStorage.addFriend(userId, friendId);
 
         // Добавляем событие о добавлении в друзья
@@ -71,8 +155,8 @@ public class UserService {
     }
 
     public void deleteFriend(long userId, long friendId) {
-        userStorage.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь не найден"));
-        userStorage.findById(friendId).orElseThrow(() -> new NotFoundException("Друг не найден"));
+        checkUserExists(userId, "Пользователь не найден");
+        checkUserExists(friendId, "Друг не найден");
         userStorage.removeFriend(userId, friendId);
 
         // Добавляем событие об удалении из друзей
@@ -80,7 +164,7 @@ public class UserService {
     }
 
     public List<UserDto> getFriends(long userId) {
-        userStorage.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь не найден"));
+        checkUserExists(userId, "Пользователь не найден");
         return userStorage.getFriends(userId).stream()
                 .map(UserMapper::mapToUserDto)
                 .collect(Collectors.toList());
@@ -92,20 +176,83 @@ public class UserService {
                 .collect(Collectors.toList());
     }
 
-    public List<FilmDto> getRecommendations(Long userId) {
+    public RecommendationsDto getRecommendations(Long userId, String source) {
+
+        checkUserExists(userId, "Пользователь не найден");
+        RecommendationsDto result;
+        if (source == null) {
+            result = switch (recommendationMode) {
+                case SQL -> getSqlRecommendations(userId);
+                case NEIGHBOURS -> getNeighbourRecommendations(userId);
+                case ALS -> getAlsRecommendations(userId);
+            };
+            if (result.getFilms().isEmpty()) {
+                // Лайки пользователя ни с кем не пересекаются — подбираем похожие по содержанию фильмы
+                result.setFilms(findFilms(filmFeatureIndex.recommend(likesIndex.getFilms(userId))));
+            }
+        } else if (source.equalsIgnoreCase("friends")) {
+            result = getFriendRecommendations(userId);
+        } else {
+            throw new ValidationException("Неизвестный источник рекомендаций: " + source);
+        }
+        log.info("Найдено рекомендованных фильмов {} для пользователя с id {}", result.getFilms().size(), userId);
+        return result;
+    }
+
+    // Считается на лету: друзья и их лайки читаются из памяти, в БД только список друзей
+    private RecommendationsDto getFriendRecommendations(long userId) {
+        List<Long> filmIds = friendLikesRanker.rank(userId, userStorage.getFriendIds(userId));
+        return new RecommendationsDto(findFilms(filmIds), Instant.now(), false);
+    }
 
-        userStorage.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь не найден"));
+    private RecommendationsDto getSqlRecommendations(long userId) {
         List<FilmDto> filmDtoList = filmStorage.getRecommendations(userId).stream()
                 .map(FilmMapper::mapToFilmDto)
                 .toList();
-        log.info("Найдено рекомендованных фильмов {} для пользователя с id {}", filmDtoList.size(), userId);
-        return filmDtoList;
+        return new RecommendationsDto(filmDtoList, Instant.now(), false);
+    }
+
+    private RecommendationsDto getNeighbourRecommendations(long userId) {
+        PrecomputedRecommendations.Entry entry = recommendations.get(userId);
+        if (entry == null) {
+            // Пользователь ещё не посчитан фоновой задачей
+            entry = recommendations.computeNow(userId);
+        }
+        return new RecommendationsDto(findFilms(entry.filmIds()), entry.computedAt(),
+                recommendations.isStale(userId));
+    }
+
+    private RecommendationsDto getAlsRecommendations(long userId) {
+        AlsRecommender.Result result = alsRecommender.recommend(userId);
+        if (result == null) {
+            // Первая модель ещё обучается
+            RecommendationsDto fallback = getSqlRecommendations(userId);
+            fallback.setStale(true);
+            return fallback;
+        }
+        return new RecommendationsDto(findFilms(result.filmIds()), result.trainedAt(), result.stale());
+    }
+
+    private List<FilmDto> findFilms(List<Long> filmIds) {
+        return filmStorage.findAllById(filmIds).stream()
+                .map(FilmMapper::mapToFilmDto)
+                .toList();
     }
 
     public void delete(long userId) {
-        userStorage.findById(userId)
-                .orElseThrow(() -> new NotFoundException("Пользователь с id " + userId + " не найден"));
+        checkUserExists(userId, "Пользователь с id " + userId + " не найден");
+        // Лайки пользователя удаляются из БД каскадно, индексы в памяти нужно уведомить отдельно
+        List<Long> likedFilmIds = filmStorage.getLikedFilmIds(userId);
         userStorage.delete(userId);
+        indexListeners.forEach(listener -> listener.onUserDeleted(userId));
+        likedFilmIds.forEach(filmId ->
+                indexListeners.forEach(listener -> listener.onLikeRemoved(filmId, userId)));
         log.info("Пользователь id={} успешно удален", userId);
     }
+
+    private void checkUserExists(long userId, String message) {
+        if (!userStorage.existsById(userId)) {
+            throw new NotFoundException(message);
+        }
+    }
 }
\ No newline at end of file
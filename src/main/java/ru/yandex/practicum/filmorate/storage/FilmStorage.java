@@ -4,30 +4,61 @@ import ru.yandex.practicum.filmorate.model.Film;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
     List<Film> findAll();
 
+    List<Film> findPage(long afterId, int limit);
+
+    /**
+     * Проходит по всем фильмам в порядке id, отдавая их пачками с заполненными жанрами и режиссёрами.
+     * Пачка переиспользуется, ссылку на неё после возврата из consumer хранить нельзя.
+     */
+    void streamAll(Consumer<List<Film>> chunkConsumer);
+
     Optional<Film> findById(long id);
 
+    boolean existsById(long id);
+
+    List<Film> findAllById(List<Long> ids);
+
     Film save(Film film);
 
     Film update(Film film);
 
     void delete(long id);
 
-    void addLike(long filmId, long userId);
+    /**
+     * Ставит лайк или его отмену в очередь записи и возвращает ожидание фиксации: true, если состояние
+     * лайка изменилось. Записи одной пары применяются в порядке вызовов.
+     */
+    BooleanSupplier enqueueLike(long filmId, long userId, boolean like);
 
-    void removeLike(long filmId, long userId);
+    List<Long> getLikedFilmIds(long userId);
 
-    List<Film> getPopular(int count, Long genreId, Integer year);
+    void forEachLike(BiConsumer<Long, Long> filmIdAndUserIdConsumer);
 
-    List<Film> getRecommendations(long userId);
+    /**
+     * Лайки, поставленные не раньше {@code timestamp} (мс от эпохи).
+     */
+    void forEachLikeSince(long timestamp, DatedLikeConsumer consumer);
+
+    /**
+     * Пересчитывает likes_count по film_likes полной агрегацией; при старте вызывается, только если
+     * сумма счётчиков разошлась с числом лайков.
+     */
+    int rebuildLikesCount();
 
-    List<Film> searchFilms(String query, String by);
+    List<Film> getRecommendations(long userId);
 
     List<Film> getFilmsByDirector(long directorId, String sortBy);
 
-    List<Film> getCommonFilms(long userId, long friendId);
+    @FunctionalInterface
+    interface DatedLikeConsumer {
+        void accept(long filmId, long userId, long likedAt);
+    }
 }
\ No newline at end of file
@@ -13,8 +13,12 @@ public interface ReviewStorage {
 
     Optional<Review> getById(Long id);
 
+    boolean existsById(long id);
+
     List<Review> getAll(Long filmId, int count);
 
+    List<Review> getPage(Long filmId, int afterUseful, long afterReviewId, int count);
+
     void addLike(Long reviewId, Long userId, boolean isLike);
 
     void removeLike(Long reviewId, Long userId);
@@ -3,13 +3,20 @@ package ru.yandex.practicum.filmorate.storage;
 import ru.yandex.practicum.filmorate.model.User;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface UserStorage {
 
     List<User> findAll();
 
+    List<User> findPage(long afterId, int limit);
+
+    void streamAll(Consumer<User> consumer);
+
     Optional<User> findById(long id);
 
+    boolean existsById(long id);
+
     Optional<User> findByEmail(String email);
 
     User save(User user);
@@ -22,6 +29,8 @@ public interface UserStorage {
 
     List<User> getFriends(long userId);
 
+    List<Long> getFriendIds(long userId);
+
     List<User> getCommonFriends(long userId, long otherUserId);
 
     void delete(long id);
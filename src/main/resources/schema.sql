@@ -22,9 +22,16 @@ CREATE TABLE IF NOT EXISTS films (
     name VARCHAR(255) NOT NULL,
     description VARCHAR(1024),
     duration INTEGER NOT NULL,
-    rating_id BIGINT NOT NULL REFERENCES film_ratings(rating_id) ON DELETE RESTRICT
+    rating_id BIGINT NOT NULL REFERENCES film_ratings(rating_id) ON DELETE RESTRICT,
+    likes_count BIGINT DEFAULT 0 NOT NULL
 );
 
+-- Для баз, созданных до появления счётчика лайков
+ALTER TABLE films ADD COLUMN IF NOT EXISTS likes_count BIGINT DEFAULT 0 NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_films_likes_count ON films (likes_count DESC, film_id);
+CREATE INDEX IF NOT EXISTS idx_films_release_date ON films (release_date, likes_count DESC, film_id);
+
 CREATE TABLE IF NOT EXISTS friends (
     user_id BIGINT NOT NULL REFERENCES users(user_id) ON DELETE CASCADE,
     friend_id BIGINT NOT NULL REFERENCES users(user_id) ON DELETE CASCADE,
@@ -40,9 +47,16 @@ CREATE TABLE IF NOT EXISTS film_genre (
 CREATE TABLE IF NOT EXISTS film_likes (
     film_id BIGINT NOT NULL REFERENCES films(film_id) ON DELETE CASCADE,
     user_id BIGINT NOT NULL REFERENCES users(user_id) ON DELETE CASCADE,
+    liked_at BIGINT,
     PRIMARY KEY (film_id, user_id)
 );
 
+-- Время лайка в мс от эпохи; у лайков, поставленных до появления столбца, остаётся NULL
+ALTER TABLE film_likes ADD COLUMN IF NOT EXISTS liked_at BIGINT;
+
+CREATE INDEX IF NOT EXISTS idx_film_likes_user ON film_likes (user_id);
+CREATE INDEX IF NOT EXISTS idx_film_likes_liked_at ON film_likes (liked_at);
+
 -- Reviews
 CREATE TABLE IF NOT EXISTS reviews (
     review_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -55,6 +69,9 @@ CREATE TABLE IF NOT EXISTS reviews (
     FOREIGN KEY (film_id) REFERENCES films(film_id)
 );
 
+CREATE INDEX IF NOT EXISTS idx_reviews_useful ON reviews (useful DESC, review_id);
+CREATE INDEX IF NOT EXISTS idx_reviews_film_useful ON reviews (film_id, useful DESC, review_id);
+
 CREATE TABLE IF NOT EXISTS review_likes (
     review_id BIGINT NOT NULL,
     user_id BIGINT NOT NULL,
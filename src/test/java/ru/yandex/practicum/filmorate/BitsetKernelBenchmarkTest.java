@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.yandex.practicum.filmorate.index.BitsetKernel;
+import ru.yandex.practicum.filmorate.index.ScalarBitsetKernel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность скалярного и векторного ядра при сравнении одного пользователя
+ * со 100 тыс. остальных по упакованным наборам лайков. Запуск: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class BitsetKernelBenchmarkTest {
+
+    private static final int USERS = 100_000;
+    private static final int LIKES_PER_USER = 40;
+
+    @Param({"2048", "4096"})
+    public int films;
+
+    private final BitsetKernel scalar = new ScalarBitsetKernel();
+    private BitsetKernel vector;
+    private long[] row;
+    private long[] matrix;
+    private double[] scores;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        int words = films / Long.SIZE;
+        row = new long[words];
+        matrix = new long[USERS * words];
+        scores = new double[USERS];
+        for (int like = 0; like < LIKES_PER_USER; like++) {
+            int film = random.nextInt(films);
+            row[film / Long.SIZE] |= 1L << film;
+        }
+        for (int user = 0; user < USERS; user++) {
+            for (int like = 0; like < LIKES_PER_USER; like++) {
+                int film = random.nextInt(films);
+                matrix[user * words + film / Long.SIZE] |= 1L << film;
+            }
+        }
+        vector = BitsetKernel.best();
+    }
+
+    @Benchmark
+    public double[] scalarOneVsAll() {
+        scalar.jaccardAll(row, matrix, scores);
+        return scores;
+    }
+
+    @Benchmark
+    public double[] vectorOneVsAll() {
+        vector.jaccardAll(row, matrix, scores);
+        return scores;
+    }
+
+    @Test
+    public void runBenchmark() throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(BitsetKernelBenchmarkTest.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.index.BitsetKernel;
+import ru.yandex.practicum.filmorate.index.ScalarBitsetKernel;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BitsetKernelTest {
+
+    private final BitsetKernel scalar = new ScalarBitsetKernel();
+    private final BitsetKernel best = BitsetKernel.best();
+
+    @Test
+    public void testBestKernelMatchesScalar() {
+        Random random = new Random(3);
+        // 37 слов: остаток не кратен ширине вектора
+        long[] left = randomWords(random, 37);
+        long[] right = randomWords(random, 37);
+
+        assertThat(best.andCount(left, right)).isEqualTo(scalar.andCount(left, right));
+        assertThat(best.orCount(left, right)).isEqualTo(scalar.orCount(left, right));
+        assertThat(best.jaccard(left, right)).isEqualTo(scalar.jaccard(left, right));
+
+        long[] matrix = new long[37 * 5];
+        for (int idx = 0; idx < matrix.length; idx++) {
+            matrix[idx] = random.nextLong() & random.nextLong();
+        }
+        double[] expected = new double[5];
+        double[] actual = new double[5];
+        scalar.jaccardAll(left, matrix, expected);
+        best.jaccardAll(left, matrix, actual);
+        assertThat(actual).containsExactly(expected);
+
+        int[] expectedCounts = new int[5];
+        int[] actualCounts = new int[5];
+        scalar.andCountAll(left, matrix, 4, expectedCounts);
+        best.andCountAll(left, matrix, 4, actualCounts);
+        assertThat(actualCounts).containsExactly(expectedCounts);
+        assertThat(actualCounts[4]).isZero();
+        assertThat(actualCounts[0]).isEqualTo(scalar.andCount(left, Arrays.copyOf(matrix, 37)));
+    }
+
+    @Test
+    public void testJaccardOfDisjointAndEmptySets() {
+        assertThat(best.jaccard(new long[]{0b1010}, new long[]{0b0101})).isZero();
+        assertThat(best.jaccard(new long[2], new long[2])).isZero();
+        assertThat(best.jaccard(new long[]{0b11}, new long[]{0b11, 0b1})).isEqualTo(2.0 / 3);
+    }
+
+    private static long[] randomWords(Random random, int size) {
+        long[] words = new long[size];
+        for (int idx = 0; idx < size; idx++) {
+            words[idx] = random.nextLong() & random.nextLong();
+        }
+        return words;
+    }
+}
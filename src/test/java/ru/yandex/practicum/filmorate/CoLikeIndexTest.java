@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.index.CoLikeIndex;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.RecommendationIndex;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CoLikeIndexTest {
+
+    private final LikesIndex likesIndex = new LikesIndex(null);
+    private final RecommendationIndex recommendationIndex =
+            new RecommendationIndex(null, likesIndex, Optional.empty(), "jaccard", 20);
+
+    @Test
+    public void testIncrementalUpdatesMatchLoad() {
+        CoLikeIndex index = new CoLikeIndex(likesIndex, recommendationIndex, 10);
+        likeAll(index, 1, 1, 2, 3);
+        likeAll(index, 2, 1, 2);
+        likeAll(index, 3, 1, 3, 4);
+        likeAll(index, 4, 2, 4);
+        unlike(index, 3, 3);
+
+        // Фильм 1: с фильмом 2 — два совместных лайка, с 3 и 4 — по одному
+        assertThat(index.getSimilar(1, 10)).containsExactly(2L, 3L, 4L);
+        assertThat(index.getSimilar(1, 1)).containsExactly(2L);
+        assertThat(index.getSimilar(4, 10)).containsExactly(1L, 2L);
+
+        CoLikeIndex loaded = new CoLikeIndex(likesIndex, recommendationIndex, 10);
+        loaded.load();
+        for (long filmId = 1; filmId <= 4; filmId++) {
+            assertThat(loaded.getSimilar(filmId, 10)).isEqualTo(index.getSimilar(filmId, 10));
+        }
+    }
+
+    @Test
+    public void testPrunedPairResumesFromExactCount() {
+        CoLikeIndex index = new CoLikeIndex(likesIndex, recommendationIndex, 1);
+        likeAll(index, 10, 1, 2);
+        likeAll(index, 11, 1, 2);
+        likeAll(index, 12, 1, 3);
+        likeAll(index, 13, 1, 3);
+        likeAll(index, 14, 1, 3);
+        index.prune();
+        assertThat(index.getSimilar(1, 10)).containsExactly(3L);
+
+        // После обрезки пара 1–2 не начинает с единицы: 2 прежних совместных лайка + новый
+        likeAll(index, 15, 1, 2);
+        assertThat(index.getSimilar(1, 10)).containsExactly(2L, 3L);
+
+        likeAll(index, 16, 2, 1);
+        assertThat(index.getSimilar(1, 1)).containsExactly(2L);
+    }
+
+    @Test
+    public void testDeletedFilmDisappearsFromPrunedLists() {
+        CoLikeIndex index = new CoLikeIndex(likesIndex, recommendationIndex, 1);
+        likeAll(index, 10, 1, 2);
+        likeAll(index, 11, 1, 3);
+        likeAll(index, 12, 1, 3);
+        index.prune();
+
+        likesIndex.onFilmDeleted(3);
+        recommendationIndex.onFilmDeleted(3);
+        index.onFilmDeleted(3);
+
+        assertThat(index.getSimilar(3, 10)).isEmpty();
+        assertThat(index.getSimilar(1, 10)).isEmpty();
+        likeAll(index, 13, 1, 2);
+        assertThat(index.getSimilar(1, 10)).containsExactly(2L);
+    }
+
+    @Test
+    public void testChangesDuringBackgroundLoadAreApplied() throws InterruptedException {
+        CoLikeIndex index = new CoLikeIndex(likesIndex, recommendationIndex, 10);
+        likeAll(index, 1, 1, 2, 3);
+        likeAll(index, 2, 1, 2);
+        likeAll(index, 3, 1, 3, 4);
+        try {
+            index.loadInBackground();
+            // До готовности ответ считается по столбцам, поэтому совпадает с итоговым
+            assertThat(index.getSimilar(1, 10)).containsExactly(2L, 3L, 4L);
+            likeAll(index, 4, 2, 4);
+            unlike(index, 3, 3);
+            awaitReady(index);
+        } finally {
+            index.shutdown();
+        }
+
+        CoLikeIndex loaded = new CoLikeIndex(likesIndex, recommendationIndex, 10);
+        loaded.load();
+        for (long filmId = 1; filmId <= 4; filmId++) {
+            assertThat(index.getSimilar(filmId, 10)).isEqualTo(loaded.getSimilar(filmId, 10));
+        }
+        assertThat(index.getSimilar(4, 10)).containsExactly(1L, 2L);
+    }
+
+    private static void awaitReady(CoLikeIndex index) throws InterruptedException {
+        for (int attempt = 0; attempt < 500 && !index.isReady(); attempt++) {
+            Thread.sleep(10);
+        }
+        assertThat(index.isReady()).isTrue();
+    }
+
+    // Порядок как в приложении: LikesIndex первым, затем столбцы RecommendationIndex
+    private void likeAll(CoLikeIndex index, long userId, long... filmIds) {
+        for (long filmId : filmIds) {
+            likesIndex.onLikeAdded(filmId, userId);
+            recommendationIndex.onLikeAdded(filmId, userId);
+            index.onLikeAdded(filmId, userId);
+        }
+    }
+
+    private void unlike(CoLikeIndex index, long userId, long filmId) {
+        likesIndex.onLikeRemoved(filmId, userId);
+        recommendationIndex.onLikeRemoved(filmId, userId);
+        index.onLikeRemoved(filmId, userId);
+    }
+}
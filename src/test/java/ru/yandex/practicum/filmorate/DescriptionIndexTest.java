@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.index.DescriptionIndex;
+import ru.yandex.practicum.filmorate.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DescriptionIndexTest {
+
+    private final PopularFilmsIndex popularFilmsIndex = new PopularFilmsIndex(null);
+    private final DescriptionIndex descriptionIndex = new DescriptionIndex(null, popularFilmsIndex, 0.1, 2);
+
+    @BeforeEach
+    public void setUp() {
+        save(createFilm(1, "A thief steals secrets through shared dreams", 0));
+        save(createFilm(2, "A hacker learns the truth about reality", 0));
+        save(createFilm(3, "Dreams within dreams within dreams", 0));
+    }
+
+    @Test
+    public void testSearchRanksByTermFrequency() {
+        assertThat(descriptionIndex.search("DREAMS")).containsExactly(3L, 1L);
+        assertThat(descriptionIndex.search("hacker reality")).containsExactly(2L);
+        assertThat(descriptionIndex.search("inception")).isEmpty();
+    }
+
+    @Test
+    public void testLikesBreakEqualRelevanceAndLimitCapsResults() {
+        save(createFilm(4, "A thief steals secrets through shared dreams", 1000));
+
+        assertThat(descriptionIndex.search("thief")).containsExactly(4L, 1L);
+        assertThat(descriptionIndex.search("dreams secrets")).hasSize(2);
+    }
+
+    @Test
+    public void testIndexFollowsUpdatesAndDeletes() {
+        save(createFilm(3, "A heist in a city that folds", 0));
+        assertThat(descriptionIndex.search("dreams")).containsExactly(1L);
+        assertThat(descriptionIndex.search("heist")).containsExactly(3L);
+
+        descriptionIndex.onFilmDeleted(1);
+        assertThat(descriptionIndex.search("dreams")).isEmpty();
+    }
+
+    private void save(Film film) {
+        popularFilmsIndex.onFilmSaved(film);
+        descriptionIndex.onFilmSaved(film);
+    }
+
+    private static Film createFilm(long id, String description, long likes) {
+        Mpa mpa = new Mpa();
+        mpa.setId(1L);
+        Film film = new Film();
+        film.setId(id);
+        film.setName("Film " + id);
+        film.setDescription(description);
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setMpa(mpa);
+        film.setLikesCount(likes);
+        return film;
+    }
+}
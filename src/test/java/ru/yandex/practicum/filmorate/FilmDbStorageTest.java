@@ -1,34 +1,54 @@
 package ru.yandex.practicum.filmorate;
 
 import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dal.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dal.LikeWriteBuffer;
 import ru.yandex.practicum.filmorate.dal.UserDbStorage;
 import ru.yandex.practicum.filmorate.dal.mappers.FilmRowMapper;
 import ru.yandex.practicum.filmorate.dal.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.index.PopularFilmsIndex;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @JdbcTest
 @AutoConfigureTestDatabase
-@Import({FilmDbStorage.class, FilmRowMapper.class, UserDbStorage.class, UserRowMapper.class})
+// Лайки пишутся в собственной транзакции буфера и должны видеть сохранённые тестом фильмы,
+// поэтому тесты идут без общей транзакции и чистят таблицы сами
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({FilmDbStorage.class, FilmRowMapper.class, LikeWriteBuffer.class, UserDbStorage.class, UserRowMapper.class})
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 class FilmDbStorageTest {
 
     private final FilmDbStorage filmStorage;
     private final UserDbStorage userStorage;
+    private final JdbcTemplate jdbc;
+
+    @AfterEach
+    public void cleanUp() {
+        jdbc.update("DELETE FROM films");
+        jdbc.update("DELETE FROM users");
+        filmStorage.init();
+        userStorage.loadIds();
+    }
 
     @Test
     public void testSaveAndFindById() {
@@ -84,20 +104,166 @@ class FilmDbStorageTest {
         User user1 = userStorage.save(createUser("u1@m.com", "l1"));
         User user2 = userStorage.save(createUser("u2@m.com", "l2"));
 
-        filmStorage.addLike(film2.getId(), user1.getId());
-        filmStorage.addLike(film2.getId(), user2.getId());
-        filmStorage.addLike(film1.getId(), user1.getId());
+        like(film2.getId(), user1.getId());
+        like(film2.getId(), user2.getId());
+        like(film1.getId(), user1.getId());
 
-        List<Film> popular = filmStorage.getPopular(10, null, null);
+        List<Long> popular = loadPopular().getTop(10, PopularFilmsIndex.Filter.NONE);
 
         assertThat(popular).isNotEmpty();
-        assertThat(popular.get(0).getId()).isEqualTo(film2.getId()); // У film2 больше лайков
+        assertThat(popular.get(0)).isEqualTo(film2.getId()); // У film2 больше лайков
+
+        unlike(film2.getId(), user1.getId());
+        unlike(film2.getId(), user2.getId());
+
+        popular = loadPopular().getTop(10, PopularFilmsIndex.Filter.NONE);
+        assertThat(popular.get(0)).isEqualTo(film1.getId()); // Теперь у film1 больше лайков
+    }
+
+    @Test
+    public void testFindAllByIdKeepsRequestedOrder() {
+        Film film1 = filmStorage.save(createFilm("Order 1", "D", LocalDate.now(), 100, 1L));
+        Film film2 = filmStorage.save(createFilm("Order 2", "D", LocalDate.now(), 100, 1L));
+
+        List<Film> films = filmStorage.findAllById(List.of(film2.getId(), -1L, film1.getId()));
+
+        assertThat(films).extracting(Film::getId).containsExactly(film2.getId(), film1.getId());
+        assertThat(films.get(0).getGenres()).extracting(Genre::getId).containsExactly(1L);
+    }
+
+    @Test
+    public void testLikesCountMaintainedAndRebuilt() {
+        Film film = filmStorage.save(createFilm("Counter", "D", LocalDate.now(), 100, 1L));
+        User user1 = userStorage.save(createUser("c1@m.com", "c1"));
+        User user2 = userStorage.save(createUser("c2@m.com", "c2"));
+
+        assertThat(like(film.getId(), user1.getId())).isTrue();
+        assertThat(like(film.getId(), user1.getId())).isFalse(); // Повторный лайк не меняет счётчик
+        assertThat(like(film.getId(), user2.getId())).isTrue();
+        assertThat(getLikesCount(film.getId())).isEqualTo(2L);
+
+        assertThat(unlike(film.getId(), user2.getId())).isTrue();
+        assertThat(unlike(film.getId(), user2.getId())).isFalse();
+        assertThat(getLikesCount(film.getId())).isEqualTo(1L);
+
+        assertThat(filmStorage.rebuildLikesCount()).isZero();
+
+        jdbc.update("UPDATE films SET likes_count = 42 WHERE film_id = ?", film.getId());
+        assertThat(filmStorage.rebuildLikesCount()).isEqualTo(1);
+        assertThat(getLikesCount(film.getId())).isEqualTo(1L);
+
+        userStorage.delete(user1.getId());
+        assertThat(getLikesCount(film.getId())).isZero();
+    }
+
+    @Test
+    public void testCountersRepairedBeforeIndexesLoad() {
+        Film film = filmStorage.save(createFilm("Drifted", "D", LocalDate.now(), 100, 1L));
+        User user = userStorage.save(createUser("r1@m.com", "r1"));
+        like(film.getId(), user.getId());
+        jdbc.update("UPDATE films SET likes_count = 42 WHERE film_id = ?", film.getId());
+
+        // Так стартует приложение: сначала инициализируется хранилище, затем зависящий от него индекс
+        filmStorage.init();
+        PopularFilmsIndex popularFilmsIndex = new PopularFilmsIndex(filmStorage);
+        popularFilmsIndex.load();
+
+        assertThat(popularFilmsIndex.getLikes(film.getId())).isEqualTo(1L);
+    }
+
+    @Test
+    public void testForEachLikeAndLikedFilmIds() {
+        Film film1 = filmStorage.save(createFilm("Liked 1", "D", LocalDate.now(), 100, 1L));
+        Film film2 = filmStorage.save(createFilm("Liked 2", "D", LocalDate.now(), 100, 1L));
+        User user = userStorage.save(createUser("l1@m.com", "liker"));
+
+        like(film1.getId(), user.getId());
+        like(film2.getId(), user.getId());
 
-        filmStorage.removeLike(film2.getId(), user1.getId());
-        filmStorage.removeLike(film2.getId(), user2.getId());
+        List<Long> likedByUser = new ArrayList<>();
+        filmStorage.forEachLike((filmId, userId) -> {
+            if (userId.equals(user.getId())) {
+                likedByUser.add(filmId);
+            }
+        });
+
+        assertThat(likedByUser).containsExactly(film1.getId(), film2.getId());
+        assertThat(filmStorage.getLikedFilmIds(user.getId())).containsExactlyInAnyOrder(film1.getId(), film2.getId());
+    }
+
+    @Test
+    public void testForEachLikeSinceSkipsOlderAndUndatedLikes() {
+        Film film = filmStorage.save(createFilm("Dated", "D", LocalDate.now(), 100, 1L));
+        User user1 = userStorage.save(createUser("d1@m.com", "dated1"));
+        User user2 = userStorage.save(createUser("d2@m.com", "dated2"));
+        long before = System.currentTimeMillis();
+        like(film.getId(), user1.getId());
+        // Лайк из базы, созданной до появления liked_at
+        jdbc.update("INSERT INTO film_likes (film_id, user_id) VALUES (?, ?)", film.getId(), user2.getId());
+
+        List<Long> likedAt = new ArrayList<>();
+        filmStorage.forEachLikeSince(before, (filmId, userId, timestamp) -> {
+            if (filmId == film.getId()) {
+                assertThat(userId).isEqualTo(user1.getId());
+                likedAt.add(timestamp);
+            }
+        });
+
+        assertThat(likedAt).hasSize(1);
+        assertThat(likedAt.get(0)).isBetween(before, System.currentTimeMillis());
+        filmStorage.forEachLikeSince(System.currentTimeMillis() + 60_000,
+                (filmId, userId, timestamp) -> likedAt.add(timestamp));
+        assertThat(likedAt).hasSize(1);
+    }
+
+    @Test
+    public void testPopularIndexFiltersByGenreAndYear() {
+        Film film = filmStorage.save(createFilm("Filtered", "D", LocalDate.of(1999, 5, 1), 100, 1L));
+
+        assertThat(loadPopular().getTop(100, yearAndGenre(1L, 1999))).contains(film.getId());
+        assertThat(loadPopular().getTop(100, yearAndGenre(2L, 1999))).doesNotContain(film.getId());
+        assertThat(loadPopular().getTop(100, yearAndGenre(1L, 2000))).doesNotContain(film.getId());
+
+        film.setGenres(List.of());
+        filmStorage.update(film);
+        assertThat(loadPopular().getTop(100, yearAndGenre(1L, 1999))).doesNotContain(film.getId());
+    }
+
+    @Test
+    public void testStreamAllHydratesEveryFilm() {
+        Film film1 = filmStorage.save(createFilm("Export 1", "D", LocalDate.now(), 100, 1L));
+        Film film2 = filmStorage.save(createFilm("Export 2", "D", LocalDate.now(), 100, 1L));
+
+        List<Film> exported = new ArrayList<>();
+        filmStorage.streamAll(exported::addAll);
+
+        assertThat(exported).extracting(Film::getId).contains(film1.getId(), film2.getId()).isSorted();
+        assertThat(exported).filteredOn(film -> film.getId() == film1.getId())
+                .singleElement()
+                .satisfies(film -> assertThat(film.getGenres()).extracting(Genre::getId).containsExactly(1L));
+    }
+
+    private boolean like(long filmId, long userId) {
+        return filmStorage.enqueueLike(filmId, userId, true).getAsBoolean();
+    }
+
+    private boolean unlike(long filmId, long userId) {
+        return filmStorage.enqueueLike(filmId, userId, false).getAsBoolean();
+    }
+
+    // Популярное отдаёт индекс, построенный по хранилищу так же, как при старте приложения
+    private PopularFilmsIndex loadPopular() {
+        PopularFilmsIndex popularFilmsIndex = new PopularFilmsIndex(filmStorage);
+        popularFilmsIndex.load();
+        return popularFilmsIndex;
+    }
+
+    private static PopularFilmsIndex.Filter yearAndGenre(long genreId, int year) {
+        return new PopularFilmsIndex.Filter(Set.of(genreId), Set.of(), year, year);
+    }
 
-        popular = filmStorage.getPopular(10, null, null);
-        assertThat(popular.get(0).getId()).isEqualTo(film1.getId()); // Теперь у film1 больше лайков
+    private Long getLikesCount(long filmId) {
+        return jdbc.queryForObject("SELECT likes_count FROM films WHERE film_id = ?", Long.class, filmId);
     }
 
     private Film createFilm(String name, String desc, LocalDate release, int duration, long mpaId) {
@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+import ru.yandex.practicum.filmorate.index.FilmFeatureIndex;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmFeatureIndexTest {
+
+    @Test
+    public void testRecommendsFilmsCloseToLikedOnes() {
+        FilmFeatureIndex index = new FilmFeatureIndex(null, null, null, 10);
+        index.onFilmSaved(createFilm(1, 2, 7, 1, 1995));
+        index.onFilmSaved(createFilm(2, 2, 7, 1, 1998));
+        index.onFilmSaved(createFilm(3, 2, 8, 3, 2015));
+        index.onFilmSaved(createFilm(4, 5, 9, 4, 1960));
+
+        List<Long> recommended = index.recommend(RoaringBitmap.bitmapOf(1));
+
+        assertThat(recommended).containsExactly(2L, 3L);
+    }
+
+    @Test
+    public void testDeletedFilmIsNotRecommended() {
+        FilmFeatureIndex index = new FilmFeatureIndex(null, null, null, 10);
+        index.onFilmSaved(createFilm(1, 2, 7, 1, 1995));
+        index.onFilmSaved(createFilm(2, 2, 7, 1, 1998));
+        index.onFilmDeleted(2);
+
+        assertThat(index.recommend(RoaringBitmap.bitmapOf(1))).isEmpty();
+    }
+
+    @Test
+    public void testDirectorsWithEqualRemainderStayApart() {
+        FilmFeatureIndex index = new FilmFeatureIndex(null, null, null, 10);
+        // Жанр, MPA и год у всех одинаковы: различаются только режиссёры 7 и 71 (равные по модулю 64)
+        index.onFilmSaved(createFilm(1, 2, 7, 1, 1995));
+        index.onFilmSaved(createFilm(2, 2, 71, 1, 1995));
+        index.onFilmSaved(createFilm(3, 2, 7, 1, 1995));
+
+        assertThat(index.recommend(RoaringBitmap.bitmapOf(1))).containsExactly(3L, 2L);
+    }
+
+    @Test
+    public void testGenresAndMpaWithEqualRemainderStayApart() {
+        FilmFeatureIndex index = new FilmFeatureIndex(null, null, null, 10);
+        // Жанры 1 и 65 и MPA 1 и 17 раньше попадали в одну координату
+        index.onFilmSaved(createFilm(1, 1, 7, 1, 1995));
+        index.onFilmSaved(createFilm(2, 65, 7, 1, 1995));
+        index.onFilmSaved(createFilm(3, 1, 7, 1, 1995));
+        index.onFilmSaved(createFilm(4, 1, 7, 17, 1995));
+        // Новые жанры расширяют раскладку, прежние строки сохраняют свои значения
+        for (long genreId = 100; genreId < 120; genreId++) {
+            index.onFilmSaved(createFilm(genreId, genreId, 8, 2, 1960));
+        }
+
+        assertThat(index.recommend(RoaringBitmap.bitmapOf(1))).startsWith(3L, 4L, 2L);
+    }
+
+    @Test
+    public void testSparseIdsAndDeletionKeepRowsConsistent() {
+        FilmFeatureIndex index = new FilmFeatureIndex(null, null, null, 10);
+        index.onFilmSaved(createFilm(5, 2, 7, 1, 1995));
+        index.onFilmSaved(createFilm(1_000_000, 2, 7, 1, 1998));
+        index.onFilmSaved(createFilm(40, 2, 8, 3, 2015));
+        index.onFilmSaved(createFilm(2_000_000, 5, 9, 4, 1960));
+
+        // Удаление строки из середины переносит на её место последнюю
+        index.onFilmDeleted(1_000_000);
+        assertThat(index.recommend(RoaringBitmap.bitmapOf(5))).containsExactly(40L);
+
+        index.onFilmSaved(createFilm(2_000_000, 2, 7, 1, 1998));
+        assertThat(index.recommend(RoaringBitmap.bitmapOf(5))).containsExactly(2_000_000L, 40L);
+        assertThat(index.recommend(RoaringBitmap.bitmapOf(5, 2_000_000))).containsExactly(40L);
+    }
+
+    private static Film createFilm(long id, long genreId, long directorId, long mpaId, int year) {
+        Genre genre = new Genre();
+        genre.setId(genreId);
+        Director director = new Director();
+        director.setId(directorId);
+        Mpa mpa = new Mpa();
+        mpa.setId(mpaId);
+
+        Film film = new Film();
+        film.setId(id);
+        film.setReleaseDate(LocalDate.of(year, 1, 1));
+        film.setMpa(mpa);
+        film.setGenres(List.of(genre));
+        film.setDirectors(List.of(director));
+        return film;
+    }
+}
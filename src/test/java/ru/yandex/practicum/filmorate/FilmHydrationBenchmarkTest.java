@@ -0,0 +1,204 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import ru.yandex.practicum.filmorate.dal.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dal.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.dal.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сравнение чтения фильмов одним запросом с прежней схемой «фильмы + жанры + режиссёры».
+ * Запуск: mvn test -Pbenchmark
+ */
+@Slf4j
+@Tag("benchmark")
+class FilmHydrationBenchmarkTest {
+
+    private static final int FILMS = 2000;
+    private static final int DIRECTORS = 50;
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 100;
+
+    private static final String LEGACY_SELECT = "SELECT f.*, r.name AS rating_name FROM films f " +
+            "LEFT JOIN film_ratings r ON f.rating_id = r.rating_id";
+
+    private static final AtomicLong statements = new AtomicLong();
+    private static EmbeddedDatabase database;
+    private static JdbcTemplate jdbc;
+    private static FilmDbStorage filmStorage;
+
+    @BeforeAll
+    static void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScripts("schema.sql", "data.sql")
+                .build();
+        DataSource dataSource = countingDataSource(database);
+        jdbc = new JdbcTemplate(dataSource);
+        LikeWriteBuffer likeWriteBuffer = new LikeWriteBuffer(jdbc, new DataSourceTransactionManager(dataSource),
+                100, 100, 0, 1000);
+        filmStorage = new FilmDbStorage(jdbc, new FilmRowMapper(), likeWriteBuffer, 500, 200);
+        seed();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void findAll() {
+        compare("findAll",
+                () -> filmStorage.findAll(),
+                () -> legacyRead(LEGACY_SELECT));
+    }
+
+    // Так читаются популярные фильмы и результаты поиска: id берутся из индексов, фильмы — по списку id
+    @Test
+    public void findAllById() {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= FILMS; id += FILMS / 10) {
+            ids.add(id);
+        }
+        String inSql = String.join(",", Collections.nCopies(ids.size(), "?"));
+        compare("findAllById",
+                () -> filmStorage.findAllById(ids),
+                () -> legacyRead(LEGACY_SELECT + " WHERE f.film_id IN (" + inSql + ")", ids.toArray()));
+    }
+
+    @Test
+    public void getFilmsByDirector() {
+        compare("getFilmsByDirector",
+                () -> filmStorage.getFilmsByDirector(1, "likes"),
+                () -> legacyRead(LEGACY_SELECT + " JOIN film_directors fd ON f.film_id = fd.film_id "
+                        + "WHERE fd.director_id = ? ORDER BY f.likes_count DESC, f.film_id", 1));
+    }
+
+    private void compare(String name, Supplier<List<Film>> current, Supplier<List<Long>> legacy) {
+        Measurement legacyResult = measure(legacy);
+        Measurement currentResult = measure(current);
+
+        log.info("{}: прежняя схема {} запр./вызов, p50 {} мкс, p99 {} мкс; один запрос {} запр./вызов, "
+                        + "p50 {} мкс, p99 {} мкс",
+                name, legacyResult.statementsPerCall, legacyResult.p50Micros, legacyResult.p99Micros,
+                currentResult.statementsPerCall, currentResult.p50Micros, currentResult.p99Micros);
+
+        assertThat(legacyResult.statementsPerCall).isEqualTo(3);
+        assertThat(currentResult.statementsPerCall).isEqualTo(1);
+    }
+
+    private Measurement measure(Supplier<?> operation) {
+        for (int idx = 0; idx < WARMUP; idx++) {
+            operation.get();
+        }
+
+        long[] timings = new long[ITERATIONS];
+        statements.set(0);
+        for (int idx = 0; idx < ITERATIONS; idx++) {
+            long start = System.nanoTime();
+            operation.get();
+            timings[idx] = System.nanoTime() - start;
+        }
+        long statementCount = statements.get();
+
+        Arrays.sort(timings);
+        return new Measurement(statementCount / ITERATIONS,
+                timings[ITERATIONS / 2] / 1000,
+                timings[ITERATIONS * 99 / 100] / 1000);
+    }
+
+    // Прежняя загрузка: выборка фильмов и два запроса с IN на переменное число параметров
+    private static List<Long> legacyRead(String query, Object... params) {
+        List<Long> filmIds = jdbc.query(query, (rs, rowNum) -> rs.getLong("film_id"), params);
+        if (filmIds.isEmpty()) {
+            return filmIds;
+        }
+        String inSql = String.join(",", Collections.nCopies(filmIds.size(), "?"));
+        jdbc.query("SELECT fg.film_id, g.genre_id, g.name FROM film_genre fg " +
+                "JOIN genres g ON fg.genre_id = g.genre_id WHERE fg.film_id IN (" + inSql + ")", rs -> {
+        }, filmIds.toArray());
+        jdbc.query("SELECT fd.film_id, d.director_id, d.name FROM film_directors fd " +
+                "JOIN directors d ON fd.director_id = d.director_id WHERE fd.film_id IN (" + inSql + ")", rs -> {
+        }, filmIds.toArray());
+        return filmIds;
+    }
+
+    private static void seed() {
+        List<Object[]> directors = new ArrayList<>();
+        for (int idx = 1; idx <= DIRECTORS; idx++) {
+            directors.add(new Object[]{idx, "Director " + idx});
+        }
+        jdbc.batchUpdate("INSERT INTO directors (director_id, name) VALUES (?, ?)", directors);
+
+        List<Object[]> films = new ArrayList<>();
+        List<Object[]> genres = new ArrayList<>();
+        List<Object[]> filmDirectors = new ArrayList<>();
+        for (int idx = 1; idx <= FILMS; idx++) {
+            films.add(new Object[]{idx, "Film " + idx, "Description " + idx, 90 + idx % 60, 1 + idx % 5, idx % 97});
+            genres.add(new Object[]{idx, 1 + idx % 6});
+            genres.add(new Object[]{idx, 1 + (idx + 3) % 6});
+            filmDirectors.add(new Object[]{idx, 1 + idx % DIRECTORS});
+        }
+        jdbc.batchUpdate("INSERT INTO films (film_id, name, description, release_date, duration, rating_id, " +
+                "likes_count) VALUES (?, ?, ?, DATE '2000-01-01', ?, ?, ?)", films);
+        jdbc.batchUpdate("INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)", genres);
+        jdbc.batchUpdate("INSERT INTO film_directors (film_id, director_id) VALUES (?, ?)", filmDirectors);
+    }
+
+    private static DataSource countingDataSource(DataSource target) {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(target, method, args);
+                    if (result instanceof Connection connection) {
+                        return countingConnection(connection);
+                    }
+                    return result;
+                });
+    }
+
+    private static Connection countingConnection(Connection target) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.startsWith("prepare") || name.equals("createStatement")) {
+                        statements.incrementAndGet();
+                    }
+                    return invoke(target, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException exception) {
+            throw exception.getCause();
+        }
+    }
+
+    private record Measurement(long statementsPerCall, long p50Micros, long p99Micros) {
+    }
+}
@@ -0,0 +1,130 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dto.DirectorDto;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmSearchCache;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmSearchCacheTest {
+
+    private static final FilmSearchCache.Key MATRIX = FilmSearchCache.Key.of("Matrix", Set.of("title"), false);
+    private static final FilmSearchCache.Key NOLAN = FilmSearchCache.Key.of("nolan", Set.of("director"), false);
+    private static final FilmSearchCache.Key DREAMS = FilmSearchCache.Key.of("dreams", Set.of("description"), false);
+
+    private final FilmSearchCache cache = new FilmSearchCache(2, 60_000);
+
+    @Test
+    public void testKeyIsNormalisedAndLeastRecentlyUsedIsEvicted() {
+        assertThat(FilmSearchCache.Key.of("MATRIX", Set.of("title", "director"), false))
+                .isEqualTo(FilmSearchCache.Key.of("matrix", Set.of("director", "title"), false));
+
+        put(MATRIX, createFilmDto(1, 1));
+        put(NOLAN, createFilmDto(2, 2));
+        cache.get(MATRIX);
+        put(DREAMS, createFilmDto(3, 2));
+
+        assertThat(cache.get(MATRIX)).extracting(FilmDto::getId).containsExactly(1L);
+        assertThat(cache.get(NOLAN)).isNull();
+        assertThat(cache.get(DREAMS)).isNotNull();
+    }
+
+    @Test
+    public void testFilmChangesEvictOnlyAffectedEntries() {
+        put(MATRIX, createFilmDto(1, 1));
+        put(NOLAN, createFilmDto(2, 2));
+
+        cache.onFilmSaved(createFilm(3, "The Matrix Resurrections", null));
+        assertThat(cache.get(MATRIX)).isNull();
+        assertThat(cache.get(NOLAN)).isNotNull();
+
+        cache.onFilmDeleted(2);
+        assertThat(cache.get(NOLAN)).isNull();
+    }
+
+    @Test
+    public void testDirectorChangesEvictEntriesShowingOrMatchingDirector() {
+        put(MATRIX, createFilmDto(1, 1));
+        put(NOLAN, createFilmDto(2, 2));
+
+        cache.onDirectorSaved(createDirector(1, "Lana Wachowski"));
+        assertThat(cache.get(MATRIX)).isNull();
+        assertThat(cache.get(NOLAN)).isNotNull();
+
+        cache.onDirectorSaved(createDirector(5, "Jonathan Nolan"));
+        assertThat(cache.get(NOLAN)).isNull();
+    }
+
+    @Test
+    public void testLikesKeepEntryUntilTtlExpires() throws InterruptedException {
+        FilmSearchCache shortLived = new FilmSearchCache(10, 0);
+        put(MATRIX, createFilmDto(1, 1));
+        shortLived.put(MATRIX, List.of(createFilmDto(1, 1)), shortLived.version(), false);
+
+        cache.onLikeAdded(1, 10);
+        shortLived.onLikeAdded(1, 10);
+        Thread.sleep(2);
+
+        assertThat(cache.get(MATRIX)).isNotNull();
+        assertThat(shortLived.get(MATRIX)).isNull();
+    }
+
+    @Test
+    public void testLikeOutsideTruncatedResultExpiresIt() throws InterruptedException {
+        FilmSearchCache shortLived = new FilmSearchCache(10, 0);
+        FilmSearchCache.Key fuzzyMatrix = FilmSearchCache.Key.of("matrx", Set.of("title"), true);
+        shortLived.put(fuzzyMatrix, List.of(createFilmDto(1, 1)), shortLived.version(), true);
+        shortLived.put(MATRIX, List.of(createFilmDto(1, 1)), shortLived.version(), false);
+
+        // Фильм 2 не попал в обрезанный результат, но лайк может поднять его выше фильма 1
+        shortLived.onLikeAdded(2, 10);
+        Thread.sleep(2);
+
+        assertThat(shortLived.get(fuzzyMatrix)).isNull();
+        assertThat(shortLived.get(MATRIX)).isNotNull();
+    }
+
+    @Test
+    public void testResultComputedBeforeInvalidationIsNotStored() {
+        long version = cache.version();
+        cache.onFilmSaved(createFilm(7, "Unrelated", null));
+
+        cache.put(MATRIX, List.of(createFilmDto(1, 1)), version, false);
+
+        assertThat(cache.get(MATRIX)).isNull();
+    }
+
+    private void put(FilmSearchCache.Key key, FilmDto film) {
+        cache.put(key, List.of(film), cache.version(), false);
+    }
+
+    private static FilmDto createFilmDto(long id, long directorId) {
+        DirectorDto director = new DirectorDto();
+        director.setId(directorId);
+        FilmDto film = new FilmDto();
+        film.setId(id);
+        film.setDirectors(List.of(director));
+        return film;
+    }
+
+    private static Film createFilm(long id, String name, String description) {
+        Film film = new Film();
+        film.setId(id);
+        film.setName(name);
+        film.setDescription(description);
+        return film;
+    }
+
+    private static Director createDirector(long id, String name) {
+        Director director = new Director();
+        director.setId(id);
+        director.setName(name);
+        return director;
+    }
+}
@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmSearchIndexTest {
+
+    private final PopularFilmsIndex popularFilmsIndex = new PopularFilmsIndex(null);
+    private final FilmSearchIndex searchIndex = new FilmSearchIndex(null, null, popularFilmsIndex, 3);
+
+    @BeforeEach
+    public void setUp() {
+        save(createFilm(1, "The Matrix", 5, createDirector(1, "Lana Wachowski")));
+        save(createFilm(2, "Matrix Reloaded", 8, createDirector(1, "Lana Wachowski")));
+        save(createFilm(3, "Inception", 20, createDirector(2, "Christopher Nolan")));
+    }
+
+    @Test
+    public void testSearchByTitleRanksByLikes() {
+        assertThat(searchIndex.search("MATRIX", true, false)).containsExactly(2L, 1L);
+        assertThat(searchIndex.search("ix", true, false)).containsExactly(2L, 1L);
+        assertThat(searchIndex.search("matrices", true, false)).isEmpty();
+    }
+
+    @Test
+    public void testSearchByTitleAndDirector() {
+        assertThat(searchIndex.search("nol", false, true)).containsExactly(3L);
+        assertThat(searchIndex.search("on", true, true)).containsExactly(3L);
+        assertThat(searchIndex.search("ch", true, true)).containsExactly(3L, 2L, 1L);
+    }
+
+    @Test
+    public void testFuzzySearchToleratesTypos() {
+        assertThat(searchIndex.searchFuzzy("matirx", true, false)).containsExactly(2L, 1L);
+        assertThat(searchIndex.searchFuzzy("the matrx", true, false)).containsExactly(1L);
+        assertThat(searchIndex.searchFuzzy("incepshun", true, false)).isEmpty();
+        assertThat(searchIndex.searchFuzzy("nolen", false, true)).containsExactly(3L);
+        assertThat(searchIndex.searchFuzzy("nolen", true, false)).isEmpty();
+    }
+
+    @Test
+    public void testFuzzySearchKeepsClosestThenMostLiked() {
+        save(createFilm(4, "Matrix", 1, createDirector(3, "Unknown")));
+        save(createFilm(5, "Metric", 50, createDirector(3, "Unknown")));
+
+        assertThat(searchIndex.searchFuzzy("matrix", true, false)).containsExactly(2L, 1L, 4L);
+
+        save(createFilm(4, "Tenet", 1, createDirector(3, "Unknown")));
+        assertThat(searchIndex.searchFuzzy("matrix", true, false)).containsExactly(2L, 1L, 5L);
+    }
+
+    @Test
+    public void testIndexFollowsUpdatesRenamesAndDeletes() {
+        save(createFilm(3, "Tenet", 20, createDirector(2, "Christopher Nolan")));
+        assertThat(searchIndex.search("inception", true, false)).isEmpty();
+        assertThat(searchIndex.search("tenet", true, false)).containsExactly(3L);
+
+        searchIndex.onDirectorSaved(createDirector(2, "Chris Nolan"));
+        assertThat(searchIndex.search("christopher", false, true)).isEmpty();
+        assertThat(searchIndex.search("chris nolan", false, true)).containsExactly(3L);
+
+        searchIndex.onDirectorDeleted(1);
+        assertThat(searchIndex.search("wachowski", false, true)).isEmpty();
+
+        searchIndex.onFilmDeleted(2);
+        assertThat(searchIndex.search("matrix", true, false)).containsExactly(1L);
+    }
+
+    private void save(Film film) {
+        popularFilmsIndex.onFilmSaved(film);
+        searchIndex.onFilmSaved(film);
+    }
+
+    private static Film createFilm(long id, String name, long likes, Director director) {
+        Mpa mpa = new Mpa();
+        mpa.setId(1L);
+        Film film = new Film();
+        film.setId(id);
+        film.setName(name);
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setMpa(mpa);
+        film.setLikesCount(likes);
+        film.setDirectors(List.of(director));
+        return film;
+    }
+
+    private static Director createDirector(long id, String name) {
+        Director director = new Director();
+        director.setId(id);
+        director.setName(name);
+        return director;
+    }
+}
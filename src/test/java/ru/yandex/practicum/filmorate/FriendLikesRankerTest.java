@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.index.FriendLikesRanker;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FriendLikesRankerTest {
+
+    private static final long USER = 1;
+    private static final List<Long> FRIENDS = List.of(10L, 11L, 12L);
+
+    private final LikesIndex likesIndex = new LikesIndex(null);
+    private final PopularFilmsIndex popularFilmsIndex = new PopularFilmsIndex(null);
+
+    @BeforeEach
+    public void setUp() {
+        // Общее число лайков фильмов 1–6
+        long[] likes = {5, 100, 1, 50, 30, 30};
+        for (int idx = 0; idx < likes.length; idx++) {
+            popularFilmsIndex.onFilmSaved(createFilm(idx + 1, likes[idx]));
+        }
+        // Фильм 3 отметили три друга, фильмы 2 и 4 — два, фильмы 1, 5 и 6 — по одному
+        likeAll(10, 1, 2, 3, 4);
+        likeAll(11, 2, 3, 5);
+        likeAll(12, 3, 4, 6);
+        likeAll(USER, 2);
+    }
+
+    @Test
+    public void testOrderedByFriendsThenGlobalLikes() {
+        FriendLikesRanker ranker = new FriendLikesRanker(likesIndex, popularFilmsIndex, 10);
+
+        // Фильм 2 уже понравился пользователю; у 5 и 6 поровну лайков — меньший id раньше
+        assertThat(ranker.rank(USER, FRIENDS)).containsExactly(3L, 4L, 5L, 6L, 1L);
+    }
+
+    @Test
+    public void testLimitKeepsBestFilms() {
+        FriendLikesRanker ranker = new FriendLikesRanker(likesIndex, popularFilmsIndex, 3);
+
+        assertThat(ranker.rank(USER, FRIENDS)).containsExactly(3L, 4L, 5L);
+    }
+
+    @Test
+    public void testNoFriendsOrNoFriendLikesGiveNothing() {
+        FriendLikesRanker ranker = new FriendLikesRanker(likesIndex, popularFilmsIndex, 10);
+
+        assertThat(ranker.rank(USER, List.of())).isEmpty();
+        assertThat(ranker.rank(USER, List.of(99L))).isEmpty();
+        assertThat(ranker.rank(10, List.of(USER))).isEmpty();
+    }
+
+    private void likeAll(long userId, long... filmIds) {
+        for (long filmId : filmIds) {
+            likesIndex.onLikeAdded(filmId, userId);
+        }
+    }
+
+    private static Film createFilm(long id, long likes) {
+        Mpa mpa = new Mpa();
+        mpa.setId(1L);
+        Film film = new Film();
+        film.setId(id);
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setMpa(mpa);
+        film.setLikesCount(likes);
+        return film;
+    }
+}
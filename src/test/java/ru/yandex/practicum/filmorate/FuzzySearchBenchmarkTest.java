@@ -0,0 +1,153 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Задержка нечёткого поиска на миллионе названий из синтетического словаря, запросы — слова
+ * существующих названий и имён с одной-двумя опечатками. Запуск: mvn test -Pbenchmark
+ */
+@Slf4j
+@Tag("benchmark")
+class FuzzySearchBenchmarkTest {
+
+    private static final int FILMS = 1_000_000;
+    private static final int WORDS = 100_000;
+    private static final int DIRECTORS = 20_000;
+    private static final int WARMUP = 500;
+    private static final int QUERIES = 2000;
+    private static final String[] SYLLABLES = {"ka", "to", "ri", "ma", "ne", "lo", "su", "vi", "de", "ra",
+            "mi", "no", "ta", "ku", "be", "sa", "po", "li", "gu", "fe", "zo", "ha", "in", "or", "el"};
+
+    private final Random random = new Random(7);
+
+    @Test
+    public void fuzzySearchOnMillionTitles() {
+        PopularFilmsIndex popularFilmsIndex = new PopularFilmsIndex(null);
+        FilmSearchIndex searchIndex = new FilmSearchIndex(null, null, popularFilmsIndex, 100);
+        String[] words = randomWords();
+        List<Director> directors = new ArrayList<>(DIRECTORS);
+        for (int idx = 0; idx < DIRECTORS; idx++) {
+            directors.add(createDirector(idx + 1, capitalize(randomWord()) + " " + capitalize(randomWord())));
+        }
+
+        String[] titles = new String[FILMS];
+        for (int idx = 0; idx < FILMS; idx++) {
+            StringBuilder title = new StringBuilder();
+            for (int word = random.nextInt(4); word >= 0; word--) {
+                title.append(title.isEmpty() ? "" : " ").append(capitalize(words[random.nextInt(words.length)]));
+            }
+            titles[idx] = title.toString();
+            Film film = createFilm(idx + 1, titles[idx], random.nextInt(1000),
+                    directors.get(random.nextInt(DIRECTORS)));
+            popularFilmsIndex.onFilmSaved(film);
+            searchIndex.onFilmSaved(film);
+        }
+
+        for (int idx = 0; idx < WARMUP; idx++) {
+            searchIndex.searchFuzzy(randomQuery(titles), true, true);
+        }
+        long[] timings = new long[QUERIES];
+        long found = 0;
+        for (int idx = 0; idx < QUERIES; idx++) {
+            String query = randomQuery(titles);
+            long start = System.nanoTime();
+            found += searchIndex.searchFuzzy(query, true, true).size();
+            timings[idx] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(timings);
+        long p50 = timings[QUERIES / 2] / 1000;
+        long p99 = timings[QUERIES * 99 / 100] / 1000;
+        log.info("Нечёткий поиск по {} названиям: p50 {} мкс, p99 {} мкс, в среднем {} фильмов на запрос",
+                FILMS, p50, p99, found / QUERIES);
+
+        assertThat(found).isPositive();
+        assertThat(p99).isLessThan(20_000);
+    }
+
+    // Одно или два слова случайного названия, в каждом слове одна или две опечатки
+    private String randomQuery(String[] titles) {
+        String[] words = titles[random.nextInt(FILMS)].split(" ");
+        int from = random.nextInt(words.length);
+        int to = Math.min(words.length, from + 1 + random.nextInt(2));
+        StringBuilder query = new StringBuilder();
+        for (int idx = from; idx < to; idx++) {
+            query.append(idx > from ? " " : "").append(typo(words[idx]));
+        }
+        return query.toString();
+    }
+
+    private String typo(String word) {
+        StringBuilder result = new StringBuilder(word);
+        int typos = word.length() > 5 ? 1 + random.nextInt(2) : 1;
+        for (int typo = 0; typo < typos; typo++) {
+            int position = random.nextInt(result.length());
+            char letter = (char) ('a' + random.nextInt(26));
+            switch (random.nextInt(3)) {
+                case 0 -> result.setCharAt(position, letter);
+                case 1 -> result.insert(position, letter);
+                default -> {
+                    if (result.length() > 1) {
+                        result.deleteCharAt(position);
+                    }
+                }
+            }
+        }
+        return result.toString();
+    }
+
+    private String[] randomWords() {
+        String[] result = new String[WORDS];
+        for (int idx = 0; idx < WORDS; idx++) {
+            result[idx] = randomWord();
+        }
+        return result;
+    }
+
+    private String randomWord() {
+        StringBuilder word = new StringBuilder();
+        for (int syllable = 2 + random.nextInt(3); syllable > 0; syllable--) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    private static Film createFilm(long id, String name, long likes, Director director) {
+        Mpa mpa = new Mpa();
+        mpa.setId(1L);
+        Film film = new Film();
+        film.setId(id);
+        film.setName(name);
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setMpa(mpa);
+        film.setLikesCount(likes);
+        film.setDirectors(List.of(director));
+        return film;
+    }
+
+    private static Director createDirector(long id, String name) {
+        Director director = new Director();
+        director.setId(id);
+        director.setName(name);
+        return director;
+    }
+}
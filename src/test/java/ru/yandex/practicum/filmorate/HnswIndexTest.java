@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.index.HnswIndex;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HnswIndexTest {
+
+    private static final int VECTORS = 3000;
+    private static final int DIMENSION = 16;
+    private static final int QUERIES = 50;
+    private static final int TOP = 10;
+
+    @Test
+    public void testSearchFindsMostOfExactTopByDotProduct() {
+        Random random = new Random(11);
+        float[] vectors = randomVectors(random, VECTORS);
+        HnswIndex index = new HnswIndex(vectors, DIMENSION, 16, 100, 42);
+
+        int found = 0;
+        for (int query = 0; query < QUERIES; query++) {
+            float[] vector = randomVectors(random, 1);
+            int[] exact = exactTop(vectors, vector);
+            int[] approximate = index.search(vector, TOP, 100);
+            found += (int) Arrays.stream(approximate)
+                    .filter(node -> Arrays.stream(exact).anyMatch(expected -> expected == node))
+                    .count();
+        }
+
+        assertThat(index.size()).isEqualTo(VECTORS);
+        assertThat((double) found / (QUERIES * TOP)).isGreaterThan(0.9);
+    }
+
+    @Test
+    public void testSearchOnEmptyIndex() {
+        HnswIndex index = new HnswIndex(new float[0], DIMENSION, 16, 100, 42);
+
+        assertThat(index.search(new float[DIMENSION], TOP, 100)).isEmpty();
+    }
+
+    private static int[] exactTop(float[] vectors, float[] query) {
+        return IntStream.range(0, VECTORS)
+                .boxed()
+                .sorted(Comparator.comparingDouble((Integer node) -> dot(vectors, node, query)).reversed())
+                .limit(TOP)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private static double dot(float[] vectors, int node, float[] query) {
+        double result = 0;
+        for (int idx = 0; idx < DIMENSION; idx++) {
+            result += vectors[node * DIMENSION + idx] * query[idx];
+        }
+        return result;
+    }
+
+    private static float[] randomVectors(Random random, int count) {
+        float[] result = new float[count * DIMENSION];
+        for (int idx = 0; idx < result.length; idx++) {
+            result[idx] = (float) random.nextGaussian();
+        }
+        return result;
+    }
+}
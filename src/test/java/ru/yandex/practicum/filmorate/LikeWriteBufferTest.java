@@ -0,0 +1,151 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dal.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.dal.LikeWriteMetrics;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+// Буфер пишет в собственной транзакции, данные теста должны быть зафиксированы
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(LikeWriteBuffer.class)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class LikeWriteBufferTest {
+
+    private static final long FILM_1 = 1001;
+    private static final long FILM_2 = 1002;
+    private static final long USER_1 = 2001;
+    private static final long USER_2 = 2002;
+
+    private final LikeWriteBuffer buffer;
+    private final JdbcTemplate jdbc;
+
+    @BeforeEach
+    public void setUp() {
+        for (long filmId : new long[]{FILM_1, FILM_2}) {
+            jdbc.update("INSERT INTO films (film_id, name, description, release_date, duration, rating_id) " +
+                    "VALUES (?, 'Film', 'D', ?, 100, 1)", filmId, LocalDate.of(2000, 1, 1));
+        }
+        for (long userId : new long[]{USER_1, USER_2}) {
+            jdbc.update("INSERT INTO users (user_id, email, login, name, birthday) VALUES (?, ?, ?, 'Name', ?)",
+                    userId, userId + "@m.com", "u" + userId, LocalDate.of(2000, 1, 1));
+        }
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        jdbc.update("DELETE FROM films");
+        jdbc.update("DELETE FROM users");
+    }
+
+    @Test
+    public void testWritesOfOnePairCoalesceIntoFinalState() {
+        long flushes = buffer.getFlushCount();
+        long writes = buffer.getWriteCount();
+        long coalesced = buffer.getCoalescedCount();
+
+        // Все три записи в очереди до ожидания, поэтому лидер заберёт их одной пачкой
+        BooleanSupplier like = buffer.enqueue(FILM_1, USER_1, true);
+        BooleanSupplier unlike = buffer.enqueue(FILM_1, USER_1, false);
+        BooleanSupplier likeAgain = buffer.enqueue(FILM_1, USER_1, true);
+        BooleanSupplier other = buffer.enqueue(FILM_2, USER_2, true);
+
+        assertThat(like.getAsBoolean()).isTrue();
+        assertThat(unlike.getAsBoolean()).isTrue();
+        assertThat(likeAgain.getAsBoolean()).isTrue();
+        assertThat(other.getAsBoolean()).isTrue();
+
+        assertThat(likes(FILM_1)).isEqualTo(1);
+        assertThat(likesCount(FILM_1)).isEqualTo(1);
+        assertThat(likesCount(FILM_2)).isEqualTo(1);
+        assertThat(buffer.getFlushCount() - flushes).isEqualTo(1);
+        assertThat(buffer.getWriteCount() - writes).isEqualTo(4);
+        assertThat(buffer.getCoalescedCount() - coalesced).isEqualTo(2);
+        assertThat(buffer.getQueueDepth()).isZero();
+    }
+
+    @Test
+    public void testEachCallerGetsOwnResult() {
+        assertThat(buffer.enqueue(FILM_1, USER_1, true).getAsBoolean()).isTrue();
+
+        // Лайк уже стоит: повтор ничего не меняет, отмена и новый лайк меняют
+        BooleanSupplier duplicate = buffer.enqueue(FILM_1, USER_1, true);
+        BooleanSupplier unlike = buffer.enqueue(FILM_1, USER_1, false);
+        BooleanSupplier unlikeAgain = buffer.enqueue(FILM_1, USER_1, false);
+
+        assertThat(duplicate.getAsBoolean()).isFalse();
+        assertThat(unlike.getAsBoolean()).isTrue();
+        assertThat(unlikeAgain.getAsBoolean()).isFalse();
+        assertThat(likes(FILM_1)).isZero();
+        assertThat(likesCount(FILM_1)).isZero();
+        assertThat(buffer.enqueue(FILM_1, USER_1, false).getAsBoolean()).isFalse();
+    }
+
+    @Test
+    public void testFailedBatchIsRetriedPerPair() {
+        long flushes = buffer.getFlushCount();
+
+        BooleanSupplier valid = buffer.enqueue(FILM_1, USER_1, true);
+        BooleanSupplier missingFilm = buffer.enqueue(9999, USER_1, true);
+        BooleanSupplier alsoValid = buffer.enqueue(FILM_2, USER_2, true);
+
+        assertThat(valid.getAsBoolean()).isTrue();
+        assertThatThrownBy(missingFilm::getAsBoolean).isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(alsoValid.getAsBoolean()).isTrue();
+
+        assertThat(likesCount(FILM_1)).isEqualTo(1);
+        assertThat(likesCount(FILM_2)).isEqualTo(1);
+        // Неудачная пачка и по одной попытке на каждую пару
+        assertThat(buffer.getFlushCount() - flushes).isEqualTo(4);
+    }
+
+    @Test
+    public void testMetricsFollowBufferCounters() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new LikeWriteMetrics(buffer).bindTo(registry);
+
+        BooleanSupplier like = buffer.enqueue(FILM_1, USER_1, true);
+        BooleanSupplier unlike = buffer.enqueue(FILM_1, USER_1, false);
+        assertThat(registry.get("filmorate.likes.queue.depth").gauge().value()).isEqualTo(2);
+        like.getAsBoolean();
+        unlike.getAsBoolean();
+
+        assertThat(registry.get("filmorate.likes.queue.depth").gauge().value()).isZero();
+        assertThat(registry.get("filmorate.likes.writes").functionCounter().count())
+                .isEqualTo(buffer.getWriteCount());
+        assertThat(registry.get("filmorate.likes.coalesced").functionCounter().count())
+                .isEqualTo(buffer.getCoalescedCount());
+        assertThat(registry.get("filmorate.likes.flush").functionTimer().count())
+                .isEqualTo(buffer.getFlushCount());
+        assertThat(registry.get("filmorate.likes.flush").functionTimer().totalTime(TimeUnit.NANOSECONDS))
+                .isEqualTo(buffer.getFlushTimeNanos());
+        assertThat(buffer.getCoalescedCount()).isPositive();
+    }
+
+    private int likes(long filmId) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM film_likes WHERE film_id = ?", Integer.class, filmId);
+    }
+
+    private long likesCount(long filmId) {
+        return jdbc.queryForObject("SELECT likes_count FROM films WHERE film_id = ?", Long.class, filmId);
+    }
+}
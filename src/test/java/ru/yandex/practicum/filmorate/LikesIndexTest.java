@@ -0,0 +1,97 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LikesIndexTest {
+
+    private final LikesIndex likesIndex = new LikesIndex(null);
+
+    @Test
+    public void testConcurrentDuplicateLikesWriteOnce() throws InterruptedException {
+        AtomicInteger writes = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int idx = 0; idx < 8; idx++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+                likesIndex.addIfAbsent(1, 10, writes::incrementAndGet);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(writes.get()).isEqualTo(1);
+        assertThat(likesIndex.isLiked(1, 10)).isTrue();
+    }
+
+    @Test
+    public void testAddAndRemoveSkipWriteWhenStateUnchanged() {
+        assertThat(likesIndex.removeIfPresent(1, 10, () -> "remove")).isNull();
+        assertThat(likesIndex.addIfAbsent(1, 10, () -> "add")).isEqualTo("add");
+        assertThat(likesIndex.addIfAbsent(1, 10, () -> "add")).isNull();
+        assertThat(likesIndex.removeIfPresent(1, 10, () -> "remove")).isEqualTo("remove");
+
+        assertThat(likesIndex.isLiked(1, 10)).isFalse();
+        assertThat(likesIndex.getLikesCount(1)).isZero();
+    }
+
+    @Test
+    public void testCommonFilmsThroughPackedRows() {
+        likeAll(1, 3, 64, 65, 200, 4000);
+        likeAll(2, 3, 65, 4000, 5000);
+        likeAll(3, 1, 2);
+
+        assertThat(likesIndex.getCommonFilmIds(1, 2)).containsExactly(3L, 65L, 4000L);
+        assertThat(likesIndex.getCommonFilmIds(1, 3)).isEmpty();
+        assertThat(likesIndex.getCommonFilmIds(1, 99)).isEmpty();
+        assertThat(likesIndex.countCommon(likesIndex.getFilms(1), new int[]{2, 3, 1, 99}))
+                .containsExactly(3, 0, 5, 0);
+    }
+
+    @Test
+    public void testSparseLargeIdsFallBackToRoaring() {
+        // Строка из ~2^25 слов не упаковывается, пересечение считает Roaring
+        likeAll(1, 7, 2_000_000_000);
+        likeAll(2, 7, 2_000_000_000, 2_000_000_001);
+
+        assertThat(likesIndex.getCommonFilmIds(1, 2)).containsExactly(7L, 2_000_000_000L);
+        assertThat(likesIndex.countCommon(likesIndex.getFilms(2), new int[]{1, 2})).containsExactly(2, 3);
+    }
+
+    @Test
+    public void testFailedWriteRestoresMark() {
+        assertThatThrownBy(() -> likesIndex.addIfAbsent(1, 10, () -> {
+            throw new IllegalStateException("очередь переполнена");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(likesIndex.isLiked(1, 10)).isFalse();
+
+        likesIndex.onLikeAdded(10, 1);
+        assertThatThrownBy(() -> likesIndex.removeIfPresent(1, 10, () -> {
+            throw new IllegalStateException("очередь переполнена");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(likesIndex.isLiked(1, 10)).isTrue();
+    }
+
+    private void likeAll(long userId, long... filmIds) {
+        for (long filmId : filmIds) {
+            likesIndex.onLikeAdded(filmId, userId);
+        }
+    }
+}
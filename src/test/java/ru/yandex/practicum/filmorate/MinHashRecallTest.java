@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.MinHashIndex;
+import ru.yandex.practicum.filmorate.index.RecommendationIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Полнота LSH-кандидатов относительно точного поиска соседей на синтетических лайках:
+ * пользователи разбиты на группы со своим набором фильмов плюс случайный шум.
+ * Запуск: mvn test -Pbenchmark
+ */
+@Slf4j
+@Tag("benchmark")
+class MinHashRecallTest {
+
+    private static final int CLUSTERS = 40;
+    private static final int USERS_PER_CLUSTER = 50;
+    private static final int FILMS_PER_CLUSTER = 30;
+    private static final int NOISE_LIKES = 3;
+    private static final int NEIGHBOURS = 10;
+    private static final int SAMPLED_USERS = 300;
+
+    @Test
+    public void candidateRecallAgainstExactNeighbours() {
+        List<long[]> likes = generateLikes(new Random(7));
+
+        LikesIndex likesIndex = new LikesIndex(null);
+        RecommendationIndex exact = new RecommendationIndex(null, likesIndex, Optional.empty(), "jaccard", NEIGHBOURS);
+        for (long[] like : likes) {
+            likesIndex.onLikeAdded(like[0], like[1]);
+            exact.onLikeAdded(like[0], like[1]);
+        }
+
+        double recall = 0;
+        for (int[] config : new int[][]{{10, 5}, {20, 4}, {32, 2}}) {
+            MinHashIndex minHashIndex = new MinHashIndex(null, likesIndex, config[0], config[1], 42);
+            likes.forEach(like -> minHashIndex.onLikeAdded(like[0], like[1]));
+
+            long found = 0;
+            long expected = 0;
+            long candidates = 0;
+            for (long userId = 1; userId <= SAMPLED_USERS; userId++) {
+                RoaringBitmap candidateIds = minHashIndex.getCandidates(userId);
+                candidates += candidateIds.getCardinality();
+                for (long neighbourId : exact.getNeighbourIds(userId)) {
+                    expected++;
+                    if (candidateIds.contains((int) neighbourId)) {
+                        found++;
+                    }
+                }
+            }
+
+            double configRecall = (double) found / expected;
+            log.info("bands={}, rows={}: полнота {}, в среднем {} кандидатов из {} пользователей",
+                    config[0], config[1], String.format("%.3f", configRecall),
+                    candidates / SAMPLED_USERS, CLUSTERS * USERS_PER_CLUSTER);
+            if (config[0] == 20) {
+                recall = configRecall;
+            }
+        }
+
+        assertThat(recall).isGreaterThan(0.9);
+    }
+
+    private static List<long[]> generateLikes(Random random) {
+        List<long[]> likes = new ArrayList<>();
+        int films = CLUSTERS * FILMS_PER_CLUSTER;
+        long userId = 1;
+        for (int cluster = 0; cluster < CLUSTERS; cluster++) {
+            for (int user = 0; user < USERS_PER_CLUSTER; user++, userId++) {
+                for (int film = 0; film < FILMS_PER_CLUSTER; film++) {
+                    if (random.nextInt(10) < 8) {
+                        likes.add(new long[]{1 + cluster * FILMS_PER_CLUSTER + film, userId});
+                    }
+                }
+                for (int noise = 0; noise < NOISE_LIKES; noise++) {
+                    likes.add(new long[]{1 + random.nextInt(films), userId});
+                }
+            }
+        }
+        return likes;
+    }
+}
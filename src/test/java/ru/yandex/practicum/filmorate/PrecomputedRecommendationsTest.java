@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.PrecomputedRecommendations;
+import ru.yandex.practicum.filmorate.index.RecommendationIndex;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrecomputedRecommendationsTest {
+
+    private static final int USERS = 6;
+
+    private final LikesIndex likesIndex = new LikesIndex(null);
+    private final RecommendationIndex recommendationIndex =
+            new RecommendationIndex(null, likesIndex, Optional.empty(), "jaccard", 2);
+    private final PrecomputedRecommendations precomputed =
+            new PrecomputedRecommendations(recommendationIndex, likesIndex, 2, 2, 100);
+
+    @BeforeEach
+    public void setUp() {
+        likeAll(1, 1, 2, 3);
+        likeAll(2, 1, 2, 4);
+        likeAll(3, 2, 3, 5);
+        likeAll(4, 6, 7);
+        likeAll(5, 6, 8);
+        likeAll(6, 1, 9);
+        precomputed.markAllDirty();
+        precomputed.refreshDirty();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        precomputed.shutdown();
+    }
+
+    @Test
+    public void testInitialRefreshMatchesComputeNow() {
+        assertMatchesComputeNow();
+        assertThat(precomputed.get(1).neighbourIds()).containsExactly(2L, 3L);
+    }
+
+    @Test
+    public void testLikeMarksUserAndDependantsStale() {
+        // Пользователь 3 — сосед пользователя 1, пользователь 4 от него не зависит
+        like(3, 10);
+        unlike(3, 10);
+        like(3, 11);
+
+        assertThat(precomputed.isStale(3)).isTrue();
+        assertThat(precomputed.isStale(1)).isTrue();
+        assertThat(precomputed.isStale(4)).isFalse();
+
+        precomputed.refreshDirty();
+
+        assertThat(precomputed.isStale(1)).isFalse();
+        assertMatchesComputeNow();
+        assertThat(precomputed.get(1).filmIds()).contains(11L);
+    }
+
+    @Test
+    public void testNeighbourChangeReachesUsersWhoDependOnIt() {
+        // Пользователь 5 отказывается от общего с 4 фильма: у 4 меняются соседи и рекомендации
+        unlike(5, 6);
+        assertThat(precomputed.isStale(4)).isTrue();
+
+        precomputed.refreshDirty();
+
+        assertMatchesComputeNow();
+        assertThat(precomputed.get(4).neighbourIds()).doesNotContain(5L);
+    }
+
+    // Свежий экземпляр без сохранённых списков считает всё синхронно
+    private void assertMatchesComputeNow() {
+        PrecomputedRecommendations fresh = new PrecomputedRecommendations(recommendationIndex, likesIndex, 1, 1, 100);
+        try {
+            for (long userId = 1; userId <= USERS; userId++) {
+                PrecomputedRecommendations.Entry stored = precomputed.get(userId);
+                PrecomputedRecommendations.Entry expected = fresh.computeNow(userId);
+                assertThat(stored.filmIds()).as("фильмы пользователя %d", userId).isEqualTo(expected.filmIds());
+                assertThat(stored.neighbourIds()).as("соседи пользователя %d", userId)
+                        .isEqualTo(expected.neighbourIds());
+            }
+        } finally {
+            fresh.shutdown();
+        }
+    }
+
+    private void likeAll(long userId, long... filmIds) {
+        for (long filmId : filmIds) {
+            like(userId, filmId);
+        }
+    }
+
+    private void like(long userId, long filmId) {
+        likesIndex.onLikeAdded(filmId, userId);
+        recommendationIndex.onLikeAdded(filmId, userId);
+        precomputed.onLikeAdded(filmId, userId);
+    }
+
+    private void unlike(long userId, long filmId) {
+        likesIndex.onLikeRemoved(filmId, userId);
+        recommendationIndex.onLikeRemoved(filmId, userId);
+        precomputed.onLikeRemoved(filmId, userId);
+    }
+}
@@ -0,0 +1,228 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import ru.yandex.practicum.filmorate.dal.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dal.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.dal.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.index.AlsRecommender;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.MinHashIndex;
+import ru.yandex.practicum.filmorate.index.RecommendationIndex;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Офлайн-сравнение движков рекомендаций: у каждого пользователя откладывается часть лайков,
+ * движки строятся по оставшимся, и для выборки пользователей считаются recall@k и precision@k
+ * по отложенным лайкам, задержка p50/p99 и объём выделенной памяти на вызов.
+ * По умолчанию лайки синтетические (группы пользователей со своими фильмами плюс шум); снимок
+ * реальной базы: -Dfilmorate.eval.jdbc-url=jdbc:h2:file:./db/filmorate.
+ * Запуск: mvn test -Pbenchmark -Dtest=RecommendationEvaluationTest
+ */
+@Slf4j
+@Tag("benchmark")
+class RecommendationEvaluationTest {
+
+    private static final int K = 10;
+    private static final double HOLDOUT = 0.2;
+    private static final int MIN_LIKES = 5;
+    private static final int SAMPLED_USERS = 500;
+    private static final int WARMUP_USERS = 50;
+
+    private static final int CLUSTERS = 40;
+    private static final int USERS_PER_CLUSTER = 50;
+    private static final int FILMS_PER_CLUSTER = 30;
+    private static final int NOISE_LIKES = 3;
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static EmbeddedDatabase database;
+    private static FilmDbStorage filmStorage;
+    private static final Map<Long, Set<Long>> heldOut = new HashMap<>();
+    private static final List<Long> sampledUsers = new ArrayList<>();
+
+    @BeforeAll
+    static void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScripts("schema.sql", "data.sql")
+                .build();
+        JdbcTemplate jdbc = new JdbcTemplate(database);
+        LikeWriteBuffer likeWriteBuffer = new LikeWriteBuffer(jdbc, new DataSourceTransactionManager(database),
+                100, 100, 0, 1000);
+        filmStorage = new FilmDbStorage(jdbc, new FilmRowMapper(), likeWriteBuffer, 500, 200);
+
+        Map<Long, List<Long>> likesByUser = loadSnapshot();
+        List<long[]> training = split(likesByUser, new Random(17));
+        seed(jdbc, likesByUser, training);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void compareEngines() throws InterruptedException {
+        LikesIndex likesIndex = new LikesIndex(filmStorage);
+        likesIndex.load();
+        RecommendationIndex neighbours = new RecommendationIndex(filmStorage, likesIndex, Optional.empty(),
+                "jaccard", 20);
+        neighbours.load();
+        MinHashIndex minHashIndex = new MinHashIndex(filmStorage, likesIndex, 20, 4, 42);
+        minHashIndex.load();
+        RecommendationIndex lshNeighbours = new RecommendationIndex(filmStorage, likesIndex,
+                Optional.of(minHashIndex), "jaccard", 20);
+        lshNeighbours.load();
+        AlsRecommender als = new AlsRecommender(likesIndex, 32, 10, 0.1, 40, 0, 16, 100, 100, 100, 42);
+        als.retrain();
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(10);
+        while (als.recommend(sampledUsers.get(0)) == null) {
+            assertThat(System.nanoTime()).as("ALS-модель не обучилась").isLessThan(deadline);
+            Thread.sleep(100);
+        }
+
+        Map<String, LongFunction<List<Long>>> engines = new LinkedHashMap<>();
+        engines.put("sql", userId -> filmStorage.getRecommendations(userId).stream().map(Film::getId).toList());
+        engines.put("neighbours", neighbours::recommend);
+        engines.put("neighbours+lsh", lshNeighbours::recommend);
+        engines.put("als+hnsw", userId -> als.recommend(userId).filmIds());
+
+        log.info("{} пользователей в выборке, отложено {}% лайков, k={}", sampledUsers.size(),
+                Math.round(HOLDOUT * 100), K);
+        Map<String, Report> reports = new LinkedHashMap<>();
+        engines.forEach((name, engine) -> {
+            Report report = evaluate(engine);
+            reports.put(name, report);
+            log.info(String.format("%-15s recall@%d %.3f  precision@%d %.3f  p50 %d мкс  p99 %d мкс  %d КБ/вызов",
+                    name, K, report.recall(), K, report.precision(), report.p50Micros(), report.p99Micros(),
+                    report.allocatedBytes() / 1024));
+        });
+        als.shutdown();
+
+        assertThat(reports.values()).allSatisfy(report -> {
+            assertThat(report.recall()).isBetween(0.0, 1.0);
+            assertThat(report.precision()).isBetween(0.0, 1.0);
+        });
+    }
+
+    private Report evaluate(LongFunction<List<Long>> engine) {
+        for (Long userId : sampledUsers.subList(0, Math.min(WARMUP_USERS, sampledUsers.size()))) {
+            engine.apply(userId);
+        }
+
+        long[] timings = new long[sampledUsers.size()];
+        long allocated = 0;
+        double recall = 0;
+        double precision = 0;
+        for (int idx = 0; idx < sampledUsers.size(); idx++) {
+            long userId = sampledUsers.get(idx);
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            List<Long> recommended = engine.apply(userId);
+            timings[idx] = System.nanoTime() - start;
+            allocated += threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+            Set<Long> expected = heldOut.get(userId);
+            long hits = recommended.stream().limit(K).filter(expected::contains).count();
+            recall += (double) hits / expected.size();
+            precision += (double) hits / K;
+        }
+
+        Arrays.sort(timings);
+        int users = sampledUsers.size();
+        return new Report(recall / users, precision / users, timings[users / 2] / 1000,
+                timings[users * 99 / 100] / 1000, allocated / users);
+    }
+
+    private static Map<Long, List<Long>> loadSnapshot() {
+        String url = System.getProperty("filmorate.eval.jdbc-url");
+        Map<Long, List<Long>> likesByUser = new TreeMap<>();
+        if (url == null) {
+            generateLikes(new Random(7), likesByUser);
+            return likesByUser;
+        }
+        JdbcTemplate source = new JdbcTemplate(new DriverManagerDataSource(url,
+                System.getProperty("filmorate.eval.username", "sa"),
+                System.getProperty("filmorate.eval.password", "password")));
+        source.query("SELECT film_id, user_id FROM film_likes ORDER BY user_id, film_id", rs -> {
+            likesByUser.computeIfAbsent(rs.getLong("user_id"), id -> new ArrayList<>()).add(rs.getLong("film_id"));
+        });
+        return likesByUser;
+    }
+
+    // Откладывает долю лайков пользователей, у которых их достаточно; возвращает оставшиеся
+    private static List<long[]> split(Map<Long, List<Long>> likesByUser, Random random) {
+        List<long[]> training = new ArrayList<>();
+        likesByUser.forEach((userId, films) -> {
+            List<Long> shuffled = new ArrayList<>(films);
+            int holdout = 0;
+            if (films.size() >= MIN_LIKES) {
+                Collections.shuffle(shuffled, random);
+                holdout = Math.max(1, (int) (films.size() * HOLDOUT));
+                heldOut.put(userId, new HashSet<>(shuffled.subList(0, holdout)));
+            }
+            shuffled.subList(holdout, shuffled.size()).forEach(filmId -> training.add(new long[]{filmId, userId}));
+        });
+
+        List<Long> candidates = new ArrayList<>(heldOut.keySet());
+        Collections.shuffle(candidates, random);
+        sampledUsers.addAll(candidates.subList(0, Math.min(SAMPLED_USERS, candidates.size())));
+        return training;
+    }
+
+    private static void seed(JdbcTemplate jdbc, Map<Long, List<Long>> likesByUser, List<long[]> training) {
+        List<Object[]> users = new ArrayList<>();
+        Set<Long> filmIds = new TreeSet<>();
+        likesByUser.forEach((userId, films) -> {
+            users.add(new Object[]{userId, "user" + userId + "@mail.com", "user" + userId});
+            filmIds.addAll(films);
+        });
+        jdbc.batchUpdate("INSERT INTO users (user_id, email, login) VALUES (?, ?, ?)", users);
+        jdbc.batchUpdate("INSERT INTO films (film_id, name, release_date, duration, rating_id) " +
+                        "VALUES (?, ?, DATE '2000-01-01', 90, 1)",
+                filmIds.stream().map(filmId -> new Object[]{filmId, "Film " + filmId}).toList());
+        jdbc.batchUpdate("INSERT INTO film_likes (film_id, user_id) VALUES (?, ?)",
+                training.stream().map(like -> new Object[]{like[0], like[1]}).toList());
+    }
+
+    private static void generateLikes(Random random, Map<Long, List<Long>> likesByUser) {
+        int films = CLUSTERS * FILMS_PER_CLUSTER;
+        long userId = 1;
+        for (int cluster = 0; cluster < CLUSTERS; cluster++) {
+            for (int user = 0; user < USERS_PER_CLUSTER; user++, userId++) {
+                Set<Long> liked = new TreeSet<>();
+                for (int film = 0; film < FILMS_PER_CLUSTER; film++) {
+                    if (random.nextInt(10) < 8) {
+                        liked.add((long) (1 + cluster * FILMS_PER_CLUSTER + film));
+                    }
+                }
+                for (int noise = 0; noise < NOISE_LIKES; noise++) {
+                    liked.add((long) (1 + random.nextInt(films)));
+                }
+                likesByUser.put(userId, new ArrayList<>(liked));
+            }
+        }
+    }
+
+    private record Report(double recall, double precision, long p50Micros, long p99Micros, long allocatedBytes) {
+    }
+}
@@ -0,0 +1,146 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.MinHashIndex;
+import ru.yandex.practicum.filmorate.index.RecommendationIndex;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecommendationIndexTest {
+
+    private final LikesIndex likesIndex = new LikesIndex(null);
+
+    @Test
+    public void testNeighboursOrderedByOverlap() {
+        RecommendationIndex index = createIndex("jaccard", 20);
+        likeAll(index, 1, 1, 2, 3);
+        // Жаккар: пользователь 2 — 3/4, пользователь 5 — 2/4, пользователь 3 — 1/4
+        likeAll(index, 2, 1, 2, 3, 4);
+        likeAll(index, 3, 1, 5);
+        likeAll(index, 4, 6);
+        likeAll(index, 5, 1, 2, 7);
+
+        assertThat(index.getNeighbourIds(1)).containsExactly(2L, 5L, 3L);
+        assertThat(index.recommend(1)).containsExactly(4L, 7L, 5L);
+    }
+
+    @Test
+    public void testLshCandidatesScoredByKernelMatchExactPath() {
+        // 64 полосы по одной строке: кандидатом становится любой пользователь с общим фильмом
+        MinHashIndex minHashIndex = new MinHashIndex(null, likesIndex, 64, 1, 42);
+        RecommendationIndex exact = createIndex("jaccard", 20);
+        RecommendationIndex lsh = new RecommendationIndex(null, likesIndex, Optional.of(minHashIndex), "cosine", 20);
+        RecommendationIndex exactCosine = createIndex("cosine", 20);
+        long[][] likes = {{1, 1, 2, 3}, {2, 1, 2, 3, 4}, {3, 1, 5}, {4, 6}, {5, 1, 2, 7}};
+        for (long[] userLikes : likes) {
+            for (int idx = 1; idx < userLikes.length; idx++) {
+                likesIndex.onLikeAdded(userLikes[idx], userLikes[0]);
+                exact.onLikeAdded(userLikes[idx], userLikes[0]);
+                lsh.onLikeAdded(userLikes[idx], userLikes[0]);
+                exactCosine.onLikeAdded(userLikes[idx], userLikes[0]);
+                minHashIndex.onLikeAdded(userLikes[idx], userLikes[0]);
+            }
+        }
+
+        assertThat(exact.getNeighbourIds(1)).containsExactly(2L, 5L, 3L);
+        assertThat(lsh.getNeighbourIds(1)).isEqualTo(exactCosine.getNeighbourIds(1));
+        assertThat(lsh.recommend(1)).isEqualTo(exactCosine.recommend(1));
+    }
+
+    @Test
+    public void testDeletedUserLeavesLshBuckets() {
+        MinHashIndex minHashIndex = new MinHashIndex(null, likesIndex, 64, 1, 42);
+        long[][] likes = {{1, 1, 2, 3}, {2, 1, 2, 3, 4}, {3, 1, 5}};
+        for (long[] userLikes : likes) {
+            for (int idx = 1; idx < userLikes.length; idx++) {
+                likesIndex.onLikeAdded(userLikes[idx], userLikes[0]);
+                minHashIndex.onLikeAdded(userLikes[idx], userLikes[0]);
+            }
+        }
+        assertThat(minHashIndex.getCandidates(1).toArray()).containsExactly(2, 3);
+
+        // Как в UserService.delete: сначала удаление пользователя, затем снятие каждого его лайка
+        minHashIndex.onUserDeleted(2);
+        for (long filmId = 1; filmId <= 4; filmId++) {
+            likesIndex.onLikeRemoved(filmId, 2);
+            minHashIndex.onLikeRemoved(filmId, 2);
+        }
+
+        assertThat(minHashIndex.getCandidates(1).toArray()).containsExactly(3);
+        assertThat(minHashIndex.getCandidates(2).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void testNeighbourCountLimitsNeighboursAndTheirFilms() {
+        RecommendationIndex index = createIndex("jaccard", 2);
+        likeAll(index, 1, 1, 2, 3);
+        likeAll(index, 2, 1, 2, 3, 4);
+        likeAll(index, 3, 1, 5);
+        likeAll(index, 5, 1, 2, 7);
+
+        RecommendationIndex.Recommendation recommendation = index.compute(1);
+
+        assertThat(recommendation.neighbourIds()).containsExactly(2L, 5L);
+        assertThat(recommendation.filmIds()).containsExactly(4L, 7L);
+    }
+
+    @Test
+    public void testSimilarityMeasureChangesNeighbourOrder() {
+        // Пользователь 2 совпадает по двум фильмам из четырёх, пользователь 3 — по трём из восьми:
+        // Жаккар 0.4 против 0.375, косинус 0.577 против 0.612
+        RecommendationIndex jaccard = createIndex("jaccard", 20);
+        RecommendationIndex cosine = createIndex("cosine", 20);
+        for (RecommendationIndex index : new RecommendationIndex[]{jaccard, cosine}) {
+            likeAll(index, 1, 1, 2, 3);
+            likeAll(index, 2, 1, 2, 10, 11);
+            likeAll(index, 3, 1, 2, 3, 20, 21, 22, 23, 24);
+        }
+
+        assertThat(jaccard.getNeighbourIds(1)).containsExactly(2L, 3L);
+        assertThat(cosine.getNeighbourIds(1)).containsExactly(3L, 2L);
+    }
+
+    @Test
+    public void testUnlikeAndFilmDeletionUpdateOverlaps() {
+        RecommendationIndex index = createIndex("jaccard", 20);
+        likeAll(index, 1, 1, 2);
+        likeAll(index, 2, 1, 3);
+        likeAll(index, 3, 2, 4);
+
+        assertThat(index.getNeighbourIds(1)).containsExactly(2L, 3L);
+
+        likesIndex.onLikeRemoved(1, 2);
+        index.onLikeRemoved(1, 2);
+        assertThat(index.getNeighbourIds(1)).containsExactly(3L);
+        assertThat(index.recommend(1)).containsExactly(4L);
+
+        likesIndex.onFilmDeleted(2);
+        index.onFilmDeleted(2);
+        assertThat(index.getNeighbourIds(1)).isEmpty();
+        assertThat(index.recommend(1)).isEmpty();
+    }
+
+    @Test
+    public void testUserWithoutLikesGetsNothing() {
+        RecommendationIndex index = createIndex("jaccard", 20);
+        likeAll(index, 2, 1, 2);
+
+        assertThat(index.getNeighbourIds(1)).isEmpty();
+        assertThat(index.recommend(1)).isEmpty();
+    }
+
+    private RecommendationIndex createIndex(String similarity, int neighbours) {
+        return new RecommendationIndex(null, likesIndex, Optional.empty(), similarity, neighbours);
+    }
+
+    // Индекс лайков общий для обоих индексов рекомендаций, поэтому повторный лайк в нём ничего не меняет
+    private void likeAll(RecommendationIndex index, long userId, long... filmIds) {
+        for (long filmId : filmIds) {
+            likesIndex.onLikeAdded(filmId, userId);
+            index.onLikeAdded(filmId, userId);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dto.SuggestionDto;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.index.SuggestIndex;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SuggestIndexTest {
+
+    private final PopularFilmsIndex popularFilmsIndex = new PopularFilmsIndex(null);
+    private final FilmSearchIndex searchIndex = new FilmSearchIndex(null, null, popularFilmsIndex, 100);
+    private final SuggestIndex suggestIndex = new SuggestIndex(searchIndex, popularFilmsIndex, 2, 60_000);
+
+    @BeforeEach
+    public void setUp() {
+        save(createFilm(1, "The Matrix", 5, createDirector(1, "Lana Wachowski")));
+        save(createFilm(2, "Matrix Reloaded", 8, createDirector(1, "Lana Wachowski")));
+        save(createFilm(3, "Inception", 20, createDirector(2, "Christopher Nolan")));
+        save(createFilm(4, "Mathematics of Love", 1, createDirector(3, "Matt Reeves")));
+        suggestIndex.load();
+    }
+
+    @Test
+    public void testPrefixMatchesStartOfAnyWord() {
+        assertThat(texts("MATRIX", 2)).containsExactly("Matrix Reloaded", "The Matrix");
+        assertThat(texts("the m", 2)).containsExactly("The Matrix");
+        assertThat(texts("atrix", 2)).isEmpty();
+        assertThat(suggestIndex.suggest("nol", 2)).singleElement()
+                .satisfies(suggestion -> {
+                    assertThat(suggestion.text()).isEqualTo("Christopher Nolan");
+                    assertThat(suggestion.type()).isEqualTo(SuggestIndex.Type.DIRECTOR);
+                });
+    }
+
+    @Test
+    public void testTopKOrderedByLikes() {
+        // Популярность режиссёра — сумма лайков его фильмов: 5 + 8
+        assertThat(texts("l", 2)).containsExactly("Lana Wachowski", "Mathematics of Love");
+        assertThat(texts("l", 1)).containsExactly("Lana Wachowski");
+        // В узле хранятся только top-k = 2 лучших, менее популярные «Mathematics…» и «Matt Reeves» отсечены
+        assertThat(texts("ma", 2)).containsExactly("Matrix Reloaded", "The Matrix");
+    }
+
+    @Test
+    public void testRebuildFollowsFilmChanges() {
+        save(createFilm(2, "Tenet", 8, createDirector(2, "Christopher Nolan")));
+        searchIndex.onFilmDeleted(1);
+        suggestIndex.load();
+
+        assertThat(texts("ma", 2)).containsExactly("Mathematics of Love", "Matt Reeves");
+        assertThat(texts("lana", 2)).isEmpty();
+        assertThat(texts("c", 2)).containsExactly("Christopher Nolan");
+    }
+
+    @Test
+    public void testLimitAboveTopKIsRejected() {
+        FilmService filmService = new FilmService(null, null, null, null, null, null, popularFilmsIndex, null,
+                null, null, null, searchIndex, suggestIndex, null, null, 5, List.of(), new ObjectMapper());
+
+        assertThat(filmService.suggest("matrix", 2)).extracting(SuggestionDto::getText)
+                .containsExactly("Matrix Reloaded", "The Matrix");
+        assertThatThrownBy(() -> filmService.suggest("matrix", 3))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> filmService.suggest("matrix", 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private List<String> texts(String prefix, int limit) {
+        return suggestIndex.suggest(prefix, limit).stream()
+                .map(SuggestIndex.Suggestion::text)
+                .toList();
+    }
+
+    private void save(Film film) {
+        popularFilmsIndex.onFilmSaved(film);
+        searchIndex.onFilmSaved(film);
+    }
+
+    private static Film createFilm(long id, String name, long likes, Director director) {
+        Mpa mpa = new Mpa();
+        mpa.setId(1L);
+        Film film = new Film();
+        film.setId(id);
+        film.setName(name);
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setMpa(mpa);
+        film.setLikesCount(likes);
+        film.setDirectors(List.of(director));
+        return film;
+    }
+
+    private static Director createDirector(long id, String name) {
+        Director director = new Director();
+        director.setId(id);
+        director.setName(name);
+        return director;
+    }
+}
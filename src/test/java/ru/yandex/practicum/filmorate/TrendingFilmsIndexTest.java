@@ -0,0 +1,139 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.TrendingFilmsIndex;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TrendingFilmsIndexTest {
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2026-01-01T00:30:00Z"));
+    private final LikesIndex likesIndex = new LikesIndex(null);
+    private final TrendingFilmsIndex trendingIndex = new TrendingFilmsIndex(null, clock);
+
+    @Test
+    public void testOlderLikesDecay() {
+        // Окно 4h: период полураспада — один час, лайк двухчасовой давности весит четверть
+        likeMany(2, 3, 100);
+        likeMany(3, 5, 200);
+        clock.advance(Duration.ofHours(2));
+        likeMany(1, 1, 300);
+
+        assertThat(trendingIndex.getTrending(Duration.ofHours(4), 10)).containsExactly(3L, 1L, 2L);
+        assertThat(trendingIndex.getTrending(Duration.ofHours(4), 2)).containsExactly(3L, 1L);
+    }
+
+    @Test
+    public void testLikesLeaveWindowAndRingIsReused() {
+        likeMany(1, 5, 100);
+        clock.advance(Duration.ofHours(5));
+        likeMany(2, 1, 200);
+
+        assertThat(trendingIndex.getTrending(Duration.ofHours(4), 10)).containsExactly(2L);
+        assertThat(trendingIndex.getTrending(Duration.ofDays(1), 10)).containsExactly(1L, 2L);
+
+        // Через семь дней корзина фильма 1 снова та же, старые пять лайков не должны в неё попасть
+        clock.advance(TrendingFilmsIndex.MAX_WINDOW.minusHours(5));
+        likeMany(1, 1, 300);
+        likeMany(3, 2, 400);
+
+        assertThat(trendingIndex.getTrending(Duration.ofHours(1), 10)).containsExactly(3L, 1L);
+    }
+
+    @Test
+    public void testDuplicateLikesAndNoopUnlikesAreIgnored() {
+        like(1, 100);
+        like(1, 100);
+        like(1, 100);
+        unlike(2, 100);
+        like(2, 101);
+        like(2, 102);
+
+        assertThat(trendingIndex.getTrending(Duration.ofDays(1), 10)).containsExactly(2L, 1L);
+
+        unlike(2, 101);
+        unlike(2, 102);
+        unlike(2, 102);
+        assertThat(trendingIndex.getTrending(Duration.ofDays(1), 10)).containsExactly(1L);
+    }
+
+    @Test
+    public void testUnlikeRemovesLikeFromBucketItWasCountedIn() {
+        likeMany(1, 2, 100);
+        clock.advance(Duration.ofHours(3));
+        likeMany(2, 1, 200);
+
+        // Лайк трёхчасовой давности снимается из своей корзины, текущая корзина фильма 1 не уходит в минус
+        unlike(1, 100);
+        assertThat(trendingIndex.getTrending(Duration.ofHours(4), 10)).containsExactly(2L, 1L);
+
+        // Лайк старше кольца уже не учитывается, и его отмена не гасит новый лайк
+        likeMany(3, 1, 300);
+        clock.advance(TrendingFilmsIndex.MAX_WINDOW.plusHours(1));
+        like(3, 301);
+        unlike(3, 300);
+        assertThat(trendingIndex.getTrending(Duration.ofHours(1), 10)).containsExactly(3L);
+    }
+
+    @Test
+    public void testWindowOutOfRangeIsRejected() {
+        assertThatThrownBy(() -> trendingIndex.getTrending(Duration.ofMinutes(30), 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> trendingIndex.getTrending(Duration.ofDays(8), 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void likeMany(long filmId, int likes, long firstUserId) {
+        for (long userId = firstUserId; userId < firstUserId + likes; userId++) {
+            like(filmId, userId);
+        }
+    }
+
+    // Как в FilmService: слушатели получают лайк, только если он изменил состояние
+    private void like(long filmId, long userId) {
+        if (likesIndex.addIfAbsent(userId, filmId, () -> true) != null) {
+            trendingIndex.onLikeAdded(filmId, userId);
+        }
+    }
+
+    private void unlike(long filmId, long userId) {
+        if (likesIndex.removeIfPresent(userId, filmId, () -> true) != null) {
+            trendingIndex.onLikeRemoved(filmId, userId);
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        private void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import ru.yandex.practicum.filmorate.index.FilmFeatureIndex;
+import ru.yandex.practicum.filmorate.index.FilmIndexListener;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.index.RecommendationIndex;
+import ru.yandex.practicum.filmorate.index.UserAffinityIndex;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserAffinityIndexTest {
+
+    private final LikesIndex likesIndex = new LikesIndex(null);
+    private final FilmFeatureIndex filmFeatureIndex = new FilmFeatureIndex(null, null, null, 10);
+    private final RecommendationIndex recommendationIndex =
+            new RecommendationIndex(null, likesIndex, Optional.empty(), "jaccard", 20);
+    private final UserAffinityIndex affinityIndex =
+            new UserAffinityIndex(likesIndex, filmFeatureIndex, recommendationIndex, 1.0);
+
+    // Популярнее всех фильм 1 жанра 1, фильмы 2 и 3 жанра 2 и 3 отстают на один лайк
+    private final List<PopularFilmsIndex.Rank> popular = List.of(
+            new PopularFilmsIndex.Rank(10, 1),
+            new PopularFilmsIndex.Rank(9, 2),
+            new PopularFilmsIndex.Rank(9, 3));
+
+    @Test
+    public void testRerankFollowsLikesAndUnlikes() {
+        filmFeatureIndex.onFilmSaved(createFilm(1, 1));
+        filmFeatureIndex.onFilmSaved(createFilm(2, 2));
+        filmFeatureIndex.onFilmSaved(createFilm(3, 3));
+        filmFeatureIndex.onFilmSaved(createFilm(4, 3));
+
+        assertThat(affinityIndex.rerank(7, popular, 3)).containsExactly(1L, 2L, 3L);
+
+        like(4, 7);
+        assertThat(affinityIndex.rerank(7, popular, 2)).containsExactly(3L, 1L);
+
+        unlike(4, 7);
+        assertThat(affinityIndex.rerank(7, popular, 3)).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    public void testFilmUpdateRebuildsProfilesOfItsFans() {
+        filmFeatureIndex.onFilmSaved(createFilm(1, 1));
+        filmFeatureIndex.onFilmSaved(createFilm(2, 2));
+        filmFeatureIndex.onFilmSaved(createFilm(3, 3));
+        filmFeatureIndex.onFilmSaved(createFilm(4, 3));
+        like(4, 7);
+
+        Film updated = createFilm(4, 2);
+        filmFeatureIndex.onFilmSaved(updated);
+        affinityIndex.onFilmSaved(updated);
+
+        assertThat(affinityIndex.rerank(7, popular, 1)).containsExactly(2L);
+    }
+
+    @Test
+    public void testFilmDeletionRebuildsProfilesOfItsFans() {
+        filmFeatureIndex.onFilmSaved(createFilm(1, 1));
+        filmFeatureIndex.onFilmSaved(createFilm(2, 2));
+        filmFeatureIndex.onFilmSaved(createFilm(3, 3));
+        filmFeatureIndex.onFilmSaved(createFilm(4, 3));
+        filmFeatureIndex.onFilmSaved(createFilm(5, 2));
+        like(4, 7);
+        like(4, 8);
+        like(5, 8);
+        assertThat(affinityIndex.rerank(7, popular, 1)).containsExactly(3L);
+
+        // Порядок слушателей как в приложении: LikesIndex, FilmFeatureIndex, профили, затем RecommendationIndex
+        likesIndex.onFilmDeleted(4);
+        filmFeatureIndex.onFilmDeleted(4);
+        affinityIndex.onFilmDeleted(4);
+        recommendationIndex.onFilmDeleted(4);
+
+        // У пользователя 7 лайков не осталось — исходный порядок, у пользователя 8 остался жанр 2
+        assertThat(affinityIndex.rerank(7, popular, 3)).containsExactly(1L, 2L, 3L);
+        assertThat(affinityIndex.rerank(8, popular, 1)).containsExactly(2L);
+    }
+
+    @Test
+    public void testListenerOrderMatchesDeletionContract() {
+        List<FilmIndexListener> listeners = new ArrayList<>(
+                List.of(recommendationIndex, affinityIndex, filmFeatureIndex, likesIndex));
+        AnnotationAwareOrderComparator.sort(listeners);
+
+        assertThat(listeners).containsExactly(likesIndex, filmFeatureIndex, affinityIndex, recommendationIndex);
+    }
+
+    private void like(long filmId, long userId) {
+        likesIndex.onLikeAdded(filmId, userId);
+        affinityIndex.onLikeAdded(filmId, userId);
+        recommendationIndex.onLikeAdded(filmId, userId);
+    }
+
+    private void unlike(long filmId, long userId) {
+        likesIndex.onLikeRemoved(filmId, userId);
+        affinityIndex.onLikeRemoved(filmId, userId);
+        recommendationIndex.onLikeRemoved(filmId, userId);
+    }
+
+    private static Film createFilm(long id, long genreId) {
+        Genre genre = new Genre();
+        genre.setId(genreId);
+        Film film = new Film();
+        film.setId(id);
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setGenres(List.of(genre));
+        return film;
+    }
+}
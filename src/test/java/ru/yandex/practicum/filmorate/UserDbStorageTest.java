@@ -6,6 +6,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
 import ru.yandex.practicum.filmorate.dal.UserDbStorage;
 import ru.yandex.practicum.filmorate.dal.mappers.UserRowMapper;
 import ru.yandex.practicum.filmorate.model.User;
@@ -23,6 +24,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 class UserDbStorageTest {
 
     private final UserDbStorage userStorage;
+    private final JdbcTemplate jdbc;
 
     @Test
     public void testSaveAndFindById() {
@@ -97,6 +99,7 @@ class UserDbStorageTest {
         // Получение друзей
         List<User> user1Friends = userStorage.getFriends(user1.getId());
         assertThat(user1Friends).hasSize(2).extracting(User::getId).containsExactlyInAnyOrder(user2.getId(), user3.getId());
+        assertThat(userStorage.getFriendIds(user1.getId())).containsExactlyInAnyOrder(user2.getId(), user3.getId());
 
         // Общие друзья
         List<User> commonFriends = userStorage.getCommonFriends(user1.getId(), user2.getId());
@@ -108,6 +111,46 @@ class UserDbStorageTest {
         assertThat(user1Friends).hasSize(1).extracting(User::getId).containsExactly(user3.getId());
     }
 
+    @Test
+    public void testFindPageWalksUsersById() {
+        User first = userStorage.save(createUser("page1@mail.com", "page1"));
+        User second = userStorage.save(createUser("page2@mail.com", "page2"));
+        User third = userStorage.save(createUser("page3@mail.com", "page3"));
+
+        List<User> page = userStorage.findPage(first.getId() - 1, 2);
+        assertThat(page).extracting(User::getId).containsExactly(first.getId(), second.getId());
+
+        List<User> nextPage = userStorage.findPage(second.getId(), 2);
+        assertThat(nextPage).extracting(User::getId).startsWith(third.getId());
+    }
+
+    @Test
+    public void testExistsByIdFollowsSaveAndDelete() {
+        User user = userStorage.save(createUser("exists@mail.com", "exists"));
+
+        assertThat(userStorage.existsById(user.getId())).isTrue();
+        assertThat(userStorage.existsById(-1L)).isFalse();
+
+        userStorage.delete(user.getId());
+
+        assertThat(userStorage.existsById(user.getId())).isFalse();
+    }
+
+    @Test
+    public void testExistsByIdBeyondIntRange() {
+        long id = Integer.MAX_VALUE + 10L;
+        jdbc.update("INSERT INTO users (user_id, email, login, name, birthday) VALUES (?, ?, ?, ?, ?)",
+                id, "large@mail.com", "large", "Name", LocalDate.of(2000, 1, 1));
+        userStorage.loadIds();
+
+        assertThat(userStorage.existsById(id)).isTrue();
+        assertThat(userStorage.existsById(id + 1)).isFalse();
+
+        userStorage.delete(id);
+
+        assertThat(userStorage.existsById(id)).isFalse();
+    }
+
     private User createUser(String email, String login) {
         User user = new User();
         user.setEmail(email);